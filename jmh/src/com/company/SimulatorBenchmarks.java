@@ -0,0 +1,471 @@
+package com.company;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * JMH benchmarks of core simulator operations. Run them with {@code gradle :jmh:jmh}, optionally selecting
+ * benchmarks with {@code -Pinclude=<regular expression>}, and compare time and allocation per operation
+ * reported by the GC profiler before and after every change of the benchmarked classes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SimulatorBenchmarks {
+
+    /**
+     * Number of phones calling each other in call benchmarks.
+     */
+    private static final int PHONES = 1000;
+    /**
+     * Retention of registers in call and append benchmarks, so registers don't grow during the run.
+     */
+    private static final RetentionPolicy RETENTION = RetentionPolicy.lastEntries(1024);
+    /**
+     * Conversation time of accepted calls.
+     */
+    private static final Duration CONVERSATION = Duration.ofSeconds(30);
+    /**
+     * Scheduler which ends conversations immediately, so phones are free for the next call.
+     */
+    private static final ExpiryScheduler IMMEDIATE = new ExpiryScheduler() {
+        @Override
+        public Timeout schedule(Runnable task, Duration delay) {
+            task.run();
+            return EXPIRED;
+        }
+    };
+    /**
+     * Timeout returned by {@code IMMEDIATE} scheduler.
+     */
+    private static final ExpiryScheduler.Timeout EXPIRED = new ExpiryScheduler.Timeout() {
+        @Override
+        public boolean cancel() {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * Creates phones calling each other in call benchmarks.
+     * @return Phones with bounded registers whose conversations end immediately.
+     */
+    private static Phone[] createPhones() {
+        Phone[] phones = new Phone[PHONES];
+        for (int i = 0; i < PHONES; i++) {
+            phones[i] = new Phone(String.valueOf(500_000_000 + i), Clock.systemDefaultZone(), IMMEDIATE);
+            phones[i].setRetention(RETENTION, SpillSink.DISCARD);
+        }
+        return phones;
+    }
+
+    /**
+     * Phones called by all benchmark threads at once.
+     */
+    @State(Scope.Benchmark)
+    public static class SharedPhones {
+
+        /**
+         * Phones calling each other.
+         */
+        Phone[] phones;
+
+        /**
+         * Creates phones.
+         */
+        @Setup
+        public void setup() {
+            phones = createPhones();
+        }
+    }
+
+    /**
+     * Phones and random number generator of one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Caller {
+
+        /**
+         * Phones calling each other, owned by the thread.
+         */
+        Phone[] phones;
+        /**
+         * Random number generator choosing phones.
+         */
+        Random random;
+        /**
+         * Number of calls made, three of four are accepted.
+         */
+        long calls;
+
+        /**
+         * Creates phones and random number generator seeded with the thread index.
+         * @param thread Parameters of the benchmark thread.
+         */
+        @Setup
+        public void setup(ThreadParams thread) {
+            phones = createPhones();
+            random = new Random(thread.getThreadIndex());
+        }
+
+        /**
+         * Draws caller's index.
+         * @return Index of calling phone.
+         */
+        int from() {
+            return random.nextInt(PHONES);
+        }
+
+        /**
+         * Draws callee's index different from caller's one.
+         * @param from Index of calling phone.
+         * @return Index of called phone.
+         */
+        int to(int from) {
+            return (from + 1 + random.nextInt(PHONES - 1)) % PHONES;
+        }
+
+        /**
+         * Tells if the next call should be accepted.
+         * @return True for three of four calls.
+         */
+        boolean accept() {
+            return (calls++ & 3) != 0;
+        }
+    }
+
+    /**
+     * Makes a call between random phones of the thread with {@code Phone.tryCall}.
+     * @param caller Thread's phones.
+     * @return Outcome of the call.
+     */
+    @Benchmark
+    public CallOutcome call(Caller caller) {
+        int from = caller.from();
+        return caller.phones[from].tryCall(caller.phones[caller.to(from)], caller.accept(), CONVERSATION);
+    }
+
+    /**
+     * Makes a call between random phones shared by all cores with {@code Phone.tryCall}.
+     * @param shared Phones of all threads.
+     * @param caller Thread's random number generator.
+     * @return Outcome of the call.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public CallOutcome callShared(SharedPhones shared, Caller caller) {
+        int from = caller.from();
+        return shared.phones[from].tryCall(shared.phones[caller.to(from)], caller.accept(), CONVERSATION);
+    }
+
+    /**
+     * Makes a call like {@code call} does, but with exception based {@code Phone.dial}.
+     * @param caller Thread's phones.
+     * @return True if the call was accepted.
+     */
+    @Benchmark
+    public boolean callWithExceptions(Caller caller) {
+        int from = caller.from();
+        try {
+            caller.phones[from].dial(caller.phones[caller.to(from)], caller.accept(), CONVERSATION);
+            return true;
+        } catch (PhoneUnavailableException | CallRejectedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Bounded register and numbers appended to it.
+     */
+    @State(Scope.Thread)
+    public static class Register {
+
+        /**
+         * Register with retention of {@code RETENTION}.
+         */
+        CallRegister register;
+        /**
+         * Numbers of appended records.
+         */
+        String[] numbers;
+        /**
+         * Number of appended records.
+         */
+        long appended;
+
+        /**
+         * Creates register and numbers.
+         */
+        @Setup
+        public void setup() {
+            register = new CallRegister(Clock.systemDefaultZone().getZone());
+            register.setRetention(RETENTION, null);
+            numbers = new String[PHONES];
+            for (int i = 0; i < PHONES; i++) {
+                numbers[i] = String.valueOf(500_000_000 + i);
+            }
+        }
+    }
+
+    /**
+     * Appends a record to a bounded register.
+     * @param state Register.
+     * @return Register size.
+     */
+    @Benchmark
+    public int registerAppend(Register state) {
+        long i = state.appended++;
+        state.register.add(state.numbers[(int) (i % PHONES)], true, true, i, CONVERSATION);
+        return state.register.size();
+    }
+
+    /**
+     * Register entries to be formatted.
+     */
+    @State(Scope.Thread)
+    public static class Entries {
+
+        /**
+         * Entries of different numbers, flags, times and durations.
+         */
+        PhoneRegisterEntry[] entries;
+        /**
+         * Number of formatted entries.
+         */
+        int formatted;
+
+        /**
+         * Creates entries.
+         */
+        @Setup
+        public void setup() {
+            entries = new PhoneRegisterEntry[PHONES];
+            LocalDateTime time = LocalDateTime.now();
+            for (int i = 0; i < PHONES; i++) {
+                entries[i] = new PhoneRegisterEntry(String.valueOf(500_000_000 + i), i % 4 != 0, i % 8 != 0,
+                        time.plusSeconds(i), Duration.ofMillis(i * 1234L));
+            }
+        }
+    }
+
+    /**
+     * Formats a register entry.
+     * @param state Entries.
+     * @return Formatted entry.
+     */
+    @Benchmark
+    public String entryToString(Entries state) {
+        return state.entries[state.formatted++ % PHONES].toString();
+    }
+
+    /**
+     * Phone with a register of two thousand records and the file it is saved to.
+     */
+    @State(Scope.Thread)
+    public static class SavedRegister {
+
+        /**
+         * Phone whose registers are saved.
+         */
+        Phone phone;
+        /**
+         * Temporary file.
+         */
+        Path file;
+
+        /**
+         * Makes calls from the phone and creates temporary file.
+         * @throws IOException If temporary file can't be created.
+         */
+        @Setup
+        public void setup() throws IOException {
+            Phone[] phones = createPhones();
+            for (int i = 0; i < 2000; i++) {
+                phones[0].tryCall(phones[1 + i % (PHONES - 1)], i % 4 != 0, CONVERSATION);
+            }
+            phone = phones[0];
+            file = Files.createTempFile("register", ".txt");
+        }
+
+        /**
+         * Deletes temporary file.
+         * @throws IOException If file can't be deleted.
+         */
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Saves registers of a phone with a thousand records each to a file.
+     * @param state Phone and file.
+     * @throws IOException If file can't be written.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void saveRegisterToFile(SavedRegister state) throws IOException {
+        state.phone.saveRegisterToFile(state.file.toString());
+    }
+
+    /**
+     * Simulator generating phones.
+     */
+    @State(Scope.Thread)
+    public static class Generator {
+
+        /**
+         * Number of generated phones.
+         */
+        @Param({"1000", "1000000"})
+        int amount;
+        /**
+         * Simulator whose phones are replaced by every generation.
+         */
+        PhoneSimulator simulator;
+
+        /**
+         * Creates simulator.
+         */
+        @Setup
+        public void setup() {
+            simulator = new PhoneSimulator();
+        }
+    }
+
+    /**
+     * Generates phones with unique random numbers.
+     * @param state Simulator and number of phones.
+     * @return Number of generated phones.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int generatePhones(Generator state) {
+        state.simulator.generatePhones(state.amount);
+        return state.simulator.getPhones().size();
+    }
+
+    /**
+     * Directory of a hundred thousand phones and their numbers.
+     */
+    @State(Scope.Thread)
+    public static class Directory {
+
+        /**
+         * Directory searched by number.
+         */
+        PhoneDirectory directory;
+        /**
+         * Numbers of all phones of the directory.
+         */
+        String[] numbers;
+        /**
+         * Random number generator choosing numbers.
+         */
+        Random random;
+
+        /**
+         * Generates phones.
+         */
+        @Setup
+        public void setup() {
+            PhoneSimulator simulator = new PhoneSimulator();
+            simulator.generatePhones(100_000);
+            directory = simulator.getPhones();
+            numbers = new String[directory.size()];
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = directory.get(i).getPhoneNumber();
+            }
+            random = new Random(0);
+        }
+    }
+
+    /**
+     * Finds a phone by number in a directory of a hundred thousand phones.
+     * @param state Directory.
+     * @return Index of found phone.
+     */
+    @Benchmark
+    public int directoryFind(Directory state) {
+        return state.directory.indexOf(state.numbers[state.random.nextInt(state.numbers.length)]);
+    }
+
+    /**
+     * Engine simulating traffic of a thousand calls per second with thirty-second conversations.
+     */
+    @State(Scope.Thread)
+    public static class Engine {
+
+        /**
+         * Engine running the traffic.
+         */
+        SimulationEngine engine;
+        /**
+         * Phones of the engine.
+         */
+        List<Phone> phones;
+        /**
+         * Traffic model.
+         */
+        TrafficModel model;
+
+        /**
+         * Creates engine with a hundred thousand phones, new for every iteration so the event queue doesn't
+         * hold conversations of earlier iterations.
+         */
+        @Setup(Level.Iteration)
+        public void setup() {
+            engine = new SimulationEngine(0);
+            PhoneSimulator simulator = new PhoneSimulator(engine);
+            simulator.generatePhones(100_000, NumberPlan.DEFAULT, 0);
+            simulator.setRetention(RETENTION, SpillSink.DISCARD);
+            phones = simulator.getPhones().toList();
+            model = new TrafficModel(1000, TrafficModel.HoldingTime.EXPONENTIAL, 30, 1, 0.8, null);
+        }
+    }
+
+    /**
+     * Simulates a second of traffic on {@code SimulationEngine}, so time per operation is CPU time
+     * per simulated second.
+     * @param state Engine.
+     * @return Number of accepted calls.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long virtualSecond(Engine state) {
+        Duration second = Duration.ofSeconds(1);
+        SimulationEngine.Traffic traffic = state.engine.scheduleTraffic(state.model, state.phones,
+                Instant.ofEpochMilli(state.engine.now()).plus(second));
+        state.engine.runFor(second);
+        return traffic.getAcceptedCalls();
+    }
+}
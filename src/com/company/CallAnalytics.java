@@ -0,0 +1,250 @@
+package com.company;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming analytics of the call flow in bounded memory, for fleets where exact per-pair counters don't fit.
+ * Added as {@code CallListener} to phones or to {@code PhoneSimulator}, it sees every call once, right after
+ * it was written to the registers, and keeps:
+ * <ul>
+ *     <li>a {@code CountMinSketch} of calls between number pairs,</li>
+ *     <li>a {@code VirtualHyperLogLog} of distinct callers of every phone in registers shared by all phones,</li>
+ *     <li>a {@code HyperLogLog} of distinct callers of all phones,</li>
+ *     <li>{@code HeavyHitters} of phones with the longest conversation time,</li>
+ *     <li>a {@code TrafficWindow} of busy-hour rollups.</li>
+ * </ul>
+ * Sketches are fixed-size, so memory doesn't grow with the number of phones or calls.
+ * All results can be queried at any time while calls are made.
+ */
+public class CallAnalytics implements CallListener {
+
+    /**
+     * Default number of counters in a row of the pair sketch.
+     */
+    public static final int DEFAULT_WIDTH = 1 << 20;
+    /**
+     * Default number of rows of the pair sketch.
+     */
+    public static final int DEFAULT_DEPTH = 4;
+    /**
+     * Default precision of distinct callers of a phone, 64 virtual registers per phone.
+     */
+    public static final int DEFAULT_PRECISION = 6;
+    /**
+     * Default precision of registers shared by distinct callers of all phones, 4 MiB.
+     */
+    public static final int DEFAULT_SHARED_PRECISION = 22;
+    /**
+     * Default number of tracked heavy talkers.
+     */
+    public static final int DEFAULT_TALKERS = 100;
+    /**
+     * Default length of a traffic bucket.
+     */
+    public static final Duration DEFAULT_BUCKET = Duration.ofMinutes(1);
+    /**
+     * Default number of traffic buckets, making an hour with default buckets.
+     */
+    public static final int DEFAULT_BUCKETS = 60;
+    /**
+     * Precision of distinct callers of all phones.
+     */
+    private static final int TOTAL_PRECISION = 14;
+
+    /**
+     * Field {@code pairs} counts calls between number pairs.
+     */
+    private final CountMinSketch pairs;
+    /**
+     * Field {@code callers} holds distinct callers of every called phone, keyed by hash of its number.
+     */
+    private final VirtualHyperLogLog callers;
+    /**
+     * Field {@code allCallers} holds distinct callers of all phones.
+     */
+    private final HyperLogLog allCallers;
+    /**
+     * Field {@code talkers} tracks phones with the longest conversation time in milliseconds.
+     */
+    private final HeavyHitters talkers;
+    /**
+     * Field {@code traffic} rolls up calls into time buckets.
+     */
+    private final TrafficWindow traffic;
+    /**
+     * Field {@code lastTime} holds time of the latest call in epoch milliseconds.
+     */
+    private final AtomicLong lastTime;
+
+    /**
+     * Class {@code CallAnalytics} constructor with default sizes: 32 MiB pair sketch, 4 MiB of distinct callers,
+     * 100 heavy talkers and an hour of one-minute buckets.
+     */
+    public CallAnalytics() {
+        this(DEFAULT_WIDTH, DEFAULT_DEPTH, DEFAULT_PRECISION, DEFAULT_SHARED_PRECISION, DEFAULT_TALKERS,
+                DEFAULT_BUCKET, DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Class {@code CallAnalytics} constructor.
+     * @param width Number of counters in a row of the pair sketch.
+     * @param depth Number of rows of the pair sketch.
+     * @param precision Precision of distinct callers of a phone.
+     * @param sharedPrecision Precision of registers shared by distinct callers of all phones.
+     * @param talkers Number of tracked heavy talkers.
+     * @param bucket Length of a traffic bucket.
+     * @param buckets Number of traffic buckets.
+     */
+    public CallAnalytics(int width, int depth, int precision, int sharedPrecision, int talkers, Duration bucket,
+                         int buckets) {
+        this.pairs = new CountMinSketch(width, depth);
+        this.callers = new VirtualHyperLogLog(sharedPrecision, precision);
+        this.allCallers = new HyperLogLog(TOTAL_PRECISION);
+        this.talkers = new HeavyHitters(talkers, Runtime.getRuntime().availableProcessors() * 4);
+        this.traffic = new TrafficWindow(bucket, buckets);
+        this.lastTime = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    @Override
+    public void onCallEvent(CallEventType type, Phone caller, CallParty callee, boolean accept,
+                            long time, Duration conversationTime) {
+        if (type == CallEventType.ATTEMPT || type == CallEventType.ENDED) {
+            return;
+        }
+        record(type, caller.getNumber(), callee.getNumber(), time, conversationTime.toMillis());
+    }
+
+    /**
+     * Counts a call.
+     * @param outcome Call outcome, {@code ACCEPTED}, {@code REJECTED} or {@code BUSY}.
+     * @param caller Number of the source phone.
+     * @param callee Number of the destination phone.
+     * @param time Call time in epoch milliseconds.
+     * @param conversationMillis Conversation time of accepted call in milliseconds.
+     */
+    public void record(CallEventType outcome, PhoneNumber caller, PhoneNumber callee, long time,
+                       long conversationMillis) {
+        long from = hash(caller);
+        pairs.add(pairHash(from, callee), 1);
+        allCallers.add(from);
+        callers.add(hash(callee), from);
+        if (outcome == CallEventType.ACCEPTED && conversationMillis > 0) {
+            talkers.add(caller, conversationMillis);
+            talkers.add(callee, conversationMillis);
+        }
+        traffic.record(outcome, time, conversationMillis);
+        if (time > lastTime.get()) {
+            lastTime.accumulateAndGet(time, Math::max);
+        }
+    }
+
+    /**
+     * Mixes bits of a number into a 64-bit hash with the finalizer of MurmurHash3.
+     * @param number Phone number.
+     * @return 64-bit hash.
+     */
+    private static long hash(PhoneNumber number) {
+        long h = (long) number.getLength() << 32 | number.getValue();
+        h = (h ^ h >>> 33) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ h >>> 33) * 0xC4CEB9FE1A85EC53L;
+        return h ^ h >>> 33;
+    }
+
+    /**
+     * Hashes an ordered number pair.
+     * @param caller Hash of the source number.
+     * @param callee Destination number.
+     * @return 64-bit hash.
+     */
+    private static long pairHash(long caller, PhoneNumber callee) {
+        return hash(callee) ^ Long.rotateLeft(caller, 31) * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Estimates number of calls from one number to another.
+     * @param caller Number of the source phone.
+     * @param callee Number of the destination phone.
+     * @return Estimated number of calls, never lower than the true number.
+     */
+    public long getCallFrequency(PhoneNumber caller, PhoneNumber callee) {
+        return pairs.estimate(pairHash(hash(caller), callee));
+    }
+
+    /**
+     * Estimates number of distinct phones which called a phone.
+     * @param callee Number of the destination phone.
+     * @return Estimated number of distinct callers.
+     */
+    public long getDistinctCallers(PhoneNumber callee) {
+        return callers.estimate(hash(callee));
+    }
+
+    /**
+     * Estimates number of distinct phones which made a call.
+     * @return Estimated number of distinct callers.
+     */
+    public long getDistinctCallers() {
+        return allCallers.estimate();
+    }
+
+    /**
+     * Returns phones with the longest conversation time, made and received.
+     * @param count Maximum number of returned phones.
+     * @return Phones ordered by decreasing conversation time in milliseconds.
+     */
+    public List<HeavyHitters.Entry> getHeavyTalkers(int count) {
+        return talkers.top(count);
+    }
+
+    /**
+     * Returns traffic of the window ending with the latest call.
+     * @return Traffic of the last {@code getTraffic().getLength()}.
+     */
+    public TrafficWindow.Rollup getCurrentTraffic() {
+        return traffic.getWindow(lastTime.get());
+    }
+
+    /**
+     * Returns traffic of the busiest window, e.g. the busy hour with default buckets.
+     * @return Traffic of the busiest window, null if no calls were counted.
+     */
+    public TrafficWindow.Rollup getBusiestTraffic() {
+        return traffic.getBusiest(lastTime.get());
+    }
+
+    /**
+     * Traffic window getter.
+     * @return Bucketed traffic, queryable for any time.
+     */
+    public TrafficWindow getTraffic() {
+        return traffic;
+    }
+
+    /**
+     * Number of calls getter.
+     * @return Number of counted calls.
+     */
+    public long getCalls() {
+        return pairs.getTotal();
+    }
+
+    /**
+     * Memory getter.
+     * @return Approximate number of bytes taken by sketches, without object overhead.
+     */
+    public long getBytes() {
+        return pairs.getBytes() + allCallers.getBytes() + callers.getBytes();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("analytics: %d calls, %d distinct callers, pair error bound: %.1f calls, " +
+                        "sketches: %d KiB", getCalls(), getDistinctCallers(), pairs.getErrorBound(),
+                getBytes() / 1024) + System.lineSeparator() +
+                "heavy talkers (ms): " + getHeavyTalkers(10) + System.lineSeparator() +
+                "current window: " + getCurrentTraffic() + System.lineSeparator() +
+                "busiest window: " + getBusiestTraffic();
+    }
+}
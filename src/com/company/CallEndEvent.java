@@ -0,0 +1,35 @@
+package com.company;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event committed when conversation time elapses and both phones are freed.
+ */
+@Name("com.company.CallEnd")
+@Label("Call End")
+@Category("Phone Simulator")
+@Description("Conversation time elapsed and both phones were freed")
+class CallEndEvent extends Event {
+
+    /**
+     * Caller's phone number.
+     */
+    @Label("Caller")
+    String caller;
+    /**
+     * Destination phone number.
+     */
+    @Label("Callee")
+    String callee;
+    /**
+     * Conversation time.
+     */
+    @Label("Conversation Time")
+    @Timespan(Timespan.MILLISECONDS)
+    long conversationTime;
+}
@@ -0,0 +1,108 @@
+package com.company;
+
+import java.time.Duration;
+
+/**
+ * Immutable call event published by {@code CallEventPublisher}. It refers to phones by their numbers only,
+ * so subscribers never hold phones or their registers.
+ */
+public final class CallEvent {
+
+    /**
+     * Field {@code type} holds event type.
+     */
+    private final CallEventType type;
+    /**
+     * Field {@code caller} holds number of the source phone.
+     */
+    private final PhoneNumber caller;
+    /**
+     * Field {@code callee} holds number of the destination phone.
+     */
+    private final PhoneNumber callee;
+    /**
+     * Field {@code accept} holds flag passed to {@code call} telling if destination phone should accept call.
+     */
+    private final boolean accept;
+    /**
+     * Field {@code time} holds event time in epoch milliseconds.
+     */
+    private final long time;
+    /**
+     * Field {@code conversationMillis} holds conversation duration in milliseconds.
+     */
+    private final long conversationMillis;
+
+    /**
+     * Class {@code CallEvent} constructor.
+     * @param type Event type.
+     * @param caller Number of the source phone.
+     * @param callee Number of the destination phone.
+     * @param accept Flag passed to {@code call} telling if destination phone should accept call.
+     * @param time Event time in epoch milliseconds.
+     * @param conversationMillis Conversation duration in milliseconds.
+     */
+    public CallEvent(CallEventType type, PhoneNumber caller, PhoneNumber callee, boolean accept, long time,
+                     long conversationMillis) {
+        this.type = type;
+        this.caller = caller;
+        this.callee = callee;
+        this.accept = accept;
+        this.time = time;
+        this.conversationMillis = conversationMillis;
+    }
+
+    /**
+     * Event type getter.
+     * @return Event type.
+     */
+    public CallEventType getType() {
+        return type;
+    }
+
+    /**
+     * Caller's number getter.
+     * @return Number of the source phone.
+     */
+    public PhoneNumber getCaller() {
+        return caller;
+    }
+
+    /**
+     * Callee's number getter.
+     * @return Number of the destination phone.
+     */
+    public PhoneNumber getCallee() {
+        return callee;
+    }
+
+    /**
+     * Accept flag getter.
+     * @return Flag passed to {@code call} telling if destination phone should accept call.
+     */
+    public boolean isAccept() {
+        return accept;
+    }
+
+    /**
+     * Event time getter.
+     * @return Event time in epoch milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Conversation time getter.
+     * @return Conversation duration in milliseconds, zero for calls which weren't accepted.
+     */
+    public long getConversationMillis() {
+        return conversationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "{" + type + ", " + caller + " -> " + callee + ", " + time + ", " +
+                Duration.ofMillis(conversationMillis) + '}';
+    }
+}
@@ -0,0 +1,391 @@
+package com.company;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reactive stream of call events. Added as {@code CallListener} to phones or to {@code PhoneSimulator},
+ * it publishes every event to all subscribers with backpressure.
+ * <p>
+ * Every subscriber has its own bounded buffer written by calling threads without locks. Events are delivered
+ * by tasks of an executor, each delivering up to a batch of events, so the cost of scheduling is paid once
+ * per batch and one slow subscriber never delays others. What happens when a subscriber's buffer is full
+ * is chosen with {@code OverflowPolicy}. Events are created only when there is a subscriber.
+ */
+public class CallEventPublisher implements Flow.Publisher<CallEvent>, CallListener, AutoCloseable {
+
+    /**
+     * Default number of buffered events per subscriber.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+    /**
+     * Default number of events delivered by a single task.
+     */
+    public static final int DEFAULT_BATCH = 256;
+    /**
+     * Time a blocked publisher sleeps before checking the buffer again.
+     */
+    private static final long BLOCKED_PARK_NANOS = 10_000;
+    /**
+     * Ways of handling an event when subscriber's buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * New event is dropped and counted.
+         */
+        DROP_NEWEST,
+        /**
+         * The oldest buffered event is dropped and counted to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Calling thread waits until subscriber takes an event, so slow subscriber slows the simulation down.
+         */
+        BLOCK,
+        /**
+         * Subscription is cancelled and subscriber receives {@code onError} with {@code IllegalStateException}.
+         */
+        ERROR
+    }
+
+    /**
+     * Field {@code executor} runs delivery tasks.
+     */
+    private final Executor executor;
+    /**
+     * Field {@code capacity} holds number of buffered events per subscriber, a power of two.
+     */
+    private final int capacity;
+    /**
+     * Field {@code batch} holds maximum number of events delivered by a single task.
+     */
+    private final int batch;
+    /**
+     * Field {@code policy} handles events arriving when subscriber's buffer is full.
+     */
+    private final OverflowPolicy policy;
+    /**
+     * Field {@code subscriptions} holds active subscriptions.
+     */
+    private final CopyOnWriteArrayList<Subscription> subscriptions;
+    /**
+     * Field {@code dropped} counts events dropped by all subscriptions.
+     */
+    private final LongAdder dropped;
+    /**
+     * Field {@code closed} is set when publisher is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Class {@code CallEventPublisher} constructor. Events are delivered by the common fork-join pool,
+     * and the oldest events are dropped when a subscriber doesn't keep up.
+     */
+    public CallEventPublisher() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CAPACITY, DEFAULT_BATCH, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Class {@code CallEventPublisher} constructor.
+     * @param executor Executor running delivery tasks.
+     * @param capacity Number of buffered events per subscriber, rounded up to a power of two.
+     * @param batch Maximum number of events delivered by a single task.
+     * @param policy Handling of events arriving when subscriber's buffer is full.
+     */
+    public CallEventPublisher(Executor executor, int capacity, int batch, OverflowPolicy policy) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("invalid capacity " + capacity);
+        }
+        if (batch <= 0) {
+            throw new IllegalArgumentException("invalid batch size " + batch);
+        }
+        this.executor = Objects.requireNonNull(executor);
+        this.capacity = Math.max(Integer.highestOneBit(capacity - 1) << 1, 1);
+        this.batch = batch;
+        this.policy = Objects.requireNonNull(policy);
+        this.subscriptions = new CopyOnWriteArrayList<>();
+        this.dropped = new LongAdder();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CallEvent> subscriber) {
+        Objects.requireNonNull(subscriber);
+        Subscription subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.complete();
+            return;
+        }
+        subscriptions.add(subscription);
+    }
+
+    @Override
+    public void onCallEvent(CallEventType type, Phone caller, CallParty callee, boolean accept,
+                            long time, Duration conversationTime) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        publish(new CallEvent(type, caller.getNumber(), callee.getNumber(), accept, time, conversationTime.toMillis()));
+    }
+
+    /**
+     * Publishes event to all subscribers.
+     * @param event Call event.
+     */
+    public void publish(CallEvent event) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Number of subscribers getter.
+     * @return Number of active subscriptions.
+     */
+    public int getSubscribers() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Dropped events getter.
+     * @return Number of events dropped because buffer of a subscriber was full, counted once per subscriber.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops accepting subscribers and completes all subscriptions after their buffered events are delivered.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * Subscription with its own bounded buffer. Buffer slots are claimed by counters: publishers move
+     * {@code tail}, the delivery task and publishers dropping the oldest event move {@code head}. Every slot
+     * holds the sequence number it's ready for, so a slot is claimed only after its previous event was
+     * published or taken, and nobody ever waits for another thread.
+     */
+    private final class Subscription implements Flow.Subscription, Runnable {
+
+        /**
+         * Subscriber receiving events.
+         */
+        private final Flow.Subscriber<? super CallEvent> subscriber;
+        /**
+         * Buffered events.
+         */
+        private final AtomicReferenceArray<CallEvent> buffer;
+        /**
+         * Sequence number each buffer slot is ready for: its event's sequence number plus one once
+         * the event is published, the next sequence number for the slot once the event is taken.
+         */
+        private final AtomicLongArray sequences;
+        /**
+         * Mask turning sequence numbers into buffer positions.
+         */
+        private final int mask;
+        /**
+         * Sequence number of the next claimed slot for a new event.
+         */
+        private final AtomicLong tail;
+        /**
+         * Sequence number of the oldest buffered event.
+         */
+        private final AtomicLong head;
+        /**
+         * Number of events requested by subscriber and not delivered yet.
+         */
+        private final AtomicLong demand;
+        /**
+         * Flag set while a delivery task is scheduled or running.
+         */
+        private final AtomicBoolean scheduled;
+        /**
+         * Error to be delivered instead of further events, or null.
+         */
+        private volatile Throwable error;
+        /**
+         * Flag set when subscription should complete after buffered events.
+         */
+        private volatile boolean completing;
+        /**
+         * Flag set when subscription was cancelled or terminated.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * Class {@code Subscription} constructor.
+         * @param subscriber Subscriber receiving events.
+         */
+        Subscription(Flow.Subscriber<? super CallEvent> subscriber) {
+            this.subscriber = subscriber;
+            this.buffer = new AtomicReferenceArray<>(capacity);
+            this.sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+            this.mask = capacity - 1;
+            this.tail = new AtomicLong();
+            this.head = new AtomicLong();
+            this.demand = new AtomicLong();
+            this.scheduled = new AtomicBoolean();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("non-positive request " + n);
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Completes subscription after its buffered events are delivered.
+         */
+        void complete() {
+            completing = true;
+            signal();
+        }
+
+        /**
+         * Adds event to the buffer, handling full buffer according to the overflow policy.
+         * @param event Call event.
+         */
+        void offer(CallEvent event) {
+            while (!cancelled) {
+                long sequence = tail.get();
+                int position = (int) sequence & mask;
+                long ready = sequences.get(position);
+                if (ready == sequence) {
+                    if (tail.compareAndSet(sequence, sequence + 1)) {
+                        buffer.set(position, event);
+                        sequences.set(position, sequence + 1);
+                        signal();
+                        return;
+                    }
+                    continue;
+                }
+                if (ready > sequence) {
+                    continue;
+                }
+                switch (policy) {
+                    case DROP_NEWEST:
+                        dropped.increment();
+                        return;
+                    case DROP_OLDEST:
+                        if (take() != null) {
+                            dropped.increment();
+                        }
+                        break;
+                    case BLOCK:
+                        signal();
+                        LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+                        break;
+                    default:
+                        error = new IllegalStateException("buffer of " + capacity + " events overflowed");
+                        signal();
+                        return;
+                }
+            }
+        }
+
+        /**
+         * Removes the oldest event from the buffer.
+         * @return Removed event or null if buffer is empty or the oldest event isn't published yet.
+         */
+        private CallEvent take() {
+            while (true) {
+                long sequence = head.get();
+                int position = (int) sequence & mask;
+                long ready = sequences.get(position);
+                if (ready < sequence + 1) {
+                    return null;
+                }
+                if (ready == sequence + 1 && head.compareAndSet(sequence, sequence + 1)) {
+                    CallEvent event = buffer.get(position);
+                    buffer.set(position, null);
+                    sequences.set(position, sequence + capacity);
+                    return event;
+                }
+            }
+        }
+
+        /**
+         * Schedules delivery task unless it's already scheduled.
+         */
+        private void signal() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException e) {
+                    scheduled.set(false);
+                    cancel();
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        /**
+         * Delivery task: passes up to a batch of requested events to subscriber, then terminates the subscription
+         * if it failed or completed. Schedules itself again if more events can be delivered.
+         */
+        @Override
+        public void run() {
+            try {
+                int delivered = 0;
+                while (!cancelled && error == null && delivered < batch && demand.get() > 0) {
+                    CallEvent event = take();
+                    if (event == null) {
+                        break;
+                    }
+                    demand.decrementAndGet();
+                    delivered++;
+                    subscriber.onNext(event);
+                }
+                if (!cancelled) {
+                    Throwable error = this.error;
+                    if (error != null) {
+                        cancel();
+                        subscriber.onError(error);
+                    } else if (completing && head.get() == tail.get()) {
+                        cancel();
+                        subscriber.onComplete();
+                    }
+                }
+            } catch (RuntimeException e) {
+                cancel();
+                subscriber.onError(e);
+            } finally {
+                scheduled.set(false);
+            }
+            if (!cancelled && (error != null || completing && head.get() == tail.get()
+                    || demand.get() > 0 && head.get() != tail.get())) {
+                signal();
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.company;
+
+/**
+ * Types of events emitted by phones during call setup and conversations.
+ */
+public enum CallEventType {
+
+    /**
+     * Destination phone accepted the call and conversation started.
+     */
+    ACCEPTED,
+    /**
+     * Destination phone rejected the call.
+     */
+    REJECTED,
+    /**
+     * Destination phone was unavailable.
+     */
+    BUSY,
+    /**
+     * Conversation time elapsed and both phones were freed.
+     */
+    ENDED,
+    /**
+     * Phone started a call, emitted before the call is set up and followed by its outcome
+     * unless the calling phone itself was unavailable. Declared last, so ordinals written by
+     * {@code CallJournal} keep their meaning.
+     */
+    ATTEMPT
+}
@@ -0,0 +1,99 @@
+package com.company;
+
+import java.time.Duration;
+import jdk.jfr.EventType;
+
+/**
+ * Commits Flight Recorder events of calls made by phones, whether phones have {@code CallMetrics} or not.
+ * Events are created only when a recording enables them, so phones pay a single check while none does.
+ */
+final class CallEvents {
+
+    /**
+     * Type of {@code CallStartEvent}.
+     */
+    private static final EventType START = EventType.getEventType(CallStartEvent.class);
+    /**
+     * Type of {@code CallEndEvent}.
+     */
+    private static final EventType END = EventType.getEventType(CallEndEvent.class);
+    /**
+     * Type of {@code CallRejectEvent}.
+     */
+    private static final EventType REJECT = EventType.getEventType(CallRejectEvent.class);
+
+    /**
+     * Class {@code CallEvents} has only static methods.
+     */
+    private CallEvents() {
+    }
+
+    /**
+     * Checks if events which need setup time are recorded, so phones know if they have to measure it.
+     * @return True if a running recording enables start or reject events.
+     */
+    static boolean isTimed() {
+        return START.isEnabled() || REJECT.isEnabled();
+    }
+
+    /**
+     * Commits event of accepted call.
+     * @param caller Source phone.
+     * @param callee Destination phone.
+     * @param start Setup start time from {@code System.nanoTime}.
+     * @param conversationTime Planned conversation time.
+     */
+    static void started(Phone caller, CallParty callee, long start, Duration conversationTime) {
+        if (!START.isEnabled()) {
+            return;
+        }
+        CallStartEvent event = new CallStartEvent();
+        if (event.shouldCommit()) {
+            event.caller = caller.getPhoneNumber();
+            event.callee = callee.getPhoneNumber();
+            event.setupTime = start == 0 ? 0 : System.nanoTime() - start;
+            event.conversationTime = conversationTime.toMillis();
+            event.commit();
+        }
+    }
+
+    /**
+     * Commits event of ended conversation.
+     * @param caller Source phone.
+     * @param callee Destination phone.
+     * @param conversationTime Conversation time.
+     */
+    static void ended(Phone caller, CallParty callee, Duration conversationTime) {
+        if (!END.isEnabled()) {
+            return;
+        }
+        CallEndEvent event = new CallEndEvent();
+        if (event.shouldCommit()) {
+            event.caller = caller.getPhoneNumber();
+            event.callee = callee.getPhoneNumber();
+            event.conversationTime = conversationTime.toMillis();
+            event.commit();
+        }
+    }
+
+    /**
+     * Commits event of failed call.
+     * @param caller Source phone.
+     * @param callee Destination phone.
+     * @param start Setup start time from {@code System.nanoTime}.
+     * @param reason {@code REJECTED} if destination phone rejected call or {@code BUSY} if a phone was unavailable.
+     */
+    static void failed(Phone caller, CallParty callee, long start, CallEventType reason) {
+        if (!REJECT.isEnabled()) {
+            return;
+        }
+        CallRejectEvent event = new CallRejectEvent();
+        if (event.shouldCommit()) {
+            event.caller = caller.getPhoneNumber();
+            event.callee = callee.getPhoneNumber();
+            event.reason = reason.name();
+            event.setupTime = start == 0 ? 0 : System.nanoTime() - start;
+            event.commit();
+        }
+    }
+}
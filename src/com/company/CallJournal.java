@@ -0,0 +1,423 @@
+package com.company;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of call events written through memory-mapped segment files.
+ * Every event is a fixed-size record protected with CRC32 checksum, so appending it is a few stores into
+ * mapped memory. When a segment is full, a new one is created. On opening, the last segment is scanned
+ * and the journal continues after its last valid record, so records torn by a crash are overwritten.
+ * Segments are named {@code journal-<sequence>.cdr} and stored in one directory.
+ * Attempts aren't journaled, every call is recorded once with its outcome.
+ */
+public class CallJournal implements CallListener, Closeable {
+
+    /**
+     * Size of a single record in bytes.
+     */
+    public static final int RECORD_BYTES = 32;
+    /**
+     * Default size of a segment file in bytes.
+     */
+    public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    /**
+     * Marker written at the beginning of every record.
+     */
+    private static final byte MAGIC = (byte) 0xCD;
+    /**
+     * Offset of record checksum, which covers all preceding bytes of the record.
+     */
+    private static final int CHECKSUM_OFFSET = 28;
+    /**
+     * Prefix of segment file names.
+     */
+    private static final String PREFIX = "journal-";
+    /**
+     * Suffix of segment file names.
+     */
+    private static final String SUFFIX = ".cdr";
+
+    /**
+     * Directory of segment files.
+     */
+    private final Path directory;
+    /**
+     * Size of a single segment in bytes, rounded down to whole records.
+     */
+    private final int segmentBytes;
+    /**
+     * Checksum calculator reused by appending thread.
+     */
+    private final CRC32 crc;
+    /**
+     * Scratch record assembled before it is copied to the segment.
+     */
+    private final byte[] record;
+    /**
+     * Channel of the current segment.
+     */
+    private FileChannel channel;
+    /**
+     * Mapped memory of the current segment.
+     */
+    private MappedByteBuffer segment;
+    /**
+     * Sequence number of the current segment.
+     */
+    private long segmentSequence;
+    /**
+     * Flag set when journal was closed.
+     */
+    private boolean closed;
+
+    /**
+     * Class {@code CallJournal} constructor. Opens journal with default segment size.
+     * @param directory Directory of segment files, created if it doesn't exist.
+     * @throws IOException If segment can't be opened.
+     */
+    public CallJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Class {@code CallJournal} constructor. Continues the last segment after its last valid record.
+     * @param directory Directory of segment files, created if it doesn't exist.
+     * @param segmentBytes Size of a single segment in bytes.
+     * @throws IOException If segment can't be opened.
+     */
+    public CallJournal(Path directory, int segmentBytes) throws IOException {
+        if (segmentBytes < RECORD_BYTES) {
+            throw new IllegalArgumentException("invalid segment size " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes / RECORD_BYTES * RECORD_BYTES;
+        this.crc = new CRC32();
+        this.record = new byte[RECORD_BYTES];
+        Files.createDirectories(directory);
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            open(0);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            open(sequenceOf(last));
+            segment.position(recover(segment));
+        }
+    }
+
+    @Override
+    public void onCallEvent(CallEventType type, Phone caller, CallParty callee, boolean accept,
+                            long time, Duration conversationTime) {
+        if (type == CallEventType.ATTEMPT) {
+            return;
+        }
+        PhoneNumber from = caller.getNumber();
+        PhoneNumber to = callee.getNumber();
+        append(type, from.getValue(), from.getLength(), to.getValue(), to.getLength(),
+                accept, time, conversationTime.toMillis());
+    }
+
+    /**
+     * Appends a record to the journal, rolling over to a new segment when the current one is full.
+     * @param type Event type.
+     * @param caller Caller's number.
+     * @param callerLength Number of digits of caller's number.
+     * @param callee Callee's number.
+     * @param calleeLength Number of digits of callee's number.
+     * @param accept Flag passed to {@code call} telling if destination phone should accept call.
+     * @param time Event time in epoch milliseconds.
+     * @param conversationMillis Conversation duration in milliseconds.
+     */
+    public synchronized void append(CallEventType type, int caller, int callerLength, int callee, int calleeLength,
+                                    boolean accept, long time, long conversationMillis) {
+        if (closed) {
+            throw new IllegalStateException("journal is closed");
+        }
+        try {
+            if (segment.remaining() < RECORD_BYTES) {
+                roll();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("can't roll journal segment", e);
+        }
+        byte[] r = record;
+        r[0] = MAGIC;
+        r[1] = (byte) type.ordinal();
+        r[2] = (byte) (accept ? 1 : 0);
+        r[3] = (byte) (callerLength << 4 | calleeLength);
+        putInt(r, 4, caller);
+        putInt(r, 8, callee);
+        putLong(r, 12, time);
+        putLong(r, 20, conversationMillis);
+        crc.reset();
+        crc.update(r, 0, CHECKSUM_OFFSET);
+        putInt(r, CHECKSUM_OFFSET, (int) crc.getValue());
+        segment.put(r);
+    }
+
+    /**
+     * Forces written records of the current segment to the storage device.
+     */
+    public synchronized void force() {
+        if (!closed) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Forces written records to the storage device and closes the journal.
+     * @throws IOException If segment can't be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            segment.force();
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads all valid records of the journal in directory, oldest first.
+     * Reading stops at the first torn record of every segment.
+     * @param directory Directory of segment files.
+     * @param visitor Visitor receiving records. The record object is reused between calls.
+     * @return Number of read records.
+     * @throws IOException If segment can't be read.
+     */
+    public static long read(Path directory, RecordVisitor visitor) throws IOException {
+        Record current = new Record();
+        CRC32 crc = new CRC32();
+        long count = 0;
+        for (Path path : segments(directory)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (buffer.remaining() >= RECORD_BYTES) {
+                    buffer.get(current.bytes);
+                    if (!current.isValid(crc)) {
+                        break;
+                    }
+                    visitor.visit(current);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds position after the last valid record of a segment.
+     * @param buffer Mapped segment.
+     * @return Position of the first free or torn record.
+     */
+    private static int recover(MappedByteBuffer buffer) {
+        Record current = new Record();
+        CRC32 crc = new CRC32();
+        int position = 0;
+        while (position + RECORD_BYTES <= buffer.limit()) {
+            buffer.get(position, current.bytes);
+            if (!current.isValid(crc)) {
+                break;
+            }
+            position += RECORD_BYTES;
+        }
+        return position;
+    }
+
+    /**
+     * Closes the current segment and opens the next one.
+     * @throws IOException If segment can't be opened.
+     */
+    private void roll() throws IOException {
+        segment.force();
+        channel.close();
+        open(segmentSequence + 1);
+    }
+
+    /**
+     * Opens and maps segment with given sequence number.
+     * @param sequence Segment sequence number.
+     * @throws IOException If segment can't be opened.
+     */
+    private void open(long sequence) throws IOException {
+        Path path = directory.resolve(String.format("%s%016d%s", PREFIX, sequence, SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segmentSequence = sequence;
+    }
+
+    /**
+     * Lists segment files in directory ordered by sequence numbers.
+     * @param directory Directory of segment files.
+     * @return Paths of segments.
+     * @throws IOException If directory can't be read.
+     */
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    /**
+     * Extracts sequence number from segment file name.
+     * @param path Segment path.
+     * @return Sequence number.
+     */
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Writes {@code int} in big-endian order.
+     * @param bytes Destination array.
+     * @param offset Offset in array.
+     * @param value Written value.
+     */
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Writes {@code long} in big-endian order.
+     * @param bytes Destination array.
+     * @param offset Offset in array.
+     * @param value Written value.
+     */
+    private static void putLong(byte[] bytes, int offset, long value) {
+        putInt(bytes, offset, (int) (value >>> 32));
+        putInt(bytes, offset + 4, (int) value);
+    }
+
+    /**
+     * Reads {@code int} in big-endian order.
+     * @param bytes Source array.
+     * @param offset Offset in array.
+     * @return Read value.
+     */
+    private static int getInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 |
+                (bytes[offset + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+    }
+
+    /**
+     * Reads {@code long} in big-endian order.
+     * @param bytes Source array.
+     * @param offset Offset in array.
+     * @return Read value.
+     */
+    private static long getLong(byte[] bytes, int offset) {
+        return (long) getInt(bytes, offset) << 32 | getInt(bytes, offset + 4) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Visitor of journal records.
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+
+        /**
+         * Receives journal record.
+         * @param record Record, valid only during this call.
+         */
+        void visit(Record record);
+    }
+
+    /**
+     * Journal record read by {@code read}. The same object is reused for all records.
+     */
+    public static final class Record {
+
+        /**
+         * Raw bytes of the record.
+         */
+        private final byte[] bytes = new byte[RECORD_BYTES];
+
+        /**
+         * Checks record marker and checksum.
+         * @param crc Checksum calculator.
+         * @return True if record is complete.
+         */
+        private boolean isValid(CRC32 crc) {
+            if (bytes[0] != MAGIC || bytes[1] < 0 || bytes[1] >= CallEventType.values().length) {
+                return false;
+            }
+            crc.reset();
+            crc.update(bytes, 0, CHECKSUM_OFFSET);
+            return (int) crc.getValue() == getInt(bytes, CHECKSUM_OFFSET);
+        }
+
+        /**
+         * Event type getter.
+         * @return Event type.
+         */
+        public CallEventType getType() {
+            return CallEventType.values()[bytes[1]];
+        }
+
+        /**
+         * Accept flag getter.
+         * @return Flag passed to {@code call} telling if destination phone should accept call.
+         */
+        public boolean isAccept() {
+            return bytes[2] != 0;
+        }
+
+        /**
+         * Caller's number getter.
+         * @return Caller's phone number.
+         */
+        public String getCallerNumber() {
+            return PhoneNumber.of(getInt(bytes, 4), bytes[3] >>> 4 & 0xF).toString();
+        }
+
+        /**
+         * Callee's number getter.
+         * @return Callee's phone number.
+         */
+        public String getCalleeNumber() {
+            return PhoneNumber.of(getInt(bytes, 8), bytes[3] & 0xF).toString();
+        }
+
+        /**
+         * Event time getter.
+         * @return Event time in epoch milliseconds.
+         */
+        public long getTime() {
+            return getLong(bytes, 12);
+        }
+
+        /**
+         * Conversation time getter.
+         * @return Conversation duration in milliseconds.
+         */
+        public long getConversationMillis() {
+            return getLong(bytes, 20);
+        }
+
+        @Override
+        public String toString() {
+            return "{" + getType() + ", " + getCallerNumber() + " -> " + getCalleeNumber() +
+                    ", " + getTime() + ", " + Duration.ofMillis(getConversationMillis()) + '}';
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.company;
+
+import java.time.Duration;
+
+/**
+ * Listener notified about call events of phones. It is called on the thread which made the call
+ * or ended the conversation, so it should be fast and thread-safe.
+ */
+@FunctionalInterface
+public interface CallListener {
+
+    /**
+     * Listener which ignores all events.
+     */
+    CallListener NONE = (type, caller, callee, accept, time, conversationTime) -> { };
+
+    /**
+     * Receives call event.
+     * @param type Event type.
+     * @param caller Source phone of the call.
+     * @param callee Destination phone of the call, only its number if the phone is owned by another cluster node.
+     * @param accept Flag passed to {@code call} telling if destination phone should accept call.
+     * @param time Event time in epoch milliseconds.
+     * @param conversationTime Conversation duration, zero for calls which weren't accepted.
+     */
+    void onCallEvent(CallEventType type, Phone caller, CallParty callee, boolean accept,
+                     long time, Duration conversationTime);
+}
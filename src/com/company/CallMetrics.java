@@ -0,0 +1,174 @@
+package com.company;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call setup instrumentation of phones: setup latency histogram, in-flight conversations gauge and
+ * counters of failed calls. Phones without metrics skip instrumentation after a single null check,
+ * so metrics cost almost nothing when they are disabled. Flight Recorder events are committed by phones
+ * with {@code CallEvents} whether they have metrics or not.
+ */
+public class CallMetrics {
+
+    /**
+     * Percentiles of setup latency written by {@code writeTo}.
+     */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    /**
+     * Quantile labels of {@code PERCENTILES}.
+     */
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999", "0.9999"};
+
+    /**
+     * Field {@code setupLatency} holds time spent in {@code Phone.call} setting up calls.
+     */
+    private final LatencyHistogram setupLatency = new LatencyHistogram();
+    /**
+     * Field {@code conversations} holds number of conversations in progress.
+     */
+    private final LongAdder conversations = new LongAdder();
+    /**
+     * Field {@code acceptedCalls} counts accepted calls.
+     */
+    private final LongAdder acceptedCalls = new LongAdder();
+    /**
+     * Field {@code unavailableCalls} counts calls failed with {@code PhoneUnavailableException}.
+     */
+    private final LongAdder unavailableCalls = new LongAdder();
+    /**
+     * Field {@code rejectedCalls} counts calls failed with {@code CallRejectedException}.
+     */
+    private final LongAdder rejectedCalls = new LongAdder();
+
+    /**
+     * Records accepted call.
+     * @param caller Source phone.
+     * @param callee Destination phone.
+     * @param start Setup start time from {@code System.nanoTime}.
+     * @param conversationTime Planned conversation time.
+     */
+    void accepted(Phone caller, CallParty callee, long start, Duration conversationTime) {
+        setupLatency.record(System.nanoTime() - start);
+        acceptedCalls.increment();
+        conversations.increment();
+    }
+
+    /**
+     * Records end of conversation.
+     * @param caller Source phone.
+     * @param callee Destination phone.
+     * @param conversationTime Conversation time.
+     */
+    void ended(Phone caller, CallParty callee, Duration conversationTime) {
+        conversations.decrement();
+    }
+
+    /**
+     * Records failed call.
+     * @param caller Source phone.
+     * @param callee Destination phone.
+     * @param start Setup start time from {@code System.nanoTime}.
+     * @param reason {@code REJECTED} if destination phone rejected call or {@code BUSY} if a phone was unavailable.
+     */
+    void failed(Phone caller, CallParty callee, long start, CallEventType reason) {
+        setupLatency.record(System.nanoTime() - start);
+        (reason == CallEventType.REJECTED ? rejectedCalls : unavailableCalls).increment();
+    }
+
+    /**
+     * Setup latency getter.
+     * @return Histogram of call setup time in nanoseconds.
+     */
+    public LatencyHistogram getSetupLatency() {
+        return setupLatency;
+    }
+
+    /**
+     * In-flight conversations gauge getter.
+     * @return Number of conversations in progress.
+     */
+    public long getConversations() {
+        return conversations.sum();
+    }
+
+    /**
+     * Live threads gauge getter.
+     * @return Number of live threads of the JVM.
+     */
+    public int getLiveThreads() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    /**
+     * Accepted calls getter.
+     * @return Number of accepted calls.
+     */
+    public long getAcceptedCalls() {
+        return acceptedCalls.sum();
+    }
+
+    /**
+     * Unavailable calls getter.
+     * @return Number of calls failed with {@code PhoneUnavailableException}.
+     */
+    public long getUnavailableCalls() {
+        return unavailableCalls.sum();
+    }
+
+    /**
+     * Rejected calls getter.
+     * @return Number of calls failed with {@code CallRejectedException}.
+     */
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+
+    /**
+     * Writes metrics in Prometheus text format, so they can be served by an HTTP endpoint as well.
+     * @param writer Destination writer.
+     * @throws IOException If metrics can't be written.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        writer.write("# TYPE phone_call_setup_seconds summary\n");
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            writer.write("phone_call_setup_seconds{quantile=\"" + QUANTILES[i] + "\"} " +
+                    setupLatency.getValueAtPercentile(PERCENTILES[i]) / 1e9 + "\n");
+        }
+        writer.write("phone_call_setup_seconds_count " + setupLatency.getCount() + "\n");
+        writer.write("phone_call_setup_seconds_max " + setupLatency.getMax() / 1e9 + "\n");
+        writer.write("# TYPE phone_conversations gauge\n");
+        writer.write("phone_conversations " + getConversations() + "\n");
+        writer.write("# TYPE phone_live_threads gauge\n");
+        writer.write("phone_live_threads " + getLiveThreads() + "\n");
+        writer.write("# TYPE phone_calls_total counter\n");
+        writer.write("phone_calls_total{outcome=\"accepted\"} " + getAcceptedCalls() + "\n");
+        writer.write("phone_calls_total{outcome=\"unavailable\"} " + getUnavailableCalls() + "\n");
+        writer.write("phone_calls_total{outcome=\"rejected\"} " + getRejectedCalls() + "\n");
+    }
+
+    /**
+     * Writes metrics to a file, see {@code writeTo}.
+     * @param file Destination file, overwritten if it exists.
+     * @throws IOException If file can't be written.
+     */
+    public void dump(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writeTo(writer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "setup latency: " + setupLatency + System.lineSeparator() +
+                "conversations: " + getConversations() + ", live threads: " + getLiveThreads() +
+                ", accepted: " + getAcceptedCalls() + ", unavailable: " + getUnavailableCalls() +
+                ", rejected: " + getRejectedCalls();
+    }
+}
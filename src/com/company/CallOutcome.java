@@ -0,0 +1,47 @@
+package com.company;
+
+import java.time.Duration;
+
+/**
+ * Outcomes of call setup returned by {@code Phone.tryCall}.
+ */
+public enum CallOutcome {
+
+    /**
+     * Destination phone accepted the call and conversation started.
+     */
+    ACCEPTED,
+    /**
+     * Destination phone rejected the call.
+     */
+    REJECTED,
+    /**
+     * Calling phone was already during the conversation.
+     */
+    CALLER_BUSY,
+    /**
+     * Destination phone was unavailable.
+     */
+    DESTINATION_BUSY;
+
+    /**
+     * Describes outcome of a call with the same message {@code Phone.call} prints.
+     * @param caller Source phone of the call.
+     * @param callee Destination phone of the call.
+     * @param conversationTime Conversation duration of accepted call.
+     * @return Human readable message.
+     */
+    public String describe(Phone caller, CallParty callee, Duration conversationTime) {
+        switch (this) {
+            case ACCEPTED:
+                return callee + " accepted call from " + caller.getPhoneNumber() +
+                        ". Conversation will last for " + conversationTime.getSeconds() + "s ...";
+            case REJECTED:
+                return callee + " rejected call from " + caller.getPhoneNumber();
+            case CALLER_BUSY:
+                return caller + " is already during the conversation";
+            default:
+                return caller + " phone number " + caller.getPhoneNumber() + " is currently unavailable";
+        }
+    }
+}
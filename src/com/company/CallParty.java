@@ -0,0 +1,20 @@
+package com.company;
+
+/**
+ * Destination of a call as seen by call listeners and metrics: a simulated phone, or just the number
+ * of a phone owned by another cluster node, which is never materialized on the calling node.
+ */
+public interface CallParty {
+
+    /**
+     * Phone number getter.
+     * @return Number of the phone.
+     */
+    PhoneNumber getNumber();
+
+    /**
+     * Phone number getter.
+     * @return Number of the phone as text.
+     */
+    String getPhoneNumber();
+}
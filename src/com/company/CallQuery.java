@@ -0,0 +1,288 @@
+package com.company;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Query over phone registers. Filters are combined; unset filters match all records.
+ * Registers answer time range filters with binary search on call time and filters by other phone's number
+ * with a reverse index, so e.g. calls between two phones in the last hour are found without a full scan:
+ * {@code new CallQuery().owner(a).counterpart(b).between(hourAgo, now).execute(directory)}.
+ */
+public class CallQuery {
+
+    /**
+     * Lower bound of call time in epoch milliseconds, inclusive.
+     */
+    private long from = Long.MIN_VALUE;
+    /**
+     * Upper bound of call time in epoch milliseconds, inclusive.
+     */
+    private long to = Long.MAX_VALUE;
+    /**
+     * Number of phone whose registers are searched or null for all phones.
+     */
+    private PhoneNumber owner;
+    /**
+     * Other phone's number value or -1 for any number.
+     */
+    private int counterpart = -1;
+    /**
+     * Number of digits of other phone's number.
+     */
+    private int counterpartLength;
+    /**
+     * Register flags checked by the query.
+     */
+    private int flagsMask;
+    /**
+     * Required values of checked register flags.
+     */
+    private int flagsValue;
+    /**
+     * Flag indicating if inbound registers are searched.
+     */
+    private boolean inbound = true;
+    /**
+     * Flag indicating if outbound registers are searched.
+     */
+    private boolean outbound = true;
+
+    /**
+     * Limits calls to the given time range.
+     * @param from Earliest call time, inclusive.
+     * @param to Latest call time, inclusive.
+     * @return This query.
+     */
+    public CallQuery between(Instant from, Instant to) {
+        this.from = from.toEpochMilli();
+        this.to = to.toEpochMilli();
+        return this;
+    }
+
+    /**
+     * Limits search to registers of one phone.
+     * @param phoneNumber Number of searched phone.
+     * @return This query.
+     */
+    public CallQuery owner(String phoneNumber) {
+        this.owner = PhoneNumber.parse(phoneNumber);
+        return this;
+    }
+
+    /**
+     * Limits calls to ones made with given phone.
+     * @param phoneNumber Other phone's number.
+     * @return This query.
+     */
+    public CallQuery counterpart(String phoneNumber) {
+        PhoneNumber number = PhoneNumber.parse(phoneNumber);
+        this.counterpart = number.getValue();
+        this.counterpartLength = number.getLength();
+        return this;
+    }
+
+    /**
+     * Limits calls to accepted or rejected ones.
+     * @param accepted True for accepted calls, false for rejected ones.
+     * @return This query.
+     */
+    public CallQuery accepted(boolean accepted) {
+        return flag(CallRegister.ACCEPTED, accepted);
+    }
+
+    /**
+     * Limits calls to ones when destination phone was available or busy.
+     * @param available True for available destination, false for busy one.
+     * @return This query.
+     */
+    public CallQuery available(boolean available) {
+        return flag(CallRegister.AVAILABLE, available);
+    }
+
+    /**
+     * Limits search to inbound registers.
+     * @return This query.
+     */
+    public CallQuery inboundOnly() {
+        inbound = true;
+        outbound = false;
+        return this;
+    }
+
+    /**
+     * Limits search to outbound registers.
+     * @return This query.
+     */
+    public CallQuery outboundOnly() {
+        inbound = false;
+        outbound = true;
+        return this;
+    }
+
+    /**
+     * Finds matching records in registers of one phone. Owner filter is ignored.
+     * @param phone Searched phone.
+     * @return Matching records, outbound ones first, newest first within a register.
+     */
+    public List<Match> execute(Phone phone) {
+        List<Match> matches = new ArrayList<>();
+        collect(phone, matches);
+        return matches;
+    }
+
+    /**
+     * Finds matching records in the directory, in owner's registers if owner is set or in all phones otherwise.
+     * @param directory Searched phones.
+     * @return Matching records ordered by phone IDs.
+     */
+    public List<Match> execute(PhoneDirectory directory) {
+        List<Match> matches = new ArrayList<>();
+        if (owner != null) {
+            Phone phone = directory.find(owner);
+            if (phone != null) {
+                collect(phone, matches);
+            }
+        } else {
+            for (Phone phone : directory) {
+                collect(phone, matches);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Adds matching records of a phone to the list.
+     * @param phone Searched phone.
+     * @param matches Destination list.
+     */
+    private void collect(Phone phone, List<Match> matches) {
+        if (outbound) {
+            phone.outboundRegister().query(this, entry -> matches.add(new Match(phone, false, entry)));
+        }
+        if (inbound) {
+            phone.inboundRegister().query(this, entry -> matches.add(new Match(phone, true, entry)));
+        }
+    }
+
+    /**
+     * Sets filter of a register flag.
+     * @param flag Flag bit.
+     * @param value Required value.
+     * @return This query.
+     */
+    private CallQuery flag(int flag, boolean value) {
+        flagsMask |= flag;
+        flagsValue = value ? flagsValue | flag : flagsValue & ~flag;
+        return this;
+    }
+
+    /**
+     * Lower time bound getter.
+     * @return Earliest call time in epoch milliseconds.
+     */
+    long getFrom() {
+        return from;
+    }
+
+    /**
+     * Upper time bound getter.
+     * @return Latest call time in epoch milliseconds.
+     */
+    long getTo() {
+        return to;
+    }
+
+    /**
+     * Other phone's number getter.
+     * @return Number value or -1 for any number.
+     */
+    int getCounterpart() {
+        return counterpart;
+    }
+
+    /**
+     * Other phone's number length getter.
+     * @return Number of digits.
+     */
+    int getCounterpartLength() {
+        return counterpartLength;
+    }
+
+    /**
+     * Checked flags getter.
+     * @return Mask of register flags checked by the query.
+     */
+    int getFlagsMask() {
+        return flagsMask;
+    }
+
+    /**
+     * Required flags getter.
+     * @return Required values of checked flags.
+     */
+    int getFlagsValue() {
+        return flagsValue;
+    }
+
+    /**
+     * Record found by a query.
+     */
+    public static class Match {
+
+        /**
+         * Phone owning the register.
+         */
+        private final Phone phone;
+        /**
+         * Flag indicating if record comes from inbound register.
+         */
+        private final boolean inbound;
+        /**
+         * Found record.
+         */
+        private final PhoneRegisterEntry entry;
+
+        /**
+         * Class {@code Match} constructor.
+         * @param phone Phone owning the register.
+         * @param inbound True if record comes from inbound register.
+         * @param entry Found record.
+         */
+        Match(Phone phone, boolean inbound, PhoneRegisterEntry entry) {
+            this.phone = phone;
+            this.inbound = inbound;
+            this.entry = entry;
+        }
+
+        /**
+         * Phone getter.
+         * @return Phone owning the register.
+         */
+        public Phone getPhone() {
+            return phone;
+        }
+
+        /**
+         * Register direction getter.
+         * @return True if record comes from inbound register or false if from outbound one.
+         */
+        public boolean isInbound() {
+            return inbound;
+        }
+
+        /**
+         * Record getter.
+         * @return Found record.
+         */
+        public PhoneRegisterEntry getEntry() {
+            return entry;
+        }
+
+        @Override
+        public String toString() {
+            return phone + " " + (inbound ? "[Inbound] " : "[Outbound] ") + entry;
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package com.company;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Phone register which stores call records in primitive columns instead of separate objects.
+ * Every record takes 17 bytes: number as {@code int}, call time as epoch milliseconds in {@code long},
+ * conversation time in milliseconds as {@code int} and flags with number length packed in a {@code byte}.
+ * Columns form a ring buffer bounded by {@code RetentionPolicy}; the oldest records are evicted to a consumer.
+ * Records are exposed as read-only {@code PhoneRegisterEntry} objects created on access, newest first.
+ * All methods are synchronized, because destination phone's register is written by the calling thread.
+ */
+public class CallRegister {
+
+    /**
+     * Number of bytes of columns taken by a single record.
+     */
+    public static final int RECORD_BYTES = 17;
+    /**
+     * Flag bit set when call was accepted.
+     */
+    static final int ACCEPTED = 1;
+    /**
+     * Flag bit set when destination phone was available.
+     */
+    static final int AVAILABLE = 1 << 1;
+    /**
+     * Shift of number length stored in the upper bits of flags.
+     */
+    private static final int LENGTH_SHIFT = 4;
+    /**
+     * Columns of empty registers, shared so idle phones take no memory for records.
+     */
+    private static final int[] NO_INTS = new int[0];
+    /**
+     * Time column of empty registers.
+     */
+    private static final long[] NO_LONGS = new long[0];
+    /**
+     * Flags column of empty registers.
+     */
+    private static final byte[] NO_BYTES = new byte[0];
+    /**
+     * Initial capacity of columns.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Time zone used to convert call times to local date and time.
+     */
+    private final ZoneId zone;
+    /**
+     * Column of phone numbers.
+     */
+    private int[] numbers;
+    /**
+     * Column of call times in epoch milliseconds.
+     */
+    private long[] times;
+    /**
+     * Column of conversation times in milliseconds.
+     */
+    private int[] durations;
+    /**
+     * Column of flags and number lengths.
+     */
+    private byte[] flags;
+    /**
+     * Position of the oldest record in columns.
+     */
+    private int head;
+    /**
+     * Number of records.
+     */
+    private int size;
+    /**
+     * Number of records added since register creation, used as sequence number of the next record.
+     */
+    private long added;
+    /**
+     * The latest call time added so far.
+     */
+    private long maxTime;
+    /**
+     * The largest distance by which a record was added before the latest earlier one. Records added by
+     * concurrent calls can be slightly out of order; time index searches are widened by this value.
+     */
+    private long disorder;
+    /**
+     * Reverse index of other phones' numbers, created by the first query by number.
+     */
+    private CounterpartIndex counterparts;
+    /**
+     * Policy which limits number of records.
+     */
+    private RetentionPolicy retention;
+    /**
+     * Consumer of evicted records, null if they are discarded.
+     */
+    private Consumer<PhoneRegisterEntry> evicted;
+    /**
+     * Read-only list view of the register, created on first use.
+     */
+    private List<PhoneRegisterEntry> entries;
+
+    /**
+     * Class {@code CallRegister} constructor. Register keeps all records.
+     * @param zone Time zone used to convert call times to local date and time.
+     */
+    public CallRegister(ZoneId zone) {
+        this.zone = zone;
+        this.numbers = NO_INTS;
+        this.times = NO_LONGS;
+        this.durations = NO_INTS;
+        this.flags = NO_BYTES;
+        this.maxTime = Long.MIN_VALUE;
+        this.retention = RetentionPolicy.UNLIMITED;
+        this.evicted = null;
+    }
+
+    /**
+     * Changes retention policy and evicts records which exceed new limits.
+     * @param retention Policy which limits number of records.
+     * @param evicted Consumer of evicted records, null to discard them without creating entries.
+     */
+    public synchronized void setRetention(RetentionPolicy retention, Consumer<PhoneRegisterEntry> evicted) {
+        this.retention = retention;
+        this.evicted = evicted;
+        while (size > retention.getMaxEntries()) {
+            evictOldest();
+        }
+        if (size > 0) {
+            evictOlderThan(times[position(size - 1)]);
+        }
+        if (numbers.length > retention.getMaxEntries()) {
+            resize(retention.getMaxEntries());
+        }
+    }
+
+    /**
+     * Adds a record to the register, evicting the oldest records if retention policy requires it.
+     * @param phoneNumber Other phone's number, up to {@code PhoneNumber.MAX_DIGITS} digits.
+     * @param accepted Flag that means if call was accepted or rejected by destination.
+     * @param available Flag indicating if destination phone was available.
+     * @param callTime Call time in epoch milliseconds.
+     * @param conversationTime Call duration.
+     */
+    public void add(String phoneNumber, boolean accepted, boolean available,
+                    long callTime, Duration conversationTime) {
+        add(PhoneNumber.parseValue(phoneNumber), phoneNumber.length(), accepted, available,
+                callTime, conversationTime.toMillis());
+    }
+
+    /**
+     * Adds a record to the register, evicting the oldest records if retention policy requires it.
+     * @param number Other phone's number.
+     * @param accepted Flag that means if call was accepted or rejected by destination.
+     * @param available Flag indicating if destination phone was available.
+     * @param callTime Call time in epoch milliseconds.
+     * @param conversationTime Call duration.
+     */
+    public void add(PhoneNumber number, boolean accepted, boolean available,
+                    long callTime, Duration conversationTime) {
+        add(number.getValue(), number.getLength(), accepted, available, callTime, conversationTime.toMillis());
+    }
+
+    /**
+     * Adds a record given in its primitive form to the register.
+     * @param number Other phone's number value.
+     * @param numberLength Number of digits of other phone's number.
+     * @param accepted Flag that means if call was accepted or rejected by destination.
+     * @param available Flag indicating if destination phone was available.
+     * @param callTime Call time in epoch milliseconds.
+     * @param conversationMillis Call duration in milliseconds.
+     */
+    public synchronized void add(int number, int numberLength, boolean accepted, boolean available,
+                                 long callTime, long conversationMillis) {
+        if (numberLength <= 0 || numberLength > PhoneNumber.MAX_DIGITS) {
+            throw new IllegalArgumentException("invalid phone number length " + numberLength);
+        }
+        evictOlderThan(callTime);
+        if (size == retention.getMaxEntries()) {
+            evictOldest();
+        }
+        if (size == numbers.length) {
+            resize(Math.min(Math.max(INITIAL_CAPACITY, size + (size >> 1)), retention.getMaxEntries()));
+        }
+        if (callTime < maxTime) {
+            disorder = Math.max(disorder, maxTime - callTime);
+        } else {
+            maxTime = callTime;
+        }
+        if (counterparts != null) {
+            counterparts.add(number, added, added - size);
+        }
+        int position = position(size);
+        numbers[position] = number;
+        times[position] = callTime;
+        durations[position] = (int) Math.min(conversationMillis, Integer.MAX_VALUE);
+        flags[position] = (byte) ((accepted ? ACCEPTED : 0) | (available ? AVAILABLE : 0) |
+                (numberLength << LENGTH_SHIFT));
+        size++;
+        added++;
+    }
+
+    /**
+     * Returns record with given position, newest first.
+     * @param index Position of the record, 0 is the newest one.
+     * @return Record as a register entry.
+     * @throws IndexOutOfBoundsException If there is no record at given position.
+     */
+    public synchronized PhoneRegisterEntry get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("invalid register index " + index);
+        }
+        return entry(position(size - 1 - index));
+    }
+
+    /**
+     * Number of records getter.
+     * @return Number of records in the register.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns read-only list view of the register, newest first.
+     * Iterators of the view show records stored when iteration started, skipping ones evicted since then.
+     * @return List of register entries.
+     */
+    public List<PhoneRegisterEntry> entries() {
+        if (entries == null) {
+            entries = new EntryList();
+        }
+        return entries;
+    }
+
+    /**
+     * Passes all records to visitor, newest first, without creating register entries.
+     * Register is locked during the whole visit.
+     * @param visitor Visitor receiving records.
+     */
+    public synchronized void forEachRecord(RecordVisitor visitor) {
+        for (int row = size - 1; row >= 0; row--) {
+            int position = position(row);
+            visitor.visit(numbers[position], flags[position] >>> LENGTH_SHIFT & 0xF,
+                    (flags[position] & ACCEPTED) != 0, (flags[position] & AVAILABLE) != 0,
+                    times[position], durations[position]);
+        }
+    }
+
+    /**
+     * Copies all records to the buffer, oldest first, as their count followed by {@code RECORD_BYTES} bytes
+     * per record: number, flags with number length, call time and conversation time.
+     * Register is locked only while its columns are copied.
+     * @param buffer Destination buffer.
+     * @return True if records were written or false if buffer doesn't have enough room, leaving it unchanged.
+     */
+    public synchronized boolean writeTo(ByteBuffer buffer) {
+        if (buffer.remaining() < 4 + size * RECORD_BYTES) {
+            return false;
+        }
+        buffer.putInt(size);
+        for (int row = 0; row < size; row++) {
+            int position = position(row);
+            buffer.putInt(numbers[position]).put(flags[position]).putLong(times[position]).putInt(durations[position]);
+        }
+        return true;
+    }
+
+    /**
+     * Adds records written by {@code writeTo}, applying retention policy of this register.
+     * @param buffer Source buffer positioned at the record count.
+     * @throws IllegalArgumentException If a record has invalid number length.
+     * @throws java.nio.BufferUnderflowException If buffer ends before the last record.
+     */
+    public synchronized void readFrom(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0) {
+            throw new IllegalArgumentException("invalid number of records " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            int number = buffer.getInt();
+            byte flags = buffer.get();
+            long time = buffer.getLong();
+            int conversationMillis = buffer.getInt();
+            add(number, flags >>> LENGTH_SHIFT & 0xF, (flags & ACCEPTED) != 0, (flags & AVAILABLE) != 0,
+                    time, conversationMillis);
+        }
+    }
+
+    /**
+     * Finds end of the newest accepted call.
+     * @return End time of the newest accepted call in epoch milliseconds or 0 if there is no accepted call.
+     */
+    public synchronized long lastConversationEnd() {
+        for (int row = size - 1; row >= 0; row--) {
+            int position = position(row);
+            if ((flags[position] & ACCEPTED) != 0) {
+                return times[position] + durations[position];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Passes records matching the query to consumer, newest first.
+     * Query by other phone's number uses reverse index, otherwise time range is found with binary search.
+     * @param query Query filters.
+     * @param consumer Consumer of matching records.
+     */
+    public synchronized void query(CallQuery query, Consumer<PhoneRegisterEntry> consumer) {
+        long oldest = added - size;
+        if (query.getCounterpart() >= 0) {
+            if (counterparts == null) {
+                counterparts = new CounterpartIndex();
+                for (int row = 0; row < size; row++) {
+                    counterparts.add(numbers[position(row)], oldest + row, oldest);
+                }
+            }
+            counterparts.forEach(query.getCounterpart(), oldest,
+                    sequence -> match(query, position((int) (sequence - oldest)), consumer));
+            return;
+        }
+        int first = lowerBound(query.getFrom() == Long.MIN_VALUE ? Long.MIN_VALUE : query.getFrom() - disorder);
+        int last = query.getTo() == Long.MAX_VALUE ? size : lowerBound(query.getTo() + disorder + 1);
+        for (int row = last - 1; row >= first; row--) {
+            match(query, position(row), consumer);
+        }
+    }
+
+    /**
+     * Passes record to consumer if it matches the query.
+     * @param query Query filters.
+     * @param position Position of the record in columns.
+     * @param consumer Consumer of matching records.
+     */
+    private void match(CallQuery query, int position, Consumer<PhoneRegisterEntry> consumer) {
+        long time = times[position];
+        if (time < query.getFrom() || time > query.getTo()
+                || (flags[position] & query.getFlagsMask()) != query.getFlagsValue()) {
+            return;
+        }
+        if (query.getCounterpart() >= 0 && (numbers[position] != query.getCounterpart()
+                || (flags[position] >>> LENGTH_SHIFT & 0xF) != query.getCounterpartLength())) {
+            return;
+        }
+        consumer.accept(entry(position));
+    }
+
+    /**
+     * Finds the first row whose probed predecessors are all earlier than given time.
+     * Rows are sorted up to {@code disorder}, so callers widen the searched time by it.
+     * @param time Searched time in epoch milliseconds.
+     * @return Row index from 0 to {@code size}.
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[position(middle)] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Time zone getter.
+     * @return Time zone used to convert call times to local date and time.
+     */
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Evicts records older than maximum age of retention policy.
+     * @param now Time of the newest record in epoch milliseconds.
+     */
+    private void evictOlderThan(long now) {
+        Duration maxAge = retention.getMaxAge();
+        if (maxAge == null) {
+            return;
+        }
+        long limit = now - maxAge.toMillis();
+        while (size > 0 && times[head] < limit) {
+            evictOldest();
+        }
+    }
+
+    /**
+     * Removes the oldest record and passes it to {@code evicted} consumer.
+     */
+    private void evictOldest() {
+        PhoneRegisterEntry entry = evicted != null ? entry(head) : null;
+        head = head + 1 == numbers.length ? 0 : head + 1;
+        size--;
+        if (entry != null) {
+            evicted.accept(entry);
+        }
+    }
+
+    /**
+     * Moves records to columns of given capacity, starting from the oldest one at position 0.
+     * @param capacity New capacity, not less than {@code size}.
+     */
+    private void resize(int capacity) {
+        int[] newNumbers = new int[capacity];
+        long[] newTimes = new long[capacity];
+        int[] newDurations = new int[capacity];
+        byte[] newFlags = new byte[capacity];
+        int first = Math.min(size, numbers.length - head);
+        System.arraycopy(numbers, head, newNumbers, 0, first);
+        System.arraycopy(times, head, newTimes, 0, first);
+        System.arraycopy(durations, head, newDurations, 0, first);
+        System.arraycopy(flags, head, newFlags, 0, first);
+        System.arraycopy(numbers, 0, newNumbers, first, size - first);
+        System.arraycopy(times, 0, newTimes, first, size - first);
+        System.arraycopy(durations, 0, newDurations, first, size - first);
+        System.arraycopy(flags, 0, newFlags, first, size - first);
+        numbers = newNumbers;
+        times = newTimes;
+        durations = newDurations;
+        flags = newFlags;
+        head = 0;
+    }
+
+    /**
+     * Converts record's age order to its position in columns.
+     * @param row Row of the record, 0 is the oldest one.
+     * @return Position in columns.
+     */
+    private int position(int row) {
+        int position = head + row;
+        return position >= numbers.length ? position - numbers.length : position;
+    }
+
+    /**
+     * Creates register entry of a record.
+     * @param position Position of the record in columns.
+     * @return Register entry.
+     */
+    private PhoneRegisterEntry entry(int position) {
+        return new PhoneRegisterEntry(
+                PhoneNumber.of(numbers[position], flags[position] >>> LENGTH_SHIFT & 0xF),
+                (flags[position] & ACCEPTED) != 0,
+                (flags[position] & AVAILABLE) != 0,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(times[position]), zone),
+                Duration.ofMillis(durations[position])
+        );
+    }
+
+    /**
+     * Visitor of register records in their primitive form.
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+
+        /**
+         * Receives register record.
+         * @param number Other phone's number value.
+         * @param numberLength Number of digits of other phone's number.
+         * @param accepted Flag that means if call was accepted or rejected by destination.
+         * @param available Flag indicating if destination phone was available.
+         * @param time Call time in epoch milliseconds.
+         * @param conversationMillis Call duration in milliseconds.
+         */
+        void visit(int number, int numberLength, boolean accepted, boolean available,
+                   long time, int conversationMillis);
+    }
+
+    /**
+     * Read-only list view of the register, created on first use.
+     */
+    private final class EntryList extends AbstractList<PhoneRegisterEntry> {
+
+        @Override
+        public PhoneRegisterEntry get(int index) {
+            return CallRegister.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return CallRegister.this.size();
+        }
+
+        @Override
+        public Iterator<PhoneRegisterEntry> iterator() {
+            synchronized (CallRegister.this) {
+                return new EntryIterator(added - 1);
+            }
+        }
+    }
+
+    /**
+     * Iterator over records from the newest one to the oldest one, which were stored when iteration started.
+     */
+    private final class EntryIterator implements Iterator<PhoneRegisterEntry> {
+
+        /**
+         * Sequence number of the next record.
+         */
+        private long sequence;
+
+        /**
+         * Class {@code EntryIterator} constructor.
+         * @param sequence Sequence number of the newest record.
+         */
+        EntryIterator(long sequence) {
+            this.sequence = sequence;
+        }
+
+        @Override
+        public boolean hasNext() {
+            synchronized (CallRegister.this) {
+                return sequence >= added - size;
+            }
+        }
+
+        @Override
+        public PhoneRegisterEntry next() {
+            synchronized (CallRegister.this) {
+                long oldest = added - size;
+                if (sequence < oldest) {
+                    throw new NoSuchElementException();
+                }
+                return entry(position((int) (sequence-- - oldest)));
+            }
+        }
+    }
+}
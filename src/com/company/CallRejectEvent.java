@@ -0,0 +1,40 @@
+package com.company;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event committed when call fails because it was rejected or a phone was unavailable.
+ */
+@Name("com.company.CallReject")
+@Label("Call Reject")
+@Category("Phone Simulator")
+@Description("Call was rejected by destination phone or a phone was unavailable")
+class CallRejectEvent extends Event {
+
+    /**
+     * Caller's phone number.
+     */
+    @Label("Caller")
+    String caller;
+    /**
+     * Destination phone number.
+     */
+    @Label("Callee")
+    String callee;
+    /**
+     * Reason of failure, {@code REJECTED} or {@code BUSY}.
+     */
+    @Label("Reason")
+    String reason;
+    /**
+     * Time spent setting up the call.
+     */
+    @Label("Setup Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long setupTime;
+}
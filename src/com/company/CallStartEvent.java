@@ -0,0 +1,41 @@
+package com.company;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event committed when destination phone accepts a call.
+ */
+@Name("com.company.CallStart")
+@Label("Call Start")
+@Category("Phone Simulator")
+@Description("Destination phone accepted the call and conversation started")
+class CallStartEvent extends Event {
+
+    /**
+     * Caller's phone number.
+     */
+    @Label("Caller")
+    String caller;
+    /**
+     * Destination phone number.
+     */
+    @Label("Callee")
+    String callee;
+    /**
+     * Time spent setting up the call.
+     */
+    @Label("Setup Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long setupTime;
+    /**
+     * Planned conversation time.
+     */
+    @Label("Conversation Time")
+    @Timespan(Timespan.MILLISECONDS)
+    long conversationTime;
+}
@@ -0,0 +1,205 @@
+package com.company;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call counters updated by phones on every register write. Counters are {@code LongAdder}s, so phones calling
+ * from many threads don't contend on them, and every statistic can be read at any time in constant time.
+ * Phone statistics count calls in both directions; totals of a simulator, created by {@code totals()}, count
+ * every call once, on caller's side, so they have no inbound calls and don't report them.
+ */
+public class CallStatistics {
+
+    /**
+     * Field {@code outboundCalls} counts calls made.
+     */
+    private final LongAdder outboundCalls = new LongAdder();
+    /**
+     * Field {@code inboundCalls} counts calls received.
+     */
+    private final LongAdder inboundCalls = new LongAdder();
+    /**
+     * Field {@code acceptedCalls} counts calls accepted by destination phone.
+     */
+    private final LongAdder acceptedCalls = new LongAdder();
+    /**
+     * Field {@code rejectedCalls} counts calls rejected by destination phone.
+     */
+    private final LongAdder rejectedCalls = new LongAdder();
+    /**
+     * Field {@code busyCalls} counts calls to unavailable destination phone.
+     */
+    private final LongAdder busyCalls = new LongAdder();
+    /**
+     * Field {@code talkMillis} sums conversation time of accepted calls.
+     */
+    private final LongAdder talkMillis = new LongAdder();
+    /**
+     * Field {@code totals} receives outbound calls counted by these statistics, null if there are no totals.
+     */
+    private volatile CallStatistics totals;
+    /**
+     * Field {@code callerSide} is set for totals which count calls on caller's side only.
+     */
+    private final boolean callerSide;
+
+    /**
+     * Class {@code CallStatistics} constructor for statistics of a phone, counting calls in both directions.
+     */
+    public CallStatistics() {
+        this(false);
+    }
+
+    /**
+     * Class {@code CallStatistics} constructor.
+     * @param callerSide True for totals which count calls on caller's side only.
+     */
+    private CallStatistics(boolean callerSide) {
+        this.callerSide = callerSide;
+    }
+
+    /**
+     * Creates totals of many phones which count every call once, on caller's side.
+     * @return Statistics to pass to {@code setTotals} of every phone.
+     */
+    static CallStatistics totals() {
+        return new CallStatistics(true);
+    }
+
+    /**
+     * Counts call written to the register.
+     * @param outbound True for call made or false for call received.
+     * @param outcome Call outcome, {@code ACCEPTED}, {@code REJECTED} or {@code BUSY}.
+     * @param conversationMillis Conversation time of accepted call in milliseconds.
+     */
+    void record(boolean outbound, CallEventType outcome, long conversationMillis) {
+        (outbound ? outboundCalls : inboundCalls).increment();
+        switch (outcome) {
+            case ACCEPTED:
+                acceptedCalls.increment();
+                talkMillis.add(conversationMillis);
+                break;
+            case REJECTED:
+                rejectedCalls.increment();
+                break;
+            case BUSY:
+                busyCalls.increment();
+                break;
+            default:
+                throw new IllegalArgumentException("invalid call outcome " + outcome);
+        }
+        CallStatistics totals = this.totals;
+        if (outbound && totals != null) {
+            totals.record(true, outcome, conversationMillis);
+        }
+    }
+
+    /**
+     * Totals setter.
+     * @param totals Statistics which also count outbound calls counted by these ones, null to stop passing them.
+     */
+    void setTotals(CallStatistics totals) {
+        this.totals = totals;
+    }
+
+    /**
+     * Resets all counters. Calls counted concurrently may be lost.
+     */
+    public void reset() {
+        outboundCalls.reset();
+        inboundCalls.reset();
+        acceptedCalls.reset();
+        rejectedCalls.reset();
+        busyCalls.reset();
+        talkMillis.reset();
+    }
+
+    /**
+     * Calls getter.
+     * @return Number of calls made and received.
+     */
+    public long getCalls() {
+        return outboundCalls.sum() + inboundCalls.sum();
+    }
+
+    /**
+     * Outbound calls getter.
+     * @return Number of calls made.
+     */
+    public long getOutboundCalls() {
+        return outboundCalls.sum();
+    }
+
+    /**
+     * Inbound calls getter.
+     * @return Number of calls received.
+     */
+    public long getInboundCalls() {
+        return inboundCalls.sum();
+    }
+
+    /**
+     * Accepted calls getter.
+     * @return Number of calls accepted by destination phone.
+     */
+    public long getAcceptedCalls() {
+        return acceptedCalls.sum();
+    }
+
+    /**
+     * Rejected calls getter.
+     * @return Number of calls rejected by destination phone.
+     */
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+
+    /**
+     * Busy calls getter.
+     * @return Number of calls to unavailable destination phone.
+     */
+    public long getBusyCalls() {
+        return busyCalls.sum();
+    }
+
+    /**
+     * Total talk time getter.
+     * @return Sum of conversation time of accepted calls in milliseconds.
+     */
+    public long getTalkMillis() {
+        return talkMillis.sum();
+    }
+
+    /**
+     * Answer ratio getter.
+     * @return Fraction of calls reaching available destination phone which were accepted.
+     */
+    public double getAnswerRatio() {
+        long accepted = acceptedCalls.sum();
+        long answered = accepted + rejectedCalls.sum();
+        return answered == 0 ? 0 : (double) accepted / answered;
+    }
+
+    /**
+     * Busy ratio getter.
+     * @return Fraction of calls which found destination phone unavailable.
+     */
+    public double getBusyRatio() {
+        long calls = getCalls();
+        return calls == 0 ? 0 : (double) busyCalls.sum() / calls;
+    }
+
+    @Override
+    public String toString() {
+        if (callerSide) {
+            return String.format("calls: %d, accepted: %d, rejected: %d, busy: %d, " +
+                            "talk time: %ds, answer ratio: %.2f%%, busy ratio: %.2f%%",
+                    getCalls(), getAcceptedCalls(), getRejectedCalls(), getBusyCalls(), getTalkMillis() / 1000,
+                    getAnswerRatio() * 100, getBusyRatio() * 100);
+        }
+        return String.format("calls: %d (outbound %d, inbound %d), accepted: %d, rejected: %d, busy: %d, " +
+                        "talk time: %ds, answer ratio: %.2f%%, busy ratio: %.2f%%",
+                getCalls(), getOutboundCalls(), getInboundCalls(), getAcceptedCalls(), getRejectedCalls(),
+                getBusyCalls(), getTalkMillis() / 1000, getAnswerRatio() * 100, getBusyRatio() * 100);
+    }
+}
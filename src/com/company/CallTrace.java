@@ -0,0 +1,199 @@
+package com.company;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary trace of call requests, recorded from a run so the same workload can be replayed
+ * by {@code TraceReplayer}. Added as {@code CallListener}, it records every {@code ATTEMPT} event, i.e. every
+ * {@code call(phone, accept, conversationTime)} request, whatever its outcome, as a fixed-size record
+ * with nanoseconds since the first recorded request, so time spent preparing phones before the load starts
+ * isn't part of the trace. Records are timestamped under the trace lock, so they are stored in the order
+ * the requests were made and their times never decrease.
+ * <p>
+ * The file starts with {@code HEADER_BYTES} bytes of magic number and version, followed by records of
+ * {@code RECORD_BYTES} bytes in big-endian order: time offset in nanoseconds, caller's and callee's numbers,
+ * conversation time in milliseconds, number lengths packed into one byte and accept flag.
+ */
+public class CallTrace implements CallListener, Closeable {
+
+    /**
+     * Size of the file header in bytes.
+     */
+    public static final int HEADER_BYTES = 8;
+    /**
+     * Size of a single record in bytes.
+     */
+    public static final int RECORD_BYTES = 24;
+    /**
+     * Magic number at the beginning of trace files.
+     */
+    private static final int MAGIC = 0x43545243;
+    /**
+     * Version of the file layout.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Number of records buffered before they are written to the file.
+     */
+    private static final int BUFFERED_RECORDS = 4096;
+    /**
+     * Largest number of records mapped at once when reading, so a mapping stays below 2 GiB.
+     * Every buffer returned by {@code map} but the last one holds exactly this many records.
+     */
+    static final int MAPPED_RECORDS = Integer.MAX_VALUE / RECORD_BYTES;
+
+    /**
+     * Field {@code channel} is channel of the trace file.
+     */
+    private final FileChannel channel;
+    /**
+     * Field {@code buffer} holds records not written yet.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Field {@code start} holds time of the first request in {@code System.nanoTime()} units.
+     */
+    private long start;
+    /**
+     * Field {@code records} counts recorded requests.
+     */
+    private long records;
+    /**
+     * Field {@code closed} is set when trace was closed.
+     */
+    private boolean closed;
+
+    /**
+     * Class {@code CallTrace} constructor. Creates the trace file, replacing an existing one.
+     * @param file Trace file.
+     * @throws IOException If file can't be created.
+     */
+    public CallTrace(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(BUFFERED_RECORDS * RECORD_BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION);
+    }
+
+    @Override
+    public void onCallEvent(CallEventType type, Phone caller, CallParty callee, boolean accept,
+                            long time, Duration conversationTime) {
+        if (type != CallEventType.ATTEMPT) {
+            return;
+        }
+        PhoneNumber from = caller.getNumber();
+        PhoneNumber to = callee.getNumber();
+        append(from.getValue(), from.getLength(), to.getValue(), to.getLength(), accept,
+                accept ? conversationTime.toMillis() : 0);
+    }
+
+    /**
+     * Appends a request timestamped with the current time.
+     * @param caller Caller's number.
+     * @param callerLength Number of digits of caller's number.
+     * @param callee Callee's number.
+     * @param calleeLength Number of digits of callee's number.
+     * @param accept Flag passed to {@code call} telling if destination phone should accept call.
+     * @param conversationMillis Conversation duration in milliseconds, up to {@code Integer.MAX_VALUE}.
+     */
+    public synchronized void append(int caller, int callerLength, int callee, int calleeLength, boolean accept,
+                                    long conversationMillis) {
+        if (closed) {
+            throw new IllegalStateException("trace is closed");
+        }
+        if (buffer.remaining() < RECORD_BYTES) {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new IllegalStateException("can't write trace", e);
+            }
+        }
+        long now = System.nanoTime();
+        if (records == 0) {
+            start = now;
+        }
+        buffer.putLong(now - start)
+                .putInt(caller)
+                .putInt(callee)
+                .putInt((int) Math.min(conversationMillis, Integer.MAX_VALUE))
+                .put((byte) (callerLength << 4 | calleeLength))
+                .put((byte) (accept ? 1 : 0))
+                .putShort((short) 0);
+        records++;
+    }
+
+    /**
+     * Writes buffered records to the file.
+     * @throws IOException If file can't be written.
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Records getter.
+     * @return Number of recorded requests.
+     */
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * Writes buffered records and closes the trace.
+     * @throws IOException If file can't be written or closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Maps a trace file for reading. Records of the returned buffers start at position 0
+     * and every buffer holds whole records; a record torn by a crash at the end of the file is ignored.
+     * @param file Trace file.
+     * @return Read-only buffers of consecutive records, in order.
+     * @throws IOException If file can't be read or isn't a trace.
+     */
+    static List<MappedByteBuffer> map(Path file) throws IOException {
+        List<MappedByteBuffer> buffers = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("not a call trace: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported call trace version " + version + ": " + file);
+            }
+            long records = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+            for (long first = 0; first < records; first += MAPPED_RECORDS) {
+                long count = Math.min(MAPPED_RECORDS, records - first);
+                buffers.add(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * RECORD_BYTES,
+                        count * RECORD_BYTES));
+            }
+        }
+        return buffers;
+    }
+}
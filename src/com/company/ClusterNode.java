@@ -0,0 +1,981 @@
+package com.company;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Node of a simulator cluster. Every node owns phones whose numbers {@code PartitionMap} assigns to it
+ * and sets up calls to phones of other nodes over non-blocking TCP connections handled by a single
+ * selector thread.
+ * <p>
+ * Every node connects to every other node. Calls travel on the caller node's connection and their results
+ * come back on the same connection, matched by request IDs, so any number of calls may be in flight at
+ * once. Callers never touch sockets: they put requests into a lock-free queue of the destination node
+ * and the selector thread packs all queued requests into one buffer written with a single system call.
+ * <p>
+ * A caller which gives up waiting withdraws its request: if it wasn't sent yet, it never is, and if it was,
+ * its late result is matched and counted, and counted as a mismatch unless it also tells the phone was busy,
+ * because the destination node set up a call the caller recorded as failed.
+ * <p>
+ * Frames are length-prefixed and big-endian: {@code int length, byte type, payload}.
+ * <ul>
+ *     <li>{@code HELLO int node, int mapHash} opens a connection,</li>
+ *     <li>{@code CALL long id, int caller, byte callerLength, int callee, byte calleeLength, byte accept,
+ *     long time, long conversationMillis} asks callee's node to set up the call,</li>
+ *     <li>{@code RESULT long id, byte outcome} answers a call,</li>
+ *     <li>{@code BYE} tells that sender makes no more calls.</li>
+ * </ul>
+ */
+public class ClusterNode implements Closeable {
+
+    /**
+     * Default time after which a call to an unresponsive node is considered unavailable.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+    /**
+     * Type of frame opening a connection.
+     */
+    private static final byte HELLO = 1;
+    /**
+     * Type of call request frame.
+     */
+    private static final byte CALL = 2;
+    /**
+     * Type of call result frame.
+     */
+    private static final byte RESULT = 3;
+    /**
+     * Type of frame telling that sender makes no more calls.
+     */
+    private static final byte BYE = 4;
+    /**
+     * Size of {@code HELLO} frame with length prefix.
+     */
+    private static final int HELLO_BYTES = 4 + 1 + 4 + 4;
+    /**
+     * Size of {@code CALL} frame with length prefix.
+     */
+    private static final int CALL_BYTES = 4 + 1 + 8 + 4 + 1 + 4 + 1 + 1 + 8 + 8;
+    /**
+     * Size of {@code RESULT} frame with length prefix.
+     */
+    private static final int RESULT_BYTES = 4 + 1 + 8 + 1;
+    /**
+     * Size of {@code BYE} frame with length prefix.
+     */
+    private static final int BYE_BYTES = 4 + 1;
+    /**
+     * Size of read and write buffers of every connection.
+     */
+    private static final int BUFFER_BYTES = 64 * 1024;
+    /**
+     * Delay between attempts to connect a node which isn't listening yet.
+     */
+    private static final long RETRY_MILLIS = 100;
+    /**
+     * Longest time spent writing remaining results when node is closed.
+     */
+    private static final long LINGER_MILLIS = 1000;
+
+    /**
+     * Field {@code map} holds cluster membership and assignment of numbers to nodes.
+     */
+    private final PartitionMap map;
+    /**
+     * Field {@code id} holds ID of this node.
+     */
+    private final int id;
+    /**
+     * Field {@code directory} holds phones owned by this node.
+     */
+    private final PhoneDirectory directory;
+    /**
+     * Field {@code timeout} holds time after which unanswered call is considered unavailable.
+     */
+    private final Duration timeout;
+    /**
+     * Field {@code selector} multiplexes all connections.
+     */
+    private final Selector selector;
+    /**
+     * Field {@code server} accepts connections of other nodes.
+     */
+    private final ServerSocketChannel server;
+    /**
+     * Field {@code outboxes} holds requests waiting for the selector thread, by destination node.
+     */
+    private final MpscQueue<Request>[] outboxes;
+    /**
+     * Field {@code down} holds flags of nodes whose connection was lost, set to 1 by the selector thread.
+     */
+    private final AtomicIntegerArray down;
+    /**
+     * Field {@code pending} holds calls sent to other nodes and not answered yet, by request IDs.
+     */
+    private final ConcurrentHashMap<Long, Request> pending;
+    /**
+     * Field {@code abandoned} holds calls whose callers stopped waiting before they were answered, by request IDs.
+     */
+    private final ConcurrentHashMap<Long, Request> abandoned;
+    /**
+     * Field {@code ids} generates request IDs.
+     */
+    private final AtomicLong ids;
+    /**
+     * Field {@code wakeup} is set when the selector was woken up and hasn't drained outboxes yet,
+     * so a burst of requests wakes it only once.
+     */
+    private final AtomicBoolean wakeup;
+    /**
+     * Field {@code joined} counts down connections to and greetings from other nodes.
+     */
+    private final CountDownLatch joined;
+    /**
+     * Field {@code departed} counts down nodes which said they make no more calls.
+     */
+    private final CountDownLatch departed;
+    /**
+     * Field {@code thread} runs the selector loop.
+     */
+    private Thread thread;
+    /**
+     * Field {@code closed} is set when node is closed.
+     */
+    private volatile boolean closed;
+    /**
+     * Field {@code sentCalls} counts calls sent to other nodes, written by the selector thread only.
+     */
+    private volatile long sentCalls;
+    /**
+     * Field {@code writes} counts socket writes carrying calls, written by the selector thread only.
+     */
+    private volatile long writes;
+    /**
+     * Field {@code receivedCalls} counts calls received from other nodes, written by the selector thread only.
+     */
+    private volatile long receivedCalls;
+    /**
+     * Field {@code withdrawnCalls} counts abandoned calls which weren't sent, written by the selector thread only.
+     */
+    private volatile long withdrawnCalls;
+    /**
+     * Field {@code lateResults} counts results of abandoned calls, written by the selector thread only.
+     */
+    private volatile long lateResults;
+    /**
+     * Field {@code mismatches} counts late results other than {@code DESTINATION_BUSY}, which the caller
+     * recorded instead, written by the selector thread only.
+     */
+    private volatile long mismatches;
+
+    /**
+     * Class {@code ClusterNode} constructor. Binds the node's address, but doesn't connect other nodes
+     * until {@code start} is called.
+     * @param map Cluster membership, the same on all nodes.
+     * @param id ID of this node.
+     * @param directory Phones owned by this node; calls to numbers missing in it are answered as unavailable.
+     * @param timeout Time after which unanswered call is considered unavailable.
+     * @throws IOException If node's address can't be bound.
+     * @throws IndexOutOfBoundsException If map has no node with given ID.
+     */
+    @SuppressWarnings("unchecked")
+    public ClusterNode(PartitionMap map, int id, PhoneDirectory directory, Duration timeout) throws IOException {
+        InetSocketAddress address = map.getAddress(id);
+        this.map = map;
+        this.id = id;
+        this.directory = directory;
+        this.timeout = timeout;
+        this.outboxes = (MpscQueue<Request>[]) new MpscQueue<?>[map.size()];
+        for (int i = 0; i < outboxes.length; i++) {
+            outboxes[i] = new MpscQueue<>();
+        }
+        this.down = new AtomicIntegerArray(map.size());
+        this.pending = new ConcurrentHashMap<>();
+        this.abandoned = new ConcurrentHashMap<>();
+        this.ids = new AtomicLong();
+        this.wakeup = new AtomicBoolean();
+        this.joined = new CountDownLatch(2 * (map.size() - 1));
+        this.departed = new CountDownLatch(map.size() - 1);
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(address.getPort()));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts selector thread which connects other nodes and serves their calls.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("node already started");
+        }
+        thread = new Thread(this::loop, "cluster-node-" + id);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Waits until this node is connected to all other nodes and all of them are connected to it.
+     * @param wait Longest waiting time.
+     * @throws InterruptedException If current thread was interrupted while waiting.
+     * @throws IOException If cluster wasn't formed in given time.
+     */
+    public void awaitPeers(Duration wait) throws InterruptedException, IOException {
+        if (!joined.await(wait.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new IOException("cluster " + map + " wasn't formed in " + wait.getSeconds() + "s");
+        }
+    }
+
+    /**
+     * Tells other nodes that this node makes no more calls and waits until all of them say the same
+     * and all calls of this node are answered. Until then the node keeps answering calls of other nodes.
+     * @param wait Longest waiting time.
+     * @throws InterruptedException If current thread was interrupted while waiting.
+     * @throws IOException If other nodes didn't finish in given time.
+     */
+    public void leave(Duration wait) throws InterruptedException, IOException {
+        long deadline = System.nanoTime() + wait.toNanos();
+        for (int node = 0; node < outboxes.length; node++) {
+            if (node != id) {
+                outboxes[node].offer(Request.LEAVE);
+            }
+        }
+        wake();
+        if (!departed.await(wait.toNanos(), TimeUnit.NANOSECONDS)) {
+            throw new IOException("nodes of cluster " + map + " didn't finish in " + wait.getSeconds() + "s");
+        }
+        while (!pending.isEmpty()) {
+            if (System.nanoTime() - deadline >= 0) {
+                throw new IOException(pending.size() + " calls weren't answered in " + wait.getSeconds() + "s");
+            }
+            LockSupport.parkNanos(1_000_000);
+        }
+    }
+
+    /**
+     * Sends call to node owning the destination phone. Many calls may be in flight at once,
+     * results arrive in any order.
+     * @param from Number of the calling phone.
+     * @param to Number of the called phone, owned by another node.
+     * @param accept Flag indicating if destination phone should accept call.
+     * @param time Call time in epoch milliseconds.
+     * @param conversationTime Conversation duration used when {@code accept} flag is true.
+     * @return Future outcome, completed exceptionally if destination node is unreachable.
+     * @throws IllegalArgumentException If destination phone is owned by this node.
+     * @throws IllegalStateException If node is closed.
+     */
+    public CompletableFuture<CallOutcome> call(PhoneNumber from, PhoneNumber to, boolean accept, long time,
+                                               Duration conversationTime) {
+        int node = map.nodeOf(to);
+        if (node == id) {
+            throw new IllegalArgumentException("phone " + to + " is owned by this node");
+        }
+        if (closed) {
+            throw new IllegalStateException("node is closed");
+        }
+        Request request = new Request(ids.incrementAndGet(), node, from, to, accept, time,
+                conversationTime.toMillis());
+        if (down.get(node) != 0) {
+            request.completeExceptionally(unreachable(node));
+            return request;
+        }
+        pending.put(request.id, request);
+        outboxes[node].offer(request);
+        // node may have been lost after the check and its outbox drained before the request was queued
+        if (down.get(node) != 0 && pending.remove(request.id, request)) {
+            request.completeExceptionally(unreachable(node));
+            return request;
+        }
+        wake();
+        return request;
+    }
+
+    /**
+     * Sends call to node owning the destination phone and waits for its outcome. If the outcome doesn't
+     * arrive in time, the request is withdrawn and a late result is only counted.
+     * @param from Number of the calling phone.
+     * @param to Number of the called phone, owned by another node.
+     * @param accept Flag indicating if destination phone should accept call.
+     * @param time Call time in epoch milliseconds.
+     * @param conversationTime Conversation duration used when {@code accept} flag is true.
+     * @return Outcome of the call, {@code DESTINATION_BUSY} if destination node didn't answer in time.
+     */
+    CallOutcome callAndWait(PhoneNumber from, PhoneNumber to, boolean accept, long time, Duration conversationTime) {
+        if (closed) {
+            return CallOutcome.DESTINATION_BUSY;
+        }
+        Request request = (Request) call(from, to, accept, time, conversationTime);
+        try {
+            return request.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // destination node is unreachable, the phone is unavailable for the caller
+            return CallOutcome.DESTINATION_BUSY;
+        } catch (TimeoutException e) {
+            // destination node is overloaded, the phone is unavailable for the caller
+        }
+        // registered before the request leaves pending, so a result arriving meanwhile is still matched
+        abandoned.put(request.id, request);
+        if (pending.remove(request.id, request)) {
+            // completed before the selector thread sees it, so it isn't sent if it's still queued
+            request.complete(CallOutcome.DESTINATION_BUSY);
+            return CallOutcome.DESTINATION_BUSY;
+        }
+        abandoned.remove(request.id, request);
+        try {
+            return request.join();
+        } catch (RuntimeException e) {
+            return CallOutcome.DESTINATION_BUSY;
+        }
+    }
+
+    /**
+     * Creates failure of calls to a node whose connection was lost.
+     * @param node ID of unreachable node.
+     * @return Reason of failure.
+     */
+    private IOException unreachable(int node) {
+        return new IOException("node " + map.getAddress(node) + " is unreachable");
+    }
+
+    /**
+     * Checks if phone with given number is owned by this node.
+     * @param number Phone number.
+     * @return True if number is assigned to this node.
+     */
+    public boolean isLocal(PhoneNumber number) {
+        return map.nodeOf(number) == id;
+    }
+
+    /**
+     * Node ID getter.
+     * @return ID of this node.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Partition map getter.
+     * @return Cluster membership.
+     */
+    public PartitionMap getMap() {
+        return map;
+    }
+
+    /**
+     * Call timeout getter.
+     * @return Time after which unanswered call is considered unavailable.
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sent calls getter.
+     * @return Number of calls sent to other nodes.
+     */
+    public long getSentCalls() {
+        return sentCalls;
+    }
+
+    /**
+     * Received calls getter.
+     * @return Number of calls received from other nodes.
+     */
+    public long getReceivedCalls() {
+        return receivedCalls;
+    }
+
+    /**
+     * Writes getter.
+     * @return Number of socket writes carrying calls; sent calls divided by it is the average batch size.
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    /**
+     * Withdrawn calls getter.
+     * @return Number of calls whose callers stopped waiting before they were sent.
+     */
+    public long getWithdrawnCalls() {
+        return withdrawnCalls;
+    }
+
+    /**
+     * Late results getter.
+     * @return Number of results which arrived after their callers stopped waiting.
+     */
+    public long getLateResults() {
+        return lateResults;
+    }
+
+    /**
+     * Mismatches getter.
+     * @return Number of late results other than {@code DESTINATION_BUSY}, i.e. calls set up by the destination
+     * node which their callers recorded as failed.
+     */
+    public long getMismatches() {
+        return mismatches;
+    }
+
+    /**
+     * Stops selector thread after it writes remaining results and closes all connections.
+     * Calls which weren't answered are completed exceptionally.
+     * @throws IOException If server socket can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread thread;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            thread = this.thread;
+        }
+        selector.wakeup();
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            selector.close();
+        }
+        server.close();
+        fail(-1, new IOException("node is closed"));
+        abandoned.clear();
+    }
+
+    @Override
+    public String toString() {
+        long sent = sentCalls;
+        long batches = writes;
+        return String.format("node %d of %d: sent calls: %d in %d writes (%.1f per write), received calls: %d, " +
+                        "withdrawn calls: %d, late results: %d (%d mismatched)",
+                id, map.size(), sent, batches, batches == 0 ? 0.0 : (double) sent / batches, receivedCalls,
+                withdrawnCalls, lateResults, mismatches);
+    }
+
+    /**
+     * Wakes selector thread up unless it was already woken up and hasn't drained outboxes yet.
+     */
+    private void wake() {
+        if (wakeup.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Completes unanswered calls exceptionally.
+     * @param node ID of unreachable node or -1 for all nodes.
+     * @param cause Reason of failure.
+     */
+    private void fail(int node, IOException cause) {
+        for (Request request : pending.values()) {
+            if ((node < 0 || request.node == node) && pending.remove(request.id, request)) {
+                request.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Selector loop: connects other nodes, reads and answers their frames and writes queued requests.
+     */
+    private void loop() {
+        List<Connection> connections = new ArrayList<>();
+        Connection[] outbound = new Connection[map.size()];
+        for (int node = 0; node < map.size(); node++) {
+            if (node != id) {
+                outbound[node] = new Connection(node);
+                connections.add(outbound[node]);
+            }
+        }
+        try {
+            while (!closed) {
+                long now = System.currentTimeMillis();
+                for (Connection connection : outbound) {
+                    if (connection != null && connection.channel == null && down.get(connection.node) == 0
+                            && now >= connection.retryAt) {
+                        try {
+                            connection.connect();
+                        } catch (IOException e) {
+                            connection.lost(e);
+                        }
+                    }
+                }
+                selector.select(RETRY_MILLIS);
+                wakeup.set(false);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        SocketChannel channel = server.accept();
+                        if (channel != null) {
+                            connections.add(new Connection(channel));
+                        }
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isConnectable()) {
+                            connection.finishConnect();
+                        } else if (key.isReadable()) {
+                            connection.read();
+                        }
+                    } catch (IOException e) {
+                        connection.lost(e);
+                    }
+                }
+                selector.selectedKeys().clear();
+                for (Connection connection : connections) {
+                    if (connection.isOpen()) {
+                        try {
+                            connection.parse();
+                            connection.fill();
+                            connection.flush();
+                        } catch (IOException e) {
+                            connection.lost(e);
+                        }
+                    }
+                }
+                connections.removeIf(connection -> connection.closed);
+            }
+            linger(connections);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes remaining frames of all connections for a limited time before the node closes.
+     * @param connections Open connections.
+     */
+    private void linger(List<Connection> connections) {
+        long deadline = System.currentTimeMillis() + LINGER_MILLIS;
+        boolean remaining = true;
+        while (remaining && System.currentTimeMillis() < deadline) {
+            remaining = false;
+            for (Connection connection : connections) {
+                if (connection.isOpen() && connection.out.position() > 0) {
+                    try {
+                        connection.flush();
+                        remaining |= connection.out.position() > 0;
+                    } catch (IOException e) {
+                        connection.lost(e);
+                    }
+                }
+            }
+            if (remaining) {
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+    }
+
+    /**
+     * Connection to another node, either opened by this node to send its calls or accepted from
+     * another node to answer its calls. Accessed only by the selector thread.
+     */
+    private final class Connection {
+
+        /**
+         * ID of the other node, -1 until accepted connection is greeted.
+         */
+        int node;
+        /**
+         * True for connection opened by this node.
+         */
+        final boolean outbound;
+        /**
+         * Socket channel, null while outbound connection waits for retry.
+         */
+        SocketChannel channel;
+        /**
+         * Selection key of the channel.
+         */
+        SelectionKey key;
+        /**
+         * Received bytes not parsed yet, in write mode.
+         */
+        final ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        /**
+         * Frames not written yet, in write mode.
+         */
+        final ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+        /**
+         * Request polled from outbox which didn't fit into the write buffer.
+         */
+        Request carry;
+        /**
+         * Time of the next connection attempt in epoch milliseconds.
+         */
+        long retryAt;
+        /**
+         * True after outbound connection was established or accepted connection was greeted.
+         */
+        boolean established;
+        /**
+         * True after the other node said it makes no more calls.
+         */
+        boolean departed;
+        /**
+         * True after connection was closed for good.
+         */
+        boolean closed;
+
+        /**
+         * Class {@code Connection} constructor for connection opened by this node.
+         * @param node ID of the other node.
+         */
+        Connection(int node) {
+            this.node = node;
+            this.outbound = true;
+        }
+
+        /**
+         * Class {@code Connection} constructor for connection accepted from another node.
+         * @param channel Accepted channel.
+         * @throws IOException If channel can't be registered.
+         */
+        Connection(SocketChannel channel) throws IOException {
+            this.node = -1;
+            this.outbound = false;
+            this.channel = channel;
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            this.key = channel.register(selector, SelectionKey.OP_READ, this);
+        }
+
+        /**
+         * Checks if connection can carry frames.
+         * @return True if channel is connected.
+         */
+        boolean isOpen() {
+            return channel != null && channel.isConnected();
+        }
+
+        /**
+         * Starts non-blocking connection to the other node.
+         * @throws IOException If channel can't be opened.
+         */
+        void connect() throws IOException {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+            if (channel.connect(map.getAddress(node))) {
+                finishConnect();
+            }
+        }
+
+        /**
+         * Completes connection to the other node and greets it.
+         * @throws IOException If connection failed after it was established before.
+         */
+        void finishConnect() throws IOException {
+            try {
+                if (!channel.finishConnect()) {
+                    return;
+                }
+            } catch (IOException e) {
+                key.cancel();
+                channel.close();
+                channel = null;
+                retryAt = System.currentTimeMillis() + RETRY_MILLIS;
+                return;
+            }
+            established = true;
+            out.putInt(HELLO_BYTES - 4).put(HELLO).putInt(id).putInt(map.hashCode());
+            key.interestOps(SelectionKey.OP_READ);
+            joined.countDown();
+        }
+
+        /**
+         * Reads available bytes.
+         * @throws IOException If connection was closed by the other node or failed.
+         */
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                throw new IOException("connection closed by " + channel.getRemoteAddress());
+            }
+        }
+
+        /**
+         * Handles complete frames of the read buffer. Stops early when the write buffer has no room
+         * for results, so a fast caller is slowed down by TCP flow control instead of growing buffers.
+         * @throws IOException If a frame is invalid.
+         */
+        void parse() throws IOException {
+            in.flip();
+            try {
+                while (in.remaining() >= 4) {
+                    int length = in.getInt(in.position());
+                    if (length <= 0 || length > BUFFER_BYTES - 4) {
+                        throw new IOException("invalid frame length " + length);
+                    }
+                    if (in.remaining() < 4 + length) {
+                        break;
+                    }
+                    byte type = in.get(in.position() + 4);
+                    if (type == CALL && out.remaining() < RESULT_BYTES) {
+                        break;
+                    }
+                    int end = in.position() + 4 + length;
+                    in.position(in.position() + 5);
+                    frame(type);
+                    if (in.position() != end) {
+                        throw new IOException("invalid length " + length + " of frame " + type);
+                    }
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("invalid frame", e);
+            } finally {
+                in.compact();
+            }
+        }
+
+        /**
+         * Handles a single frame whose type was already read.
+         * @param type Frame type.
+         * @throws IOException If frame isn't expected on this connection.
+         */
+        private void frame(byte type) throws IOException {
+            if (type == HELLO && !outbound && !established) {
+                int node = in.getInt();
+                int mapHash = in.getInt();
+                if (node < 0 || node >= map.size() || node == id || mapHash != map.hashCode()) {
+                    throw new IOException("node " + node + " isn't a member of cluster " + map);
+                }
+                this.node = node;
+                established = true;
+                joined.countDown();
+            } else if (type == CALL && !outbound && established) {
+                long request = in.getLong();
+                int caller = in.getInt();
+                int callerLength = in.get();
+                int callee = in.getInt();
+                int calleeLength = in.get();
+                boolean accept = in.get() != 0;
+                long time = in.getLong();
+                long conversationMillis = in.getLong();
+                Phone phone = directory.find(PhoneNumber.of(callee, calleeLength));
+                CallOutcome outcome = phone == null ? CallOutcome.DESTINATION_BUSY : phone.answerCall(
+                        PhoneNumber.of(caller, callerLength), accept, Duration.ofMillis(conversationMillis), time,
+                        phone.scheduler());
+                out.putInt(RESULT_BYTES - 4).put(RESULT).putLong(request).put((byte) outcome.ordinal());
+                receivedCalls++;
+            } else if (type == RESULT && outbound) {
+                long id = in.getLong();
+                CallOutcome outcome = CallOutcome.values()[in.get()];
+                Request request = pending.remove(id);
+                if (request != null) {
+                    request.complete(outcome);
+                } else if (abandoned.remove(id) != null) {
+                    lateResults++;
+                    if (outcome != CallOutcome.DESTINATION_BUSY) {
+                        mismatches++;
+                    }
+                }
+            } else if (type == BYE && !outbound && established && !departed) {
+                departed = true;
+                ClusterNode.this.departed.countDown();
+            } else {
+                throw new IOException("unexpected frame " + type);
+            }
+        }
+
+        /**
+         * Moves queued requests of an outbound connection to the write buffer.
+         */
+        void fill() {
+            if (!outbound || !established) {
+                return;
+            }
+            MpscQueue<Request> outbox = outboxes[node];
+            while (true) {
+                Request request = carry != null ? carry : outbox.poll();
+                carry = null;
+                if (request == null) {
+                    return;
+                }
+                if (request != Request.LEAVE && request.isDone()) {
+                    // caller stopped waiting before the call was sent
+                    if (abandoned.remove(request.id, request)) {
+                        withdrawnCalls++;
+                    }
+                    continue;
+                }
+                if (out.remaining() < (request == Request.LEAVE ? BYE_BYTES : CALL_BYTES)) {
+                    carry = request;
+                    return;
+                }
+                if (request == Request.LEAVE) {
+                    out.putInt(BYE_BYTES - 4).put(BYE);
+                    continue;
+                }
+                out.putInt(CALL_BYTES - 4).put(CALL).putLong(request.id)
+                        .putInt(request.from.getValue()).put((byte) request.from.getLength())
+                        .putInt(request.to.getValue()).put((byte) request.to.getLength())
+                        .put((byte) (request.accept ? 1 : 0)).putLong(request.time).putLong(request.conversationMillis);
+                sentCalls++;
+            }
+        }
+
+        /**
+         * Writes as much of the write buffer as the socket takes and selects operations to wait for.
+         * @throws IOException If connection failed.
+         */
+        void flush() throws IOException {
+            if (out.position() > 0) {
+                out.flip();
+                channel.write(out);
+                out.compact();
+                if (outbound) {
+                    writes++;
+                }
+            }
+            int ops = (in.hasRemaining() ? SelectionKey.OP_READ : 0) | (out.position() > 0 ? SelectionKey.OP_WRITE : 0);
+            if (key.interestOps() != ops) {
+                key.interestOps(ops);
+            }
+        }
+
+        /**
+         * Closes failed connection. Calls sent on it are completed exceptionally and node is marked unreachable.
+         * @param cause Reason of failure.
+         */
+        void lost(IOException cause) {
+            close();
+            if (outbound) {
+                down.set(node, 1);
+                fail(node, cause);
+                abandoned.values().removeIf(request -> request.node == node);
+                Request request;
+                while ((request = outboxes[node].poll()) != null) {
+                    if (pending.remove(request.id, request)) {
+                        request.completeExceptionally(cause);
+                    }
+                }
+            } else if (established && !departed) {
+                departed = true;
+                ClusterNode.this.departed.countDown();
+            }
+        }
+
+        /**
+         * Closes the channel.
+         */
+        void close() {
+            closed = true;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Call sent to another node, completed with its outcome.
+     */
+    private static final class Request extends CompletableFuture<CallOutcome> {
+
+        /**
+         * Marker queued after the last call of a leaving node.
+         */
+        static final Request LEAVE = new Request(0, -1, null, null, false, 0, 0);
+
+        /**
+         * Request ID.
+         */
+        final long id;
+        /**
+         * ID of destination node.
+         */
+        final int node;
+        /**
+         * Number of the calling phone.
+         */
+        final PhoneNumber from;
+        /**
+         * Number of the called phone.
+         */
+        final PhoneNumber to;
+        /**
+         * Flag indicating if destination phone should accept call.
+         */
+        final boolean accept;
+        /**
+         * Call time in epoch milliseconds.
+         */
+        final long time;
+        /**
+         * Conversation duration in milliseconds.
+         */
+        final long conversationMillis;
+
+        /**
+         * Class {@code Request} constructor.
+         * @param id Request ID.
+         * @param node ID of destination node.
+         * @param from Number of the calling phone.
+         * @param to Number of the called phone.
+         * @param accept Flag indicating if destination phone should accept call.
+         * @param time Call time in epoch milliseconds.
+         * @param conversationMillis Conversation duration in milliseconds.
+         */
+        Request(long id, int node, PhoneNumber from, PhoneNumber to, boolean accept, long time,
+                long conversationMillis) {
+            this.id = id;
+            this.node = node;
+            this.from = from;
+            this.to = to;
+            this.accept = accept;
+            this.time = time;
+            this.conversationMillis = conversationMillis;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.company;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent Count-Min sketch estimating how many times keys were counted, in fixed memory independent
+ * of the number of distinct keys. Estimates are never lower than true counts and exceed them by at most
+ * {@code e / width} of all counts with probability {@code 1 - exp(-depth)}.
+ * Keys are given as 64-bit hashes; rows are indexed by double hashing of the key hash.
+ */
+public class CountMinSketch {
+
+    /**
+     * Field {@code counters} holds counters of all rows, row after row.
+     */
+    private final AtomicLongArray counters;
+    /**
+     * Field {@code width} holds number of counters in a row, a power of two.
+     */
+    private final int width;
+    /**
+     * Field {@code depth} holds number of rows.
+     */
+    private final int depth;
+    /**
+     * Field {@code total} holds sum of all counted values.
+     */
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Class {@code CountMinSketch} constructor.
+     * @param width Number of counters in a row, rounded up to a power of two.
+     * @param depth Number of rows.
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || width > 1 << 26) {
+            throw new IllegalArgumentException("invalid width " + width);
+        }
+        if (depth <= 0 || depth > 16) {
+            throw new IllegalArgumentException("invalid depth " + depth);
+        }
+        this.width = Math.max(Integer.highestOneBit(width - 1) << 1, 1);
+        this.depth = depth;
+        this.counters = new AtomicLongArray(this.width * depth);
+    }
+
+    /**
+     * Adds value to the count of a key.
+     * @param hash 64-bit hash of the key.
+     * @param value Non-negative value to add.
+     */
+    public void add(long hash, long value) {
+        int first = (int) hash;
+        int second = (int) (hash >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            counters.getAndAdd(row * width + (first + row * second & width - 1), value);
+        }
+        total.add(value);
+    }
+
+    /**
+     * Estimates count of a key.
+     * @param hash 64-bit hash of the key.
+     * @return Smallest counter of the key, never lower than its true count.
+     */
+    public long estimate(long hash) {
+        int first = (int) hash;
+        int second = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(row * width + (first + row * second & width - 1)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Total getter.
+     * @return Sum of all counted values.
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * Error bound getter.
+     * @return Largest expected overestimate of a count, {@code e / width} of the total.
+     */
+    public double getErrorBound() {
+        return Math.E / width * getTotal();
+    }
+
+    /**
+     * Memory getter.
+     * @return Number of bytes taken by counters.
+     */
+    public long getBytes() {
+        return (long) counters.length() * Long.BYTES;
+    }
+
+    /**
+     * Resets all counts. Values counted concurrently may be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        total.reset();
+    }
+}
@@ -0,0 +1,247 @@
+package com.company;
+
+import java.util.Arrays;
+
+/**
+ * Reverse index of a register which maps other phone's number to sequence numbers of its records.
+ * Postings of every number are kept in ascending order. Postings of evicted records are dropped lazily,
+ * when the number gets a new record or is looked up. When numbers without live records or oversized posting
+ * arrays outgrow the live records of the register, the index is compacted, so with bounded retention its memory
+ * stays proportional to the register size instead of to all numbers ever seen.
+ */
+class CounterpartIndex {
+
+    /**
+     * Marker of an empty slot in {@code keys} table.
+     */
+    private static final int FREE = -1;
+    /**
+     * Initial length of hash table.
+     */
+    private static final int INITIAL_LENGTH = 16;
+    /**
+     * Initial capacity of postings of a single number.
+     */
+    private static final int INITIAL_POSTINGS = 4;
+    /**
+     * Number of used slots per live record above which the index is compacted.
+     */
+    private static final int MAX_KEYS_PER_RECORD = 2;
+    /**
+     * Number of allocated postings per live record above which the index is compacted.
+     */
+    private static final int MAX_POSTINGS_PER_RECORD = 12;
+
+    /**
+     * Hash table of numbers, linear probing. Length is a power of two.
+     */
+    private int[] keys;
+    /**
+     * Sequence numbers of records of numbers stored in the same slots of {@code keys}.
+     */
+    private long[][] postings;
+    /**
+     * Index of the first live posting of every number.
+     */
+    private int[] starts;
+    /**
+     * Number of postings of every number, including dropped ones before {@code starts}.
+     */
+    private int[] counts;
+    /**
+     * Number of used slots.
+     */
+    private int used;
+    /**
+     * Total length of all posting arrays.
+     */
+    private long allocated;
+
+    /**
+     * Class {@code CounterpartIndex} constructor.
+     */
+    CounterpartIndex() {
+        allocate(INITIAL_LENGTH);
+    }
+
+    /**
+     * Adds record of given number.
+     * @param number Other phone's number value.
+     * @param sequence Sequence number of the record.
+     * @param oldest Sequence number of the oldest live record of the register.
+     */
+    void add(int number, long sequence, long oldest) {
+        int slot = slot(keys, number);
+        if (keys[slot] == FREE) {
+            if ((used + 1) * 4 > keys.length * 3) {
+                rehash();
+                slot = slot(keys, number);
+            }
+            keys[slot] = number;
+            postings[slot] = new long[INITIAL_POSTINGS];
+            allocated += INITIAL_POSTINGS;
+            used++;
+        }
+        drop(slot, oldest);
+        if (counts[slot] == postings[slot].length) {
+            resize(slot, Math.max(INITIAL_POSTINGS, (counts[slot] - starts[slot]) * 2));
+        }
+        postings[slot][counts[slot]++] = sequence;
+        long records = sequence + 1 - oldest;
+        if (used > MAX_KEYS_PER_RECORD * records + INITIAL_LENGTH
+                || allocated > MAX_POSTINGS_PER_RECORD * records + INITIAL_POSTINGS * INITIAL_LENGTH) {
+            compact(oldest);
+        }
+    }
+
+    /**
+     * Moves live postings of a number to the beginning of a new array.
+     * @param slot Slot of the number.
+     * @param length New array length, at least the number of live postings.
+     */
+    private void resize(int slot, int length) {
+        int live = counts[slot] - starts[slot];
+        long[] resized = new long[length];
+        System.arraycopy(postings[slot], starts[slot], resized, 0, live);
+        allocated += length - postings[slot].length;
+        postings[slot] = resized;
+        starts[slot] = 0;
+        counts[slot] = live;
+    }
+
+    /**
+     * Removes numbers without live records, trims posting arrays to twice their live postings
+     * and rebuilds the hash table for the remaining numbers, shrinking it if possible.
+     * @param oldest Sequence number of the oldest live record of the register.
+     */
+    private void compact(long oldest) {
+        int[] oldKeys = keys;
+        long[][] oldPostings = postings;
+        int[] oldStarts = starts;
+        int[] oldCounts = counts;
+        int remaining = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                drop(i, oldest);
+                if (oldStarts[i] < oldCounts[i]) {
+                    remaining++;
+                }
+            }
+        }
+        int length = INITIAL_LENGTH;
+        while (remaining * 4 > length * 3) {
+            length *= 2;
+        }
+        allocate(length);
+        used = 0;
+        allocated = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE && oldStarts[i] < oldCounts[i]) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                postings[slot] = oldPostings[i];
+                starts[slot] = oldStarts[i];
+                counts[slot] = oldCounts[i];
+                allocated += oldPostings[i].length;
+                used++;
+                int live = counts[slot] - starts[slot];
+                if (postings[slot].length > Math.max(INITIAL_POSTINGS, live * 2)) {
+                    resize(slot, Math.max(INITIAL_POSTINGS, live * 2));
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits live sequence numbers of records of given number, newest first.
+     * @param number Other phone's number value.
+     * @param oldest Sequence number of the oldest live record of the register.
+     * @param visitor Visitor receiving sequence numbers.
+     */
+    void forEach(int number, long oldest, SequenceVisitor visitor) {
+        int slot = slot(keys, number);
+        if (keys[slot] == FREE) {
+            return;
+        }
+        drop(slot, oldest);
+        long[] list = postings[slot];
+        for (int i = counts[slot] - 1; i >= starts[slot]; i--) {
+            visitor.visit(list[i]);
+        }
+    }
+
+    /**
+     * Skips postings of evicted records.
+     * @param slot Slot of the number.
+     * @param oldest Sequence number of the oldest live record of the register.
+     */
+    private void drop(int slot, long oldest) {
+        long[] list = postings[slot];
+        int start = starts[slot];
+        while (start < counts[slot] && list[start] < oldest) {
+            start++;
+        }
+        starts[slot] = start;
+    }
+
+    /**
+     * Doubles hash table length.
+     */
+    private void rehash() {
+        int[] oldKeys = keys;
+        long[][] oldPostings = postings;
+        int[] oldStarts = starts;
+        int[] oldCounts = counts;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                postings[slot] = oldPostings[i];
+                starts[slot] = oldStarts[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Allocates empty hash table.
+     * @param length Table length.
+     */
+    private void allocate(int length) {
+        keys = new int[length];
+        Arrays.fill(keys, FREE);
+        postings = new long[length][];
+        starts = new int[length];
+        counts = new int[length];
+    }
+
+    /**
+     * Finds slot containing given number or the free slot where it should be inserted.
+     * @param keys Hash table.
+     * @param number Number to be found.
+     * @return Slot index.
+     */
+    private static int slot(int[] keys, int number) {
+        int mask = keys.length - 1;
+        int h = number * 0x9E3779B9;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (keys[slot] != number && keys[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Visitor of record sequence numbers.
+     */
+    @FunctionalInterface
+    interface SequenceVisitor {
+
+        /**
+         * Receives sequence number of a record.
+         * @param sequence Sequence number.
+         */
+        void visit(long sequence);
+    }
+}
@@ -0,0 +1,233 @@
+package com.company;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous call event logger. Phones copy events into preallocated slots of a bounded ring buffer without
+ * allocating or locking and a background thread formats them and writes them in batches, so console or file
+ * output never slows calls down. Events arriving when the buffer is full are dropped and counted.
+ * Attempts aren't logged, every call is logged once with its outcome.
+ */
+public class EventLogger implements CallListener, Closeable {
+
+    /**
+     * Default number of buffered events.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    /**
+     * Time the writer thread sleeps when there are no events to write.
+     */
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    /**
+     * Field {@code slots} holds buffered events, indexed by sequence number modulo capacity.
+     */
+    private final Slot[] slots;
+    /**
+     * Field {@code mask} is capacity minus one, used to find slot of a sequence number.
+     */
+    private final int mask;
+    /**
+     * Field {@code tail} holds sequence number of the next claimed slot.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Field {@code head} holds sequence number of the next slot to be written out.
+     */
+    private volatile long head;
+    /**
+     * Field {@code dropped} counts events dropped because buffer was full.
+     */
+    private final LongAdder dropped = new LongAdder();
+    /**
+     * Field {@code out} is destination of formatted events.
+     */
+    private final Appendable out;
+    /**
+     * Field {@code writer} formats and writes buffered events.
+     */
+    private final Thread writer;
+    /**
+     * Field {@code closed} tells writer thread to write remaining events and stop.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Class {@code EventLogger} constructor. Logger writes events to the console.
+     */
+    public EventLogger() {
+        this(System.out, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Class {@code EventLogger} constructor.
+     * @param out Destination of formatted events, e.g. {@code PrintStream} or {@code Writer}.
+     * @param capacity Number of buffered events, rounded up to a power of two.
+     */
+    public EventLogger(Appendable out, int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("invalid capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        size = Math.max(size, 1);
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            slots[i].sequence = i - size;
+        }
+        this.mask = size - 1;
+        this.out = out;
+        this.writer = new Thread(this::drain, "event-logger");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void onCallEvent(CallEventType type, Phone caller, CallParty callee, boolean accept,
+                            long time, Duration conversationTime) {
+        if (type == CallEventType.ATTEMPT) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        Slot slot = slots[(int) sequence & mask];
+        slot.type = type;
+        slot.caller = caller;
+        slot.callee = callee;
+        slot.conversationTime = conversationTime;
+        slot.sequence = sequence;
+    }
+
+    /**
+     * Writer thread loop which writes all published events in one batch and flushes destination.
+     */
+    private void drain() {
+        StringBuilder batch = new StringBuilder(8192);
+        while (true) {
+            boolean stopping = closed;
+            long sequence = head;
+            Slot slot = slots[(int) sequence & mask];
+            while (slot.sequence == sequence) {
+                format(slot, batch);
+                slot.caller = null;
+                slot.callee = null;
+                slot.conversationTime = null;
+                head = ++sequence;
+                slot = slots[(int) sequence & mask];
+            }
+            if (batch.length() > 0) {
+                write(batch);
+                batch.setLength(0);
+            } else if (stopping && sequence == tail.get()) {
+                return;
+            } else {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Formats event with the message {@code Phone.call} prints for the same outcome.
+     * @param slot Buffered event.
+     * @param batch Destination buffer.
+     */
+    private static void format(Slot slot, StringBuilder batch) {
+        switch (slot.type) {
+            case ACCEPTED:
+                batch.append(CallOutcome.ACCEPTED.describe(slot.caller, slot.callee, slot.conversationTime));
+                break;
+            case REJECTED:
+                batch.append(CallOutcome.REJECTED.describe(slot.caller, slot.callee, slot.conversationTime));
+                break;
+            case BUSY:
+                batch.append(CallOutcome.DESTINATION_BUSY.describe(slot.caller, slot.callee, slot.conversationTime));
+                break;
+            default:
+                batch.append("Conversation between ").append(slot.caller.getPhoneNumber()).append(" and ")
+                        .append(slot.callee.getPhoneNumber()).append(" ended");
+        }
+        batch.append(System.lineSeparator());
+    }
+
+    /**
+     * Writes batch of formatted events and flushes destination.
+     * @param batch Formatted events.
+     */
+    private void write(StringBuilder batch) {
+        try {
+            out.append(batch);
+            if (out instanceof Writer) {
+                ((Writer) out).flush();
+            } else if (out instanceof PrintStream) {
+                ((PrintStream) out).flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Dropped events getter.
+     * @return Number of events dropped because buffer was full.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Writes buffered events and stops writer thread. Events logged afterwards are never written.
+     * Destination isn't closed.
+     * @throws IOException If current thread was interrupted while waiting for writer thread.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while closing event logger", e);
+        }
+    }
+
+    /**
+     * Preallocated buffer slot holding one event.
+     */
+    private static class Slot {
+
+        /**
+         * Sequence number of the event, published last so writer thread sees the whole event.
+         */
+        volatile long sequence;
+        /**
+         * Event type.
+         */
+        CallEventType type;
+        /**
+         * Source phone of the call.
+         */
+        Phone caller;
+        /**
+         * Destination phone of the call.
+         */
+        CallParty callee;
+        /**
+         * Conversation duration.
+         */
+        Duration conversationTime;
+    }
+}
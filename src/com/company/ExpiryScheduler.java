@@ -0,0 +1,36 @@
+package com.company;
+
+import java.time.Duration;
+
+/**
+ * Scheduler that owns expiries of conversations and other delayed tasks.
+ * Scheduled tasks should be short, because implementations may run all of them on a bounded number of threads.
+ */
+public interface ExpiryScheduler {
+
+    /**
+     * Schedules task to be run once after given delay.
+     * @param task Task to be run when delay expires.
+     * @param delay Time after which task is run.
+     * @return Handle that allows to cancel the task.
+     */
+    Timeout schedule(Runnable task, Duration delay);
+
+    /**
+     * Handle of a task scheduled by {@code ExpiryScheduler}.
+     */
+    interface Timeout {
+
+        /**
+         * Cancels scheduled task if it hasn't been run yet.
+         * @return True if task was cancelled or false if it already expired or was cancelled before.
+         */
+        boolean cancel();
+
+        /**
+         * Checks if task has been cancelled.
+         * @return True if {@code cancel} succeeded for this task.
+         */
+        boolean isCancelled();
+    }
+}
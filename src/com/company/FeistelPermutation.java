@@ -0,0 +1,93 @@
+package com.company;
+
+import java.util.SplittableRandom;
+
+/**
+ * Keyed pseudo-random permutation of numbers from 0 to {@code domain - 1}. A balanced Feistel network permutes
+ * the smallest even number of bits covering the domain and values falling outside of the domain are encrypted
+ * again (cycle walking), so every index maps to a different value without storing anything per value.
+ */
+class FeistelPermutation {
+
+    /**
+     * Number of Feistel rounds.
+     */
+    private static final int ROUNDS = 4;
+
+    /**
+     * Field {@code domain} holds number of permuted values.
+     */
+    private final long domain;
+    /**
+     * Field {@code halfBits} holds number of bits of each half of a block.
+     */
+    private final int halfBits;
+    /**
+     * Field {@code mask} masks one half of a block.
+     */
+    private final long mask;
+    /**
+     * Field {@code keys} holds round keys derived from seed.
+     */
+    private final long[] keys;
+
+    /**
+     * Class {@code FeistelPermutation} constructor.
+     * @param domain Number of permuted values, up to {@code 2^62}.
+     * @param seed Seed of round keys; the same seed gives the same permutation.
+     */
+    FeistelPermutation(long domain, long seed) {
+        if (domain <= 0 || domain > 1L << 62) {
+            throw new IllegalArgumentException("invalid domain " + domain);
+        }
+        int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(domain - 1));
+        this.domain = domain;
+        this.halfBits = (bits + 1) / 2;
+        this.mask = (1L << halfBits) - 1;
+        this.keys = new long[ROUNDS];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < ROUNDS; i++) {
+            keys[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Permutes a value.
+     * @param index Value from 0 to {@code domain - 1}.
+     * @return Permuted value from 0 to {@code domain - 1}.
+     */
+    long apply(long index) {
+        long value = index;
+        do {
+            value = encrypt(value);
+        } while (value >= domain);
+        return value;
+    }
+
+    /**
+     * Runs Feistel network on one block.
+     * @param block Block of {@code 2 * halfBits} bits.
+     * @return Encrypted block.
+     */
+    private long encrypt(long block) {
+        long left = block >>> halfBits;
+        long right = block & mask;
+        for (long key : keys) {
+            long next = left ^ (mix(right ^ key) & mask);
+            left = right;
+            right = next;
+        }
+        return left << halfBits | right;
+    }
+
+    /**
+     * Round function, finalizer of MurmurHash3.
+     * @param value Half block mixed with round key.
+     * @return Mixed bits.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+}
@@ -0,0 +1,52 @@
+package com.company;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Spill sink which appends evicted records to a text file, one record per line,
+ * e.g. {@code 881547540 [Outbound] {652590033, Accepted, Available, 2021-07-24 14:44:20, PT2M}}.
+ */
+public class FileSpillSink implements SpillSink, Closeable {
+
+    /**
+     * Writer of the spill file.
+     */
+    private final BufferedWriter writer;
+
+    /**
+     * Class {@code FileSpillSink} constructor. Opens the file for appending.
+     * @param fileName File name with extension.
+     * @throws IOException If file can't be opened.
+     */
+    public FileSpillSink(String fileName) throws IOException {
+        this.writer = new BufferedWriter(new FileWriter(fileName, true));
+    }
+
+    @Override
+    public synchronized void spill(Phone phone, boolean inbound, PhoneRegisterEntry entry) {
+        try {
+            writer.write(phone.getPhoneNumber());
+            writer.write(inbound ? " [Inbound] " : " [Outbound] ");
+            writer.write(entry.toString());
+            writer.newLine();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Flushes spilled records to the file.
+     * @throws IOException If records can't be written.
+     */
+    public synchronized void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,263 @@
+package com.company;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Top-K tracker of phone numbers with the largest weights, using the Space-Saving algorithm in fixed memory.
+ * Every number whose weight exceeds {@code 1 / capacity} of the total weight of its stripe is guaranteed
+ * to be tracked, and tracked weights exceed true weights by at most their reported error.
+ * <p>
+ * Numbers are split into stripes by hash, each an independent summary with its own lock,
+ * so phones calling from many threads rarely contend. A number always falls into the same stripe,
+ * so the top numbers of all stripes together are the top numbers of the whole stream.
+ * Tracked numbers of a stripe are kept in a min-heap by weight too, so the number replaced by a new one
+ * is found in constant time and every update takes logarithmic time in the capacity.
+ */
+public class HeavyHitters {
+
+    /**
+     * Tracked number with its estimated weight.
+     */
+    public static final class Entry {
+
+        /**
+         * Field {@code number} holds tracked phone number.
+         */
+        private final PhoneNumber number;
+        /**
+         * Field {@code weight} holds estimated weight, never lower than the true weight.
+         */
+        private long weight;
+        /**
+         * Field {@code error} holds largest possible overestimate of the weight.
+         */
+        private long error;
+        /**
+         * Field {@code index} holds position of the entry in the heap of its stripe.
+         */
+        private int index;
+
+        /**
+         * Class {@code Entry} constructor.
+         * @param number Tracked phone number.
+         * @param weight Estimated weight.
+         * @param error Largest possible overestimate of the weight.
+         */
+        private Entry(PhoneNumber number, long weight, long error) {
+            this.number = number;
+            this.weight = weight;
+            this.error = error;
+        }
+
+        /**
+         * Number getter.
+         * @return Tracked phone number.
+         */
+        public PhoneNumber getNumber() {
+            return number;
+        }
+
+        /**
+         * Weight getter.
+         * @return Estimated weight, never lower than the true weight.
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * Error getter.
+         * @return Largest possible overestimate of the weight.
+         */
+        public long getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return number + "=" + weight + (error > 0 ? "+-" + error : "");
+        }
+    }
+
+    /**
+     * Tracked numbers of a stripe, by number and in a min-heap by weight.
+     */
+    private static final class Stripe {
+
+        /**
+         * Field {@code entries} holds tracked numbers by number.
+         */
+        private final Map<PhoneNumber, Entry> entries;
+        /**
+         * Field {@code heap} holds tracked numbers ordered so that every entry weighs at most its children.
+         */
+        private final Entry[] heap;
+
+        /**
+         * Class {@code Stripe} constructor.
+         * @param capacity Number of tracked numbers.
+         */
+        private Stripe(int capacity) {
+            this.entries = new HashMap<>(capacity * 2);
+            this.heap = new Entry[capacity];
+        }
+
+        /**
+         * Adds weight to a number, replacing the number with the smallest weight if the stripe is full.
+         * @param number Phone number.
+         * @param weight Non-negative weight to add.
+         */
+        private void add(PhoneNumber number, long weight) {
+            Entry entry = entries.get(number);
+            if (entry != null) {
+                entry.weight += weight;
+                siftDown(entry.index);
+                return;
+            }
+            int size = entries.size();
+            if (size < heap.length) {
+                entry = new Entry(number, weight, 0);
+                entries.put(number, entry);
+                heap[size] = entry;
+                entry.index = size;
+                siftUp(size);
+                return;
+            }
+            Entry smallest = heap[0];
+            entries.remove(smallest.number);
+            entry = new Entry(number, smallest.weight + weight, smallest.weight);
+            entries.put(number, entry);
+            heap[0] = entry;
+            siftDown(0);
+        }
+
+        /**
+         * Moves an entry towards the root while it weighs less than its parent.
+         * @param index Position of the entry.
+         */
+        private void siftUp(int index) {
+            Entry entry = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heap[parent].weight <= entry.weight) {
+                    break;
+                }
+                place(heap[parent], index);
+                index = parent;
+            }
+            place(entry, index);
+        }
+
+        /**
+         * Moves an entry towards the leaves while it weighs more than its lighter child.
+         * @param index Position of the entry.
+         */
+        private void siftDown(int index) {
+            Entry entry = heap[index];
+            int size = entries.size();
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1].weight < heap[child].weight) {
+                    child++;
+                }
+                if (entry.weight <= heap[child].weight) {
+                    break;
+                }
+                place(heap[child], index);
+                index = child;
+            }
+            place(entry, index);
+        }
+
+        /**
+         * Puts an entry at a position of the heap.
+         * @param entry Tracked number.
+         * @param index Position of the entry.
+         */
+        private void place(Entry entry, int index) {
+            heap[index] = entry;
+            entry.index = index;
+        }
+
+        /**
+         * Removes all tracked numbers.
+         */
+        private void clear() {
+            entries.clear();
+            Arrays.fill(heap, null);
+        }
+    }
+
+    /**
+     * Field {@code stripes} holds tracked numbers of every stripe.
+     */
+    private final Stripe[] stripes;
+
+    /**
+     * Class {@code HeavyHitters} constructor.
+     * @param capacity Number of tracked numbers in every stripe.
+     * @param stripes Number of independently locked stripes, rounded up to a power of two.
+     */
+    public HeavyHitters(int capacity, int stripes) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("invalid capacity " + capacity);
+        }
+        if (stripes <= 0 || stripes > 1 << 16) {
+            throw new IllegalArgumentException("invalid number of stripes " + stripes);
+        }
+        this.stripes = new Stripe[Math.max(Integer.highestOneBit(stripes - 1) << 1, 1)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe(capacity);
+        }
+    }
+
+    /**
+     * Adds weight to a number. If the number isn't tracked and its stripe is full,
+     * it replaces the number with the smallest weight and inherits that weight as its error.
+     * @param number Phone number.
+     * @param weight Non-negative weight to add.
+     */
+    public void add(PhoneNumber number, long weight) {
+        Stripe stripe = stripes[number.hashCode() * 0x9E3779B9 >>> 16 & stripes.length - 1];
+        synchronized (stripe) {
+            stripe.add(number, weight);
+        }
+    }
+
+    /**
+     * Returns tracked numbers with the largest weights.
+     * @param count Maximum number of returned numbers.
+     * @return Copies of entries ordered by decreasing weight.
+     */
+    public List<Entry> top(int count) {
+        List<Entry> entries = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Entry entry : stripe.entries.values()) {
+                    entries.add(new Entry(entry.number, entry.weight, entry.error));
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::getWeight).reversed());
+        return entries.size() > count ? new ArrayList<>(entries.subList(0, count)) : entries;
+    }
+
+    /**
+     * Removes all tracked numbers.
+     */
+    public void reset() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+}
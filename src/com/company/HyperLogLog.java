@@ -0,0 +1,155 @@
+package com.company;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent HyperLogLog estimating number of distinct keys in {@code 2^precision} bytes, with relative
+ * standard error of about {@code 1.04 / sqrt(2^precision)}: 13% with 64 bytes, 1.6% with 4 KiB.
+ * Keys are given as 64-bit hashes. One-byte registers are packed eight to a {@code long} and raised
+ * with compare-and-set, so adding never blocks and adding a key seen before doesn't write at all.
+ */
+public class HyperLogLog {
+
+    /**
+     * Smallest supported precision.
+     */
+    public static final int MIN_PRECISION = 4;
+    /**
+     * Largest supported precision.
+     */
+    public static final int MAX_PRECISION = 16;
+
+    /**
+     * Field {@code registers} holds one-byte registers, eight in every element.
+     */
+    private final AtomicLongArray registers;
+    /**
+     * Field {@code precision} holds number of hash bits selecting a register.
+     */
+    private final int precision;
+
+    /**
+     * Class {@code HyperLogLog} constructor.
+     * @param precision Number of hash bits selecting a register, from {@code MIN_PRECISION} to {@code MAX_PRECISION}.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("invalid precision " + precision);
+        }
+        this.precision = precision;
+        this.registers = new AtomicLongArray(1 << precision - 3);
+    }
+
+    /**
+     * Adds a key.
+     * @param hash 64-bit hash of the key.
+     */
+    public void add(long hash) {
+        raise(registers, (int) (hash >>> 64 - precision), rank(hash, precision));
+    }
+
+    /**
+     * Computes rank of a hash: position of the first set bit after the bits selecting a register.
+     * @param hash 64-bit hash of the key.
+     * @param precision Number of hash bits selecting a register.
+     * @return Rank from 1 to {@code 65 - precision}.
+     */
+    static long rank(long hash, int precision) {
+        return Long.numberOfLeadingZeros(hash << precision | 1L << precision - 1) + 1;
+    }
+
+    /**
+     * Raises a register to given rank unless it is higher already.
+     * @param registers One-byte registers, eight in every element.
+     * @param register Register index.
+     * @param rank Rank of added key.
+     */
+    static void raise(AtomicLongArray registers, int register, long rank) {
+        int index = register >>> 3;
+        int shift = (register & 7) << 3;
+        long word;
+        do {
+            word = registers.get(index);
+            if ((word >>> shift & 0xFF) >= rank) {
+                return;
+            }
+        } while (!registers.compareAndSet(index, word, word & ~(0xFFL << shift) | rank << shift));
+    }
+
+    /**
+     * Reads a register.
+     * @param registers One-byte registers, eight in every element.
+     * @param register Register index.
+     * @return Rank stored in the register, 0 if it is empty.
+     */
+    static int get(AtomicLongArray registers, int register) {
+        return (int) (registers.get(register >>> 3) >>> ((register & 7) << 3) & 0xFF);
+    }
+
+    /**
+     * Estimates number of distinct keys added, using linear counting while many registers are empty.
+     * @return Estimated number of distinct keys.
+     */
+    public long estimate() {
+        return Math.round(estimate(registers));
+    }
+
+    /**
+     * Estimates number of distinct keys added to registers.
+     * @param registers One-byte registers, eight in every element.
+     * @return Estimated number of distinct keys.
+     */
+    static double estimate(AtomicLongArray registers) {
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < registers.length(); i++) {
+            long word = registers.get(i);
+            for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+                int rank = (int) (word >>> shift & 0xFF);
+                sum += Math.scalb(1.0, -rank);
+                if (rank == 0) {
+                    zeros++;
+                }
+            }
+        }
+        return estimate(registers.length() * 8, sum, zeros);
+    }
+
+    /**
+     * Estimates number of distinct keys from registers, using linear counting while many registers are empty.
+     * @param m Number of registers.
+     * @param sum Sum of {@code 2^-rank} over all registers.
+     * @param zeros Number of empty registers.
+     * @return Estimated number of distinct keys.
+     */
+    static double estimate(int m, double sum, int zeros) {
+        double alpha;
+        switch (m) {
+            case 16:
+                alpha = 0.673;
+                break;
+            case 32:
+                alpha = 0.697;
+                break;
+            case 64:
+                alpha = 0.709;
+                break;
+            default:
+                alpha = 0.7213 / (1 + 1.079 / m);
+                break;
+        }
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return estimate;
+    }
+
+    /**
+     * Memory getter.
+     * @return Number of bytes taken by registers.
+     */
+    public int getBytes() {
+        return 1 << precision;
+    }
+}
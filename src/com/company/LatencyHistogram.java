@@ -0,0 +1,151 @@
+package com.company;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent log-linear histogram of latencies in nanoseconds, in the style of HdrHistogram.
+ * Every power of two is split into {@code 2^SUB_BUCKET_BITS} linear buckets, so recorded values
+ * keep about 3% precision over the whole {@code long} range in fixed 15 KiB of memory.
+ * Recording is a few arithmetic instructions and one atomic increment and never allocates.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of bits of linear buckets in every power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+    /**
+     * Number of linear buckets in every power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Field {@code counts} holds number of recorded values by bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray((65 - SUB_BUCKET_BITS) << SUB_BUCKET_BITS);
+    /**
+     * Field {@code count} holds number of recorded values.
+     */
+    private final LongAdder count = new LongAdder();
+    /**
+     * Field {@code sum} holds sum of recorded values.
+     */
+    private final LongAdder sum = new LongAdder();
+    /**
+     * Field {@code max} holds largest recorded value.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     * @param nanos Latency in nanoseconds, negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Finds bucket of a value.
+     * @param value Non-negative value.
+     * @return Bucket index.
+     */
+    private static int bucket(long value) {
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        if (shift <= 0) {
+            return (int) value;
+        }
+        return (shift + 1) << SUB_BUCKET_BITS | (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    }
+
+    /**
+     * Finds largest value falling into a bucket.
+     * @param bucket Bucket index.
+     * @return Upper bound of bucket values.
+     */
+    private static long highestValue(int bucket) {
+        int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+        if (shift <= 0) {
+            return bucket;
+        }
+        long lowest = (long) (bucket & (SUB_BUCKETS - 1) | SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Count getter.
+     * @return Number of recorded values.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Max getter.
+     * @return Largest recorded value in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Mean getter.
+     * @return Mean of recorded values in nanoseconds.
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Finds value below which given percentage of recorded values fall.
+     * @param percentile Percentage from 0 to 100.
+     * @return Value in nanoseconds, within bucket precision and never above the largest recorded value.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("invalid percentile " + percentile);
+        }
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Resets histogram. Values recorded concurrently may be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count: %d, mean: %.1fus, p50: %.1fus, p90: %.1fus, p99: %.1fus, p99.9: %.1fus, " +
+                        "max: %.1fus",
+                getCount(), getMean() / 1000, getValueAtPercentile(50) / 1000.0,
+                getValueAtPercentile(90) / 1000.0, getValueAtPercentile(99) / 1000.0,
+                getValueAtPercentile(99.9) / 1000.0, getMax() / 1000.0);
+    }
+}
@@ -0,0 +1,392 @@
+package com.company;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Headless traffic generator which makes calls between phones on many worker threads according to
+ * a {@code TrafficModel} and counts their outcomes. In a cluster, local phones call numbers of the whole
+ * cluster and phones of other nodes are called through {@code ClusterNode} by their numbers alone.
+ */
+public class LoadGenerator {
+
+    /**
+     * Field {@code model} describes generated traffic.
+     */
+    private final TrafficModel model;
+    /**
+     * Phones making calls.
+     */
+    private final Phone[] callers;
+    /**
+     * All phones taking part in the test.
+     */
+    private final Phone[] phones;
+    /**
+     * Phones split into groups of calling-pattern matrix.
+     */
+    private final Phone[][] groups;
+    /**
+     * Local cluster node calling phones of other nodes, null if only local phones are called.
+     */
+    private final ClusterNode node;
+    /**
+     * Local phones of the cluster, null if only local phones are called.
+     */
+    private final PhoneDirectory directory;
+    /**
+     * Number values of all phones of the cluster.
+     */
+    private final int[] numbers;
+    /**
+     * Number values of the cluster split into groups of calling-pattern matrix.
+     */
+    private final int[][] numberGroups;
+    /**
+     * Number of digits of cluster numbers.
+     */
+    private final int numberLength;
+    /**
+     * Number of worker threads.
+     */
+    private final int threads;
+    /**
+     * Seed of worker threads' random number generators.
+     */
+    private final long seed;
+    /**
+     * Number of call attempts.
+     */
+    private final LongAdder attempts;
+    /**
+     * Number of accepted calls.
+     */
+    private final LongAdder accepted;
+    /**
+     * Number of calls rejected by destination phone.
+     */
+    private final LongAdder rejected;
+    /**
+     * Number of calls which failed because caller or destination phone was unavailable.
+     */
+    private final LongAdder busy;
+
+    /**
+     * Class {@code LoadGenerator} constructor.
+     * @param model Traffic model.
+     * @param phones Phones taking part in the test.
+     * @param threads Number of worker threads.
+     * @param seed Seed of worker threads' random number generators.
+     */
+    public LoadGenerator(TrafficModel model, List<Phone> phones, int threads, long seed) {
+        this(model, phones, null, null, new int[0], 0, threads, seed);
+    }
+
+    /**
+     * Class {@code LoadGenerator} constructor for a node of a cluster, whose local phones call phones
+     * of the whole cluster. Only local phones are kept as objects, other destinations are numbers.
+     * @param model Traffic model.
+     * @param local Phones owned by the local node.
+     * @param node Local cluster node.
+     * @param numbers Number values of all phones of the cluster, e.g. from {@code generateClusterPhones}.
+     * @param numberLength Number of digits of cluster numbers.
+     * @param threads Number of worker threads.
+     * @param seed Seed of worker threads' random number generators.
+     */
+    public LoadGenerator(TrafficModel model, PhoneDirectory local, ClusterNode node, int[] numbers, int numberLength,
+                         int threads, long seed) {
+        this(model, local.toList(), node, local, numbers, numberLength, threads, seed);
+        if (numbers.length == 0) {
+            throw new IllegalArgumentException("no phones to call in the cluster");
+        }
+    }
+
+    /**
+     * Class {@code LoadGenerator} constructor.
+     * @param model Traffic model.
+     * @param callers Phones making calls.
+     * @param node Local cluster node or null.
+     * @param directory Local phones of the cluster or null.
+     * @param numbers Number values of all phones of the cluster, empty without cluster.
+     * @param numberLength Number of digits of cluster numbers.
+     * @param threads Number of worker threads.
+     * @param seed Seed of worker threads' random number generators.
+     */
+    private LoadGenerator(TrafficModel model, List<Phone> callers, ClusterNode node, PhoneDirectory directory,
+                          int[] numbers, int numberLength, int threads, long seed) {
+        if (callers.isEmpty()) {
+            throw new IllegalArgumentException("no phones to generate traffic for");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("invalid number of threads " + threads);
+        }
+        this.model = model;
+        this.callers = callers.toArray(new Phone[0]);
+        this.phones = this.callers;
+        this.groups = group(this.phones);
+        this.node = node;
+        this.directory = directory;
+        this.numbers = numbers;
+        this.numberGroups = group(numbers, numberLength);
+        this.numberLength = numberLength;
+        this.threads = threads;
+        this.seed = seed;
+        this.attempts = new LongAdder();
+        this.accepted = new LongAdder();
+        this.rejected = new LongAdder();
+        this.busy = new LongAdder();
+    }
+
+    /**
+     * Splits phones into groups of calling-pattern matrix.
+     * @param phones All phones.
+     * @return Phones of every group.
+     */
+    static Phone[][] group(Phone[] phones) {
+        List<List<Phone>> lists = new ArrayList<>();
+        for (int i = 0; i < TrafficModel.GROUPS; i++) {
+            lists.add(new ArrayList<>());
+        }
+        for (Phone phone : phones) {
+            int group = TrafficModel.groupOf(phone.getNumber());
+            if (group >= 0) {
+                lists.get(group).add(phone);
+            }
+        }
+        Phone[][] groups = new Phone[TrafficModel.GROUPS][];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = lists.get(i).toArray(new Phone[0]);
+        }
+        return groups;
+    }
+
+    /**
+     * Splits number values into groups of calling-pattern matrix.
+     * @param numbers Number values.
+     * @param length Number of digits of the numbers.
+     * @return Number values of every group.
+     */
+    static int[][] group(int[] numbers, int length) {
+        int[] sizes = new int[TrafficModel.GROUPS];
+        for (int value : numbers) {
+            int group = TrafficModel.groupOf(PhoneNumber.of(value, length));
+            if (group >= 0) {
+                sizes[group]++;
+            }
+        }
+        int[][] groups = new int[TrafficModel.GROUPS][];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = new int[sizes[i]];
+            sizes[i] = 0;
+        }
+        for (int value : numbers) {
+            int group = TrafficModel.groupOf(PhoneNumber.of(value, length));
+            if (group >= 0) {
+                groups[group][sizes[group]++] = value;
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Generates traffic for given time and waits for all worker threads to finish.
+     * @param duration Test duration.
+     * @return Test results.
+     * @throws InterruptedException If current thread was interrupted while waiting for workers.
+     */
+    public Report run(Duration duration) throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            Random random = new Random(seed + i);
+            workers[i] = new Thread(() -> work(random, start, end), "load-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new Report(System.nanoTime() - start, attempts.sum(), accepted.sum(), rejected.sum(), busy.sum());
+    }
+
+    /**
+     * Worker thread loop which makes calls at Poisson arrival times until the end of the test.
+     * @param random Worker's random number generator.
+     * @param start Test start in {@code System.nanoTime()} units.
+     * @param end Test end in {@code System.nanoTime()} units.
+     */
+    private void work(Random random, long start, long end) {
+        long next = start;
+        while (true) {
+            next += model.nextArrivalNanos(random, threads);
+            long now = System.nanoTime();
+            if (next >= end || now >= end) {
+                return;
+            }
+            long wait = next - now;
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Phone from = callers[random.nextInt(callers.length)];
+            CallOutcome outcome;
+            if (node == null) {
+                Phone to = destination(model, random, groups, phones, from);
+                boolean accept = model.nextAccept(random);
+                attempts.increment();
+                outcome = from.tryCall(to, accept, accept ? model.nextHoldingTime(random) : Duration.ZERO);
+            } else {
+                PhoneNumber to = PhoneNumber.of(destination(model, random, numberGroups, numbers, from), numberLength);
+                boolean accept = model.nextAccept(random);
+                attempts.increment();
+                outcome = call(from, to, accept, accept ? model.nextHoldingTime(random) : Duration.ZERO);
+            }
+            switch (outcome) {
+                case ACCEPTED:
+                    accepted.increment();
+                    break;
+                case REJECTED:
+                    rejected.increment();
+                    break;
+                default:
+                    busy.increment();
+            }
+        }
+    }
+
+    /**
+     * Draws destination phone using calling-pattern matrix. Falls back to any phone if the drawn group is empty.
+     * @param model Traffic model.
+     * @param random Random number generator.
+     * @param groups Phones split into groups by {@code group}.
+     * @param phones All phones which can be called.
+     * @param from Calling phone.
+     * @return Destination phone.
+     */
+    static Phone destination(TrafficModel model, Random random, Phone[][] groups, Phone[] phones, Phone from) {
+        int fromGroup = TrafficModel.groupOf(from.getNumber());
+        if (fromGroup >= 0) {
+            Phone[] group = groups[model.nextDestinationGroup(random, fromGroup)];
+            if (group.length > 0) {
+                return group[random.nextInt(group.length)];
+            }
+        }
+        return phones[random.nextInt(phones.length)];
+    }
+
+    /**
+     * Calls phone of the cluster, locally if the local node owns it or through the node owning it otherwise.
+     * @param from Calling phone.
+     * @param to Number of destination phone.
+     * @param accept Flag indicating if destination phone should accept call.
+     * @param conversationTime Conversation duration used when {@code accept} flag is true.
+     * @return Outcome of the call.
+     */
+    private CallOutcome call(Phone from, PhoneNumber to, boolean accept, Duration conversationTime) {
+        if (!node.isLocal(to)) {
+            return from.callRemote(to, accept, conversationTime, node);
+        }
+        return from.tryCall(directory.find(to), accept, conversationTime);
+    }
+
+    /**
+     * Draws destination number using calling-pattern matrix. Falls back to any number if the drawn group is empty.
+     * @param model Traffic model.
+     * @param random Random number generator.
+     * @param groups Number values split into groups by {@code group}.
+     * @param numbers All number values which can be called.
+     * @param from Calling phone.
+     * @return Value of destination number.
+     */
+    static int destination(TrafficModel model, Random random, int[][] groups, int[] numbers, Phone from) {
+        int fromGroup = TrafficModel.groupOf(from.getNumber());
+        if (fromGroup >= 0) {
+            int[] group = groups[model.nextDestinationGroup(random, fromGroup)];
+            if (group.length > 0) {
+                return group[random.nextInt(group.length)];
+            }
+        }
+        return numbers[random.nextInt(numbers.length)];
+    }
+
+    /**
+     * Results of a load test.
+     */
+    public static class Report {
+
+        /**
+         * Test duration in nanoseconds.
+         */
+        private final long elapsedNanos;
+        /**
+         * Number of call attempts.
+         */
+        private final long attempts;
+        /**
+         * Number of accepted calls.
+         */
+        private final long accepted;
+        /**
+         * Number of rejected calls.
+         */
+        private final long rejected;
+        /**
+         * Number of calls to or from unavailable phones.
+         */
+        private final long busy;
+
+        /**
+         * Class {@code Report} constructor.
+         * @param elapsedNanos Test duration in nanoseconds.
+         * @param attempts Number of call attempts.
+         * @param accepted Number of accepted calls.
+         * @param rejected Number of rejected calls.
+         * @param busy Number of calls to or from unavailable phones.
+         */
+        Report(long elapsedNanos, long attempts, long accepted, long rejected, long busy) {
+            this.elapsedNanos = elapsedNanos;
+            this.attempts = attempts;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.busy = busy;
+        }
+
+        /**
+         * Call attempts per second getter.
+         * @return Call attempts per second.
+         */
+        public double getCallsPerSecond() {
+            return elapsedNanos == 0 ? 0 : attempts * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Busy rate getter.
+         * @return Fraction of attempts which failed because a phone was unavailable.
+         */
+        public double getBusyRate() {
+            return attempts == 0 ? 0 : (double) busy / attempts;
+        }
+
+        /**
+         * Reject rate getter.
+         * @return Fraction of attempts rejected by destination phone.
+         */
+        public double getRejectRate() {
+            return attempts == 0 ? 0 : (double) rejected / attempts;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Elapsed: %.3fs%n" +
+                            "Attempts: %d (accepted %d, rejected %d, busy %d)%n" +
+                            "Calls/sec: %.1f%n" +
+                            "Busy rate: %.2f%%%n" +
+                            "Reject rate: %.2f%%",
+                    elapsedNanos / 1e9, attempts, accepted, rejected, busy,
+                    getCallsPerSecond(), getBusyRate() * 100, getRejectRate() * 100);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.company;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unbounded lock-free multi-producer single-consumer queue, a linked list where producers swap the tail
+ * with a single atomic exchange and the only consumer moves the head without any atomic instructions.
+ * An element offered concurrently may become visible to {@code poll} a moment after {@code offer} returned
+ * its tail exchange, so consumers must not treat an empty poll as proof that nothing was sent.
+ * @param <E> Type of elements.
+ */
+class MpscQueue<E> {
+
+    /**
+     * Field {@code tail} holds the last node, exchanged by producers.
+     */
+    private final AtomicReference<Node<E>> tail;
+    /**
+     * Field {@code head} holds node before the first element, accessed only by the consumer.
+     */
+    private Node<E> head;
+
+    /**
+     * Class {@code MpscQueue} constructor.
+     */
+    MpscQueue() {
+        Node<E> stub = new Node<>(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * Adds element to the queue. May be called by any thread.
+     * @param element Element, not null.
+     */
+    void offer(E element) {
+        Node<E> node = new Node<>(element);
+        Node<E> previous = tail.getAndSet(node);
+        previous.next = node;
+    }
+
+    /**
+     * Removes the first element. May be called only by the consumer thread.
+     * @return The first element or null if there is no visible element.
+     */
+    E poll() {
+        Node<E> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        E element = next.value;
+        next.value = null;
+        head = next;
+        return element;
+    }
+
+    /**
+     * Checks if the queue has no elements, including ones being offered whose node isn't linked yet.
+     * May be called only by the consumer thread.
+     * @return True if no element was offered after the last polled one.
+     */
+    boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    /**
+     * Node of the linked list.
+     * @param <E> Type of elements.
+     */
+    private static class Node<E> {
+
+        /**
+         * Element of the node, cleared when node becomes the head.
+         */
+        E value;
+        /**
+         * Next node, published by producer after its tail exchange.
+         */
+        volatile Node<E> next;
+
+        /**
+         * Class {@code Node} constructor.
+         * @param value Element of the node.
+         */
+        Node(E value) {
+            this.value = value;
+        }
+    }
+}
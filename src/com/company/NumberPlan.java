@@ -0,0 +1,172 @@
+package com.company;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Numbering plan of generated phones: a set of prefixes of the same length followed by subscriber digits.
+ * Numbers of the plan are indexed from 0 to {@code size() - 1}, so a permutation of indexes gives
+ * unique numbers.
+ */
+public final class NumberPlan {
+
+    /**
+     * Plan used by {@code PhoneSimulator.generatePhones}: two groups of digits from 500 to 899
+     * followed by three subscriber digits.
+     */
+    public static final NumberPlan DEFAULT = createDefault();
+
+    /**
+     * Field {@code prefixes} holds prefix values, sorted and unique.
+     */
+    private final int[] prefixes;
+    /**
+     * Field {@code prefixLength} holds number of digits of every prefix.
+     */
+    private final int prefixLength;
+    /**
+     * Field {@code subscriberDigits} holds number of digits following the prefix.
+     */
+    private final int subscriberDigits;
+    /**
+     * Field {@code block} holds number of subscriber numbers of every prefix.
+     */
+    private final int block;
+
+    /**
+     * Class {@code NumberPlan} constructor.
+     * @param prefixes Prefix values.
+     * @param prefixLength Number of digits of every prefix.
+     * @param subscriberDigits Number of digits following the prefix.
+     * @throws IllegalArgumentException If prefixes are empty, repeated or don't fit their length,
+     *                                  or numbers would be longer than {@code PhoneNumber.MAX_DIGITS}.
+     */
+    NumberPlan(int[] prefixes, int prefixLength, int subscriberDigits) {
+        if (prefixLength < 0 || subscriberDigits < 0 || prefixLength + subscriberDigits == 0 ||
+                prefixLength + subscriberDigits > PhoneNumber.MAX_DIGITS) {
+            throw new IllegalArgumentException("invalid number length " + prefixLength + "+" + subscriberDigits);
+        }
+        if (prefixes.length == 0) {
+            throw new IllegalArgumentException("no prefixes");
+        }
+        int[] sorted = prefixes.clone();
+        Arrays.sort(sorted);
+        int limit = (int) Math.pow(10, prefixLength);
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] < 0 || sorted[i] >= limit) {
+                throw new IllegalArgumentException("prefix " + sorted[i] + " doesn't have " + prefixLength + " digits");
+            }
+            if (i > 0 && sorted[i] == sorted[i - 1]) {
+                throw new IllegalArgumentException("repeated prefix " + sorted[i]);
+            }
+        }
+        this.prefixes = sorted;
+        this.prefixLength = prefixLength;
+        this.subscriberDigits = subscriberDigits;
+        this.block = (int) Math.pow(10, subscriberDigits);
+    }
+
+    /**
+     * Creates plan with given prefixes.
+     * @param subscriberDigits Number of digits following the prefix.
+     * @param prefixes Prefixes of the same length.
+     * @return Numbering plan.
+     * @throws IllegalArgumentException If prefixes aren't digits of the same length.
+     */
+    public static NumberPlan of(int subscriberDigits, String... prefixes) {
+        int[] values = new int[prefixes.length];
+        int length = prefixes.length > 0 ? prefixes[0].length() : 0;
+        for (int i = 0; i < prefixes.length; i++) {
+            if (prefixes[i].length() != length) {
+                throw new IllegalArgumentException("prefix " + prefixes[i] + " doesn't have " + length + " digits");
+            }
+            values[i] = length == 0 ? 0 : PhoneNumber.parseValue(prefixes[i]);
+        }
+        return new NumberPlan(length == 0 ? new int[] {0} : values, length, subscriberDigits);
+    }
+
+    /**
+     * Parses plan written as comma separated prefixes or prefix ranges followed by number of subscriber digits,
+     * e.g. {@code 500-599,700/6}.
+     * @param plan Plan specification.
+     * @return Numbering plan.
+     * @throws IllegalArgumentException If specification is invalid.
+     */
+    public static NumberPlan parse(String plan) {
+        int separator = plan.lastIndexOf('/');
+        if (separator < 0) {
+            throw new IllegalArgumentException("invalid number plan " + plan + ", expected prefixes/digits");
+        }
+        int subscriberDigits = Integer.parseInt(plan.substring(separator + 1));
+        List<String> prefixes = new ArrayList<>();
+        for (String item : plan.substring(0, separator).split(",")) {
+            int dash = item.indexOf('-');
+            if (dash < 0) {
+                prefixes.add(item);
+                continue;
+            }
+            String first = item.substring(0, dash);
+            String last = item.substring(dash + 1);
+            if (first.length() != last.length()) {
+                throw new IllegalArgumentException("invalid prefix range " + item);
+            }
+            for (int prefix = PhoneNumber.parseValue(first); prefix <= PhoneNumber.parseValue(last); prefix++) {
+                prefixes.add(PhoneNumber.format(prefix, first.length()));
+            }
+        }
+        return of(subscriberDigits, prefixes.toArray(new String[0]));
+    }
+
+    /**
+     * Creates default plan.
+     * @return Plan of numbers from 500500000 to 899899999 with both leading groups from 500 to 899.
+     */
+    private static NumberPlan createDefault() {
+        int[] prefixes = new int[400 * 400];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = (500 + i / 400) * 1000 + 500 + i % 400;
+        }
+        return new NumberPlan(prefixes, 6, 3);
+    }
+
+    /**
+     * Size getter.
+     * @return Number of phone numbers in the plan.
+     */
+    public long size() {
+        return (long) prefixes.length * block;
+    }
+
+    /**
+     * Number length getter.
+     * @return Number of digits of every phone number.
+     */
+    public int getNumberLength() {
+        return prefixLength + subscriberDigits;
+    }
+
+    /**
+     * Finds number with given index.
+     * @param index Index from 0 to {@code size() - 1}.
+     * @return Number value, formatted to {@code getNumberLength()} digits.
+     */
+    public int number(long index) {
+        return prefixes[(int) (index / block)] * block + (int) (index % block);
+    }
+
+    /**
+     * Finds phone number with given index.
+     * @param index Index from 0 to {@code size() - 1}.
+     * @return Phone number.
+     */
+    public PhoneNumber phoneNumber(long index) {
+        return PhoneNumber.of(number(index), getNumberLength());
+    }
+
+    @Override
+    public String toString() {
+        return prefixes.length + " prefixes of " + prefixLength + " digits, " + subscriberDigits +
+                " subscriber digits";
+    }
+}
@@ -0,0 +1,117 @@
+package com.company;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Membership of a simulator cluster: addresses of all nodes indexed by node IDs and the assignment
+ * of phone numbers to nodes. Every node has to be started with the same map; nodes exchange its hash
+ * when they connect and refuse peers configured differently.
+ */
+public final class PartitionMap {
+
+    /**
+     * Field {@code nodes} holds addresses of nodes by their IDs.
+     */
+    private final InetSocketAddress[] nodes;
+    /**
+     * Field {@code text} holds the map written as {@code host:port,host:port,...}.
+     */
+    private final String text;
+
+    /**
+     * Class {@code PartitionMap} constructor.
+     * @param nodes Addresses of nodes; node ID is the index in the list.
+     * @throws IllegalArgumentException If list is empty or contains the same address twice.
+     */
+    public PartitionMap(List<InetSocketAddress> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("no cluster nodes");
+        }
+        this.nodes = nodes.toArray(new InetSocketAddress[0]);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < this.nodes.length; i++) {
+            for (int j = 0; j < i; j++) {
+                if (this.nodes[i].equals(this.nodes[j])) {
+                    throw new IllegalArgumentException("node " + this.nodes[i] + " is listed twice");
+                }
+            }
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(this.nodes[i].getHostString()).append(':').append(this.nodes[i].getPort());
+        }
+        this.text = builder.toString();
+    }
+
+    /**
+     * Parses map written as comma separated {@code host:port} addresses, e.g. {@code 127.0.0.1:7001,127.0.0.1:7002}.
+     * @param text Node addresses in order of node IDs.
+     * @return Partition map.
+     * @throws IllegalArgumentException If an address is invalid.
+     */
+    public static PartitionMap parse(String text) {
+        List<InetSocketAddress> nodes = new ArrayList<>();
+        for (String address : text.split(",")) {
+            int separator = address.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("invalid node address " + address + ", expected host:port");
+            }
+            int port;
+            try {
+                port = Integer.parseInt(address.substring(separator + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid port of node address " + address);
+            }
+            nodes.add(new InetSocketAddress(address.substring(0, separator).trim(), port));
+        }
+        return new PartitionMap(nodes);
+    }
+
+    /**
+     * Number of nodes getter.
+     * @return Number of nodes of the cluster.
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Node address getter.
+     * @param node Node ID.
+     * @return Address the node listens on.
+     * @throws IndexOutOfBoundsException If there's no node with given ID.
+     */
+    public InetSocketAddress getAddress(int node) {
+        if (node < 0 || node >= nodes.length) {
+            throw new IndexOutOfBoundsException("invalid node ID " + node);
+        }
+        return nodes[node];
+    }
+
+    /**
+     * Finds node owning phone with given number. Numbers are assigned by their hash, so nodes get
+     * even shares of any numbering plan.
+     * @param number Phone number.
+     * @return ID of the owning node.
+     */
+    public int nodeOf(PhoneNumber number) {
+        return Math.floorMod(number.hashCode(), nodes.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof PartitionMap && text.equals(((PartitionMap) o).text);
+    }
+
+    @Override
+    public int hashCode() {
+        return text.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
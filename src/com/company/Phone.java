@@ -1,127 +1,472 @@
 package com.company;
 
 import java.io.*;
+import java.time.Clock;
 import java.time.Duration;
-import java.time.LocalDateTime;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Class {@code Phone} stores data about phones and allows to simulate their behaviour.
  */
-public class Phone {
+public class Phone implements CallParty {
 
     /**
-     * Filed {@code phoneNumber} is used to identify phones.
+     * Scheduler shared by phones running in wall-clock time that ends conversations when their time elapses.
      */
-    private String phoneNumber;
+    static final ExpiryScheduler CONVERSATIONS = new TimerWheel(Duration.ofMillis(100), 512);
+
+    /**
+     * Filed {@code number} is used to identify phones.
+     */
+    private PhoneNumber number;
     /**
-     * Field {@code available} determines if phone is during conversation.
+     * Field {@code state} holds current state of the call setup state machine.
+     * All transitions are done with compare-and-set, so phones can be called from many threads at once.
      */
-    private boolean available;
+    private final AtomicReference<PhoneState> state;
     /**
      * Field {@code inboundRegister} stores information about incoming calls.
      */
-    private final LinkedList<PhoneRegisterEntry> inboundRegister;
+    private final CallRegister inboundRegister;
     /**
      * Field {@code outboundRegister} stores information about outgoing calls.
      */
-    private final LinkedList<PhoneRegisterEntry> outboundRegister;
+    private final CallRegister outboundRegister;
+    /**
+     * Field {@code clock} is used to timestamp register entries.
+     */
+    private final Clock clock;
+    /**
+     * Field {@code scheduler} ends conversations when their time elapses.
+     */
+    private final ExpiryScheduler scheduler;
+    /**
+     * Field {@code listener} is notified about calls made by this phone.
+     */
+    private volatile CallListener listener;
+    /**
+     * Field {@code statistics} counts calls made and received by this phone.
+     */
+    private final CallStatistics statistics;
+    /**
+     * Field {@code metrics} instruments calls made by this phone, null if instrumentation is disabled.
+     */
+    private volatile CallMetrics metrics;
 
     /**
-     * Class {@code Phone} constructor.
+     * Class {@code Phone} constructor. Phone runs in wall-clock time.
      * @param phoneNumber Gets phone number.
      */
     public Phone(String phoneNumber) {
-        this.phoneNumber = phoneNumber;
-        this.available = true;
-        this.inboundRegister = new LinkedList<>();
-        this.outboundRegister = new LinkedList<>();
+        this(phoneNumber, Clock.systemDefaultZone(), CONVERSATIONS);
+    }
+
+    /**
+     * Class {@code Phone} constructor.
+     * @param phoneNumber Gets phone number.
+     * @param clock Clock used to timestamp register entries, e.g. {@code SimulationEngine} clock.
+     * @param scheduler Scheduler that ends conversations, e.g. {@code SimulationEngine} itself.
+     */
+    public Phone(String phoneNumber, Clock clock, ExpiryScheduler scheduler) {
+        this(PhoneNumber.parse(phoneNumber), clock, scheduler);
+    }
+
+    /**
+     * Class {@code Phone} constructor.
+     * @param number Phone number.
+     * @param clock Clock used to timestamp register entries, e.g. {@code SimulationEngine} clock.
+     * @param scheduler Scheduler that ends conversations, e.g. {@code SimulationEngine} itself.
+     */
+    public Phone(PhoneNumber number, Clock clock, ExpiryScheduler scheduler) {
+        this.number = number;
+        this.clock = clock;
+        this.scheduler = scheduler;
+        this.listener = CallListener.NONE;
+        this.statistics = new CallStatistics();
+        this.state = new AtomicReference<>(PhoneState.IDLE);
+        this.inboundRegister = new CallRegister(clock.getZone());
+        this.outboundRegister = new CallRegister(clock.getZone());
     }
 
     /**
      * Method that simulates phone calls and stores information about them in phone register.
-     * Depending on phone state it behaves differently.
+     * Depending on phone state it behaves differently. Outcome of the call is printed to the console.
      * @param phone Destination phone object to be called.
      * @param accept Flag indicating if destination phone should accept call.
      * @param conversationTime Value of this parameter is used when {@code accept} flag is true.
      *                         It tells how long the conversation will be.
      */
     public void call(Phone phone, boolean accept, Duration conversationTime) {
-        try {
-            if (this.available) {
-                if (phone.isAvailable()) {
-                    outboundRegister.addFirst(new PhoneRegisterEntry(
-                            phone.getPhoneNumber(),
-                            accept,
-                            true,
-                            LocalDateTime.now(),
-                            conversationTime
-                    ));
-                    this.available = false;
-                    phone.receiveCall(this, accept, conversationTime);
-                } else {
-                    outboundRegister.addFirst(new PhoneRegisterEntry(
-                            phone.getPhoneNumber(),
-                            false,
-                            false,
-                            LocalDateTime.now(),
-                            Duration.ofSeconds(0)
-                    ));
-                    phone.inboundRegister.addFirst(new PhoneRegisterEntry(
-                            this.phoneNumber,
-                            false,
-                            false,
-                            LocalDateTime.now(),
-                            Duration.ofSeconds(0)
-                    ));
-                    throw new PhoneUnavailableException(this + " phone number " +
-                            phoneNumber + " is currently unavailable");
+        System.out.println(tryCall(phone, accept, conversationTime).describe(this, phone, conversationTime));
+    }
+
+    /**
+     * Sets up the call like {@code call} does, but reports its outcome with exceptions instead of printing it.
+     * Kept for callers written against the exception based API, new code should use {@code tryCall}.
+     * @param phone Destination phone object to be called.
+     * @param accept Flag indicating if destination phone should accept call.
+     * @param conversationTime Conversation duration used when {@code accept} flag is true.
+     * @throws PhoneUnavailableException If this phone or destination phone is unavailable.
+     * @throws CallRejectedException If flag {@code accept} is false.
+     */
+    void dial(Phone phone, boolean accept, Duration conversationTime)
+            throws PhoneUnavailableException, CallRejectedException {
+        CallOutcome outcome = tryCall(phone, accept, conversationTime);
+        switch (outcome) {
+            case REJECTED:
+                throw new CallRejectedException(outcome.describe(this, phone, conversationTime));
+            case CALLER_BUSY:
+            case DESTINATION_BUSY:
+                throw new PhoneUnavailableException(outcome.describe(this, phone, conversationTime));
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Sets up the call and returns its outcome. Busy and rejected calls neither throw nor allocate,
+     * so this is the method to use under load; diagnostic output can be produced by an {@code EventLogger}.
+     * Both phones are reserved with compare-and-set transitions, caller first. If destination phone
+     * can't be reserved, caller is rolled back to {@code IDLE}, so setup never blocks and never deadlocks.
+     * @param phone Destination phone object to be called.
+     * @param accept Flag indicating if destination phone should accept call.
+     * @param conversationTime Conversation duration used when {@code accept} flag is true.
+     * @return Outcome of the call.
+     */
+    public CallOutcome tryCall(Phone phone, boolean accept, Duration conversationTime) {
+        long start = setupStart();
+        if (!beginCall(phone, accept, conversationTime, start)) {
+            return CallOutcome.CALLER_BUSY;
+        }
+        return phone.answer(this, accept, conversationTime, start);
+    }
+
+    /**
+     * Calls phone owned by another cluster node. The owning node reserves the phone and records the inbound call,
+     * this phone records its side when the outcome comes back, so remote phones are known only by their numbers.
+     * @param to Number of destination phone, owned by another node of the cluster.
+     * @param accept Flag indicating if destination phone should accept call.
+     * @param conversationTime Conversation duration used when {@code accept} flag is true.
+     * @param node Local cluster node which sends the call to the owning node.
+     * @return Outcome of the call, {@code DESTINATION_BUSY} also if the owning node didn't answer in time.
+     * @throws IllegalArgumentException If destination phone is owned by the local node.
+     */
+    public CallOutcome callRemote(PhoneNumber to, boolean accept, Duration conversationTime, ClusterNode node) {
+        if (node.isLocal(to)) {
+            throw new IllegalArgumentException("phone " + to + " is owned by the local node");
+        }
+        long start = setupStart();
+        if (!beginCall(to, accept, conversationTime, start)) {
+            return CallOutcome.CALLER_BUSY;
+        }
+        long time = clock.millis();
+        CallOutcome outcome = node.callAndWait(number, to, accept, time, conversationTime);
+        return completeCall(to, outcome, accept, conversationTime, time, start, scheduler);
+    }
+
+    /**
+     * First step of every call made by this phone, whichever engine sets it up: notifies listener about
+     * the attempt and reserves this phone. If this phone is unavailable, the call is counted as failed.
+     * @param to Destination phone.
+     * @param accept Flag indicating if destination phone should accept call.
+     * @param conversationTime Conversation duration used when {@code accept} flag is true.
+     * @param start Setup start time from {@code System.nanoTime}, used when this phone has metrics or events need it.
+     * @return True if this phone was reserved and is {@code RINGING}, false if the caller is busy.
+     */
+    boolean beginCall(CallParty to, boolean accept, Duration conversationTime, long start) {
+        CallListener listener = this.listener;
+        if (listener != CallListener.NONE) {
+            listener.onCallEvent(CallEventType.ATTEMPT, this, to, accept, clock.millis(), conversationTime);
+        }
+        if (transition(PhoneState.IDLE, PhoneState.RINGING)) {
+            return true;
+        }
+        CallMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.failed(this, to, start, CallEventType.BUSY);
+        }
+        CallEvents.failed(this, to, start, CallEventType.BUSY);
+        return false;
+    }
+
+    /**
+     * Method invoked by {@code tryCall} on destination phone when caller is already reserved.
+     * Reserves this phone and connects the call or records it as unavailable.
+     * @param from Source phone object that is calling, already {@code RINGING}.
+     * @param accept Flag indicating if this phone should accept call.
+     * @param conversationTime Conversation duration used when {@code accept} flag is true.
+     * @param start Setup start time from {@code System.nanoTime}, used when caller has metrics or events need it.
+     * @return Outcome of the call.
+     */
+    private CallOutcome answer(Phone from, boolean accept, Duration conversationTime, long start) {
+        if (transition(PhoneState.IDLE, PhoneState.RINGING)) {
+            from.outboundRegister.add(
+                    number,
+                    accept,
+                    true,
+                    from.clock.millis(),
+                    conversationTime
+            );
+            return receiveCall(from, accept, conversationTime, start);
+        }
+        CallMetrics metrics = from.metrics;
+        from.transition(PhoneState.RINGING, PhoneState.IDLE);
+        from.outboundRegister.add(
+                number,
+                false,
+                false,
+                from.clock.millis(),
+                Duration.ZERO
+        );
+        inboundRegister.add(
+                from.number,
+                false,
+                false,
+                from.clock.millis(),
+                Duration.ZERO
+        );
+        from.statistics.record(true, CallEventType.BUSY, 0);
+        statistics.record(false, CallEventType.BUSY, 0);
+        from.listener.onCallEvent(CallEventType.BUSY, from, this, accept, from.clock.millis(), Duration.ZERO);
+        if (metrics != null) {
+            metrics.failed(from, this, start, CallEventType.BUSY);
+        }
+        CallEvents.failed(from, this, start, CallEventType.BUSY);
+        return CallOutcome.DESTINATION_BUSY;
+    }
+
+    /**
+     * Destination side of a call whose two phones are handled by different threads or cluster nodes, used by
+     * {@code ShardedSimulator} and {@code ClusterNode}. Reserves this phone, records inbound call and, if accepted,
+     * keeps the phone in conversation for given time. Caller's side is completed by {@code completeCall}.
+     * @param from Number of the calling phone.
+     * @param accept Flag indicating if this phone should accept call.
+     * @param conversationTime Conversation duration used when {@code accept} flag is true.
+     * @param time Call time in epoch milliseconds given by caller's side.
+     * @param conversations Scheduler which ends this phone's side of the conversation.
+     * @return {@code ACCEPTED}, {@code REJECTED} or {@code DESTINATION_BUSY} if this phone is unavailable.
+     */
+    CallOutcome answerCall(PhoneNumber from, boolean accept, Duration conversationTime, long time,
+                           ExpiryScheduler conversations) {
+        if (!transition(PhoneState.IDLE, PhoneState.RINGING)) {
+            inboundRegister.add(from, false, false, time, Duration.ZERO);
+            statistics.record(false, CallEventType.BUSY, 0);
+            return CallOutcome.DESTINATION_BUSY;
+        }
+        inboundRegister.add(from, accept, true, time, conversationTime);
+        if (accept) {
+            statistics.record(false, CallEventType.ACCEPTED, conversationTime.toMillis());
+            transition(PhoneState.RINGING, PhoneState.IN_CALL);
+            conversations.schedule(() -> transition(PhoneState.IN_CALL, PhoneState.IDLE), conversationTime);
+            return CallOutcome.ACCEPTED;
+        }
+        statistics.record(false, CallEventType.REJECTED, 0);
+        transition(PhoneState.RINGING, PhoneState.IDLE);
+        return CallOutcome.REJECTED;
+    }
+
+    /**
+     * Caller side of a call whose outcome was decided by {@code answerCall} of the destination phone.
+     * Records outbound call, moves this phone from {@code RINGING} to its final state and notifies listener.
+     * @param to Destination phone.
+     * @param outcome Outcome decided by destination's side, {@code DESTINATION_BUSY} if it didn't answer.
+     * @param accept Flag passed to {@code beginCall}.
+     * @param conversationTime Conversation duration passed to {@code beginCall}.
+     * @param time Call time in epoch milliseconds.
+     * @param start Setup start time from {@code System.nanoTime}, used when this phone has metrics or events need it.
+     * @param conversations Scheduler which ends this phone's side of the conversation.
+     * @return Given outcome.
+     */
+    CallOutcome completeCall(CallParty to, CallOutcome outcome, boolean accept, Duration conversationTime,
+                             long time, long start, ExpiryScheduler conversations) {
+        CallMetrics metrics = this.metrics;
+        switch (outcome) {
+            case ACCEPTED:
+                outboundRegister.add(to.getNumber(), true, true, time, conversationTime);
+                statistics.record(true, CallEventType.ACCEPTED, conversationTime.toMillis());
+                transition(PhoneState.RINGING, PhoneState.IN_CALL);
+                listener.onCallEvent(CallEventType.ACCEPTED, this, to, true, clock.millis(), conversationTime);
+                if (metrics != null) {
+                    metrics.accepted(this, to, start, conversationTime);
                 }
-            } else {
-                throw new PhoneUnavailableException(this + " is already during the conversation");
-            }
-        } catch (PhoneUnavailableException | CallRejectedException e) {
-            System.out.println(e.getMessage());
+                CallEvents.started(this, to, start, conversationTime);
+                conversations.schedule(() -> {
+                    transition(PhoneState.IN_CALL, PhoneState.IDLE);
+                    listener.onCallEvent(CallEventType.ENDED, this, to, true, clock.millis(), conversationTime);
+                    if (metrics != null) {
+                        metrics.ended(this, to, conversationTime);
+                    }
+                    CallEvents.ended(this, to, conversationTime);
+                }, conversationTime);
+                break;
+            case REJECTED:
+                outboundRegister.add(to.getNumber(), false, true, time, conversationTime);
+                statistics.record(true, CallEventType.REJECTED, 0);
+                transition(PhoneState.RINGING, PhoneState.IDLE);
+                listener.onCallEvent(CallEventType.REJECTED, this, to, false, clock.millis(), Duration.ZERO);
+                if (metrics != null) {
+                    metrics.failed(this, to, start, CallEventType.REJECTED);
+                }
+                CallEvents.failed(this, to, start, CallEventType.REJECTED);
+                break;
+            default:
+                outboundRegister.add(to.getNumber(), false, false, time, Duration.ZERO);
+                statistics.record(true, CallEventType.BUSY, 0);
+                transition(PhoneState.RINGING, PhoneState.IDLE);
+                listener.onCallEvent(CallEventType.BUSY, this, to, accept, clock.millis(), Duration.ZERO);
+                if (metrics != null) {
+                    metrics.failed(this, to, start, CallEventType.BUSY);
+                }
+                CallEvents.failed(this, to, start, CallEventType.BUSY);
         }
+        return outcome;
     }
 
     /**
-     * Method invoked by {@code call} when both phones are available and are ready to connect.
+     * Method invoked by {@code answer} when both phones are reserved and are ready to connect.
      * It simulates conversations between phones which will be unavailable during connection for other phones.
      * @param from Source phone object that is calling.
      * @param accept Flag indicates if destination phone should accept call.
-     * @param conversationTime Passed through {@code call} method. Tells how long both phones will be unavailable.
-     * @throws CallRejectedException If flag {@code accept} is false.
+     * @param conversationTime Passed through {@code tryCall} method. Tells how long both phones will be unavailable.
+     * @param start Setup start time from {@code System.nanoTime}, used when caller has metrics or events need it.
+     * @return {@code ACCEPTED} or {@code REJECTED} if flag {@code accept} is false.
      */
-    private void receiveCall(Phone from, boolean accept, Duration conversationTime) throws CallRejectedException {
-        inboundRegister.addFirst(new PhoneRegisterEntry(
-                from.getPhoneNumber(),
+    private CallOutcome receiveCall(Phone from, boolean accept, Duration conversationTime, long start) {
+        CallMetrics metrics = from.metrics;
+        inboundRegister.add(
+                from.number,
                 accept,
                 true,
-                LocalDateTime.now(),
+                clock.millis(),
                 conversationTime
-        ));
+        );
         if (accept) {
-            this.available = false;
-            System.out.println(this + " accepted call from " + from.phoneNumber +
-                    ". Conversation will last for " + conversationTime.getSeconds() + "s ...");
-            Thread conversationThread = new Thread(() -> {
-                try {
-                    Thread.sleep(conversationTime.getSeconds() * 1000);
-                    this.available = true;
-                    from.available = true;
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+            long conversationMillis = conversationTime.toMillis();
+            from.statistics.record(true, CallEventType.ACCEPTED, conversationMillis);
+            statistics.record(false, CallEventType.ACCEPTED, conversationMillis);
+            this.transition(PhoneState.RINGING, PhoneState.IN_CALL);
+            from.transition(PhoneState.RINGING, PhoneState.IN_CALL);
+            from.listener.onCallEvent(CallEventType.ACCEPTED, from, this, true, clock.millis(), conversationTime);
+            if (metrics != null) {
+                metrics.accepted(from, this, start, conversationTime);
+            }
+            CallEvents.started(from, this, start, conversationTime);
+            scheduler.schedule(() -> {
+                this.transition(PhoneState.IN_CALL, PhoneState.IDLE);
+                from.transition(PhoneState.IN_CALL, PhoneState.IDLE);
+                from.listener.onCallEvent(CallEventType.ENDED, from, this, true, clock.millis(), conversationTime);
+                if (metrics != null) {
+                    metrics.ended(from, this, conversationTime);
                 }
-            });
-            conversationThread.setDaemon(true);
-            conversationThread.start();
+                CallEvents.ended(from, this, conversationTime);
+            }, conversationTime);
+            return CallOutcome.ACCEPTED;
+        }
+        from.statistics.record(true, CallEventType.REJECTED, 0);
+        statistics.record(false, CallEventType.REJECTED, 0);
+        this.transition(PhoneState.RINGING, PhoneState.IDLE);
+        from.transition(PhoneState.RINGING, PhoneState.IDLE);
+        from.listener.onCallEvent(CallEventType.REJECTED, from, this, false, clock.millis(), Duration.ZERO);
+        if (metrics != null) {
+            metrics.failed(from, this, start, CallEventType.REJECTED);
+        }
+        CallEvents.failed(from, this, start, CallEventType.REJECTED);
+        return CallOutcome.REJECTED;
+    }
+
+    /**
+     * Atomically moves phone from {@code expected} state to {@code next} state.
+     * @param expected State the phone has to be in.
+     * @param next New phone state.
+     * @return True if transition succeeded or false if phone wasn't in {@code expected} state.
+     */
+    boolean transition(PhoneState expected, PhoneState next) {
+        return state.compareAndSet(expected, next);
+    }
+
+    /**
+     * Finds when conversation in progress ends.
+     * @return End time of the current conversation in epoch milliseconds or 0 if phone isn't {@code IN_CALL}.
+     */
+    long conversationEnd() {
+        if (state.get() != PhoneState.IN_CALL) {
+            return 0;
+        }
+        return Math.max(outboundRegister.lastConversationEnd(), inboundRegister.lastConversationEnd());
+    }
+
+    /**
+     * Restores state of a phone read from a snapshot. Conversation which hasn't ended yet keeps the phone
+     * {@code IN_CALL} for its remaining time, without {@code ENDED} event; a call being set up is dropped.
+     * @param state State saved in the snapshot.
+     * @param conversationEnd End time of the saved conversation in epoch milliseconds, 0 if there was none.
+     */
+    void restore(PhoneState state, long conversationEnd) {
+        long remaining = conversationEnd - clock.millis();
+        if (state == PhoneState.RELEASED) {
+            this.state.set(PhoneState.RELEASED);
+        } else if (state == PhoneState.IN_CALL && remaining > 0) {
+            this.state.set(PhoneState.IN_CALL);
+            scheduler.schedule(() -> transition(PhoneState.IN_CALL, PhoneState.IDLE), Duration.ofMillis(remaining));
         } else {
-            this.available = true;
-            from.available = true;
-            throw new CallRejectedException(this + " rejected call from " + from.phoneNumber);
+            this.state.set(PhoneState.IDLE);
+        }
+    }
+
+    /**
+     * Sets listener notified about calls made by this phone.
+     * @param listener Call listener, {@code CallListener.NONE} to disable notifications.
+     */
+    public void setCallListener(CallListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Scheduler getter.
+     * @return Scheduler which ends conversations of this phone.
+     */
+    ExpiryScheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Starts measuring setup time of a call made by this phone.
+     * @return Current {@code System.nanoTime}, or 0 if neither metrics nor Flight Recorder events need setup time.
+     */
+    long setupStart() {
+        return metrics != null || CallEvents.isTimed() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Sets metrics instrumenting calls made by this phone.
+     * @param metrics Call metrics, null to disable instrumentation.
+     */
+    void setMetrics(CallMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Limits number of records kept in inbound and outbound registers.
+     * @param retention Policy which limits number of records in every register.
+     * @param sink Destination of records evicted from registers.
+     */
+    public void setRetention(RetentionPolicy retention, SpillSink sink) {
+        if (sink == SpillSink.DISCARD) {
+            inboundRegister.setRetention(retention, null);
+            outboundRegister.setRetention(retention, null);
+            return;
         }
+        inboundRegister.setRetention(retention, entry -> sink.spill(this, true, entry));
+        outboundRegister.setRetention(retention, entry -> sink.spill(this, false, entry));
+    }
+
+    /**
+     * Releases phone, so it can't be reserved for any call anymore.
+     * Conversation that is already in progress ends without freeing this phone.
+     */
+    public void release() {
+        state.set(PhoneState.RELEASED);
     }
 
     /**
@@ -136,7 +481,7 @@ public class Phone {
             bw.newLine();
             bw.write("[Outbound calls]");
             bw.newLine();
-            outboundRegister.forEach(entry -> {
+            outboundRegister.entries().forEach(entry -> {
                 try {
                     bw.write(entry.toString());
                     bw.newLine();
@@ -147,7 +492,7 @@ public class Phone {
             bw.newLine();
             bw.write("[Inbound calls]");
             bw.newLine();
-            inboundRegister.forEach(entry -> {
+            inboundRegister.entries().forEach(entry -> {
                 try {
                     bw.write(entry.toString());
                     bw.newLine();
@@ -169,38 +514,79 @@ public class Phone {
      * @return Phone number.
      */
     public String getPhoneNumber() {
-        return phoneNumber;
+        return number.toString();
+    }
+
+    /**
+     * Phone number getter.
+     * @return Phone number in its compact form.
+     */
+    public PhoneNumber getNumber() {
+        return number;
     }
 
     /**
      * Phone number setter.
      * @param phoneNumber Phone number.
+     * @throws IllegalArgumentException If phone number isn't made of up to {@code PhoneNumber.MAX_DIGITS} digits.
      */
     public void setPhoneNumber(String phoneNumber) {
-        this.phoneNumber = phoneNumber;
+        this.number = PhoneNumber.parse(phoneNumber);
     }
 
     /**
-     * Checks {@code available} flag.
-     * @return {@code available} flag.
+     * Checks if phone is {@code IDLE} and can be called.
+     * @return True if phone is available.
      */
     public boolean isAvailable() {
-        return available;
+        return state.get() == PhoneState.IDLE;
+    }
+
+    /**
+     * Phone state getter.
+     * @return Current state of the call setup state machine.
+     */
+    public PhoneState getState() {
+        return state.get();
     }
 
     /**
      * Inbound phone register getter.
-     * @return Inbound phone register.
+     * @return Read-only view of inbound phone register, newest entries first.
      */
     public List<PhoneRegisterEntry> getInboundRegister() {
-        return inboundRegister;
+        return inboundRegister.entries();
     }
 
     /**
      * Outbound phone register getter.
-     * @return Outbound phone register.
+     * @return Read-only view of outbound phone register, newest entries first.
      */
     public List<PhoneRegisterEntry> getOutboundRegister() {
+        return outboundRegister.entries();
+    }
+
+    /**
+     * Call statistics getter.
+     * @return Counters of calls made and received by this phone, updated as calls are made.
+     */
+    public CallStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Inbound call register getter.
+     * @return Register of incoming calls.
+     */
+    CallRegister inboundRegister() {
+        return inboundRegister;
+    }
+
+    /**
+     * Outbound call register getter.
+     * @return Register of outgoing calls.
+     */
+    CallRegister outboundRegister() {
         return outboundRegister;
     }
 
@@ -213,7 +599,7 @@ public class Phone {
             System.out.println("(Empty)");
             return;
         }
-        outboundRegister.forEach(System.out::println);
+        outboundRegister.entries().forEach(System.out::println);
     }
 
     /**
@@ -225,11 +611,11 @@ public class Phone {
             System.out.println("(Empty)");
             return;
         }
-        inboundRegister.forEach(System.out::println);
+        inboundRegister.entries().forEach(System.out::println);
     }
 
     @Override
     public String toString() {
-        return "Phone{" + phoneNumber + '}';
+        return "Phone{" + number + '}';
     }
 }
@@ -0,0 +1,541 @@
+package com.company;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Directory of phones indexed by dense ID and by phone number.
+ * IDs are positions in a compact array, numbers are kept in a primitive open-addressing hash table
+ * mapping numbers to IDs, so lookups, insertions and removals are O(1) and phone numbers are unique.
+ * Keys tell numbers apart by both value and length, so numbers differing only in leading zeros are distinct.
+ * Removal moves the phone with the highest ID into the freed slot, so IDs stay dense.
+ * Lookups use optimistic reads and can be done concurrently with calls; modifications are exclusive.
+ */
+public class PhoneDirectory implements Iterable<Phone> {
+
+    /**
+     * Maximum number of digits of a phone number kept in the directory, so that it fits in {@code int}.
+     */
+    public static final int MAX_DIGITS = PhoneNumber.MAX_DIGITS;
+    /**
+     * Marker of an empty slot in {@code keys} table.
+     */
+    private static final int FREE = -1;
+    /**
+     * Key offsets by number length: number of all shorter numbers of at least one digit,
+     * so keys of numbers with different lengths never overlap and the largest key fits in {@code int}.
+     */
+    private static final int[] OFFSETS = {0, 0, 10, 110, 1_110, 11_110, 111_110, 1_111_110, 11_111_110,
+            111_111_110};
+    /**
+     * Initial capacity of the directory.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Lock which guards all fields. Readers validate optimistic stamps instead of locking.
+     */
+    private final StampedLock lock;
+    /**
+     * Phones by their IDs.
+     */
+    private Phone[] phones;
+    /**
+     * Number of phones in the directory.
+     */
+    private int size;
+    /**
+     * Hash table of phone numbers, linear probing. Length is a power of two.
+     */
+    private int[] keys;
+    /**
+     * IDs of phones whose numbers are stored in the same slots of {@code keys}.
+     */
+    private int[] ids;
+
+    /**
+     * Class {@code PhoneDirectory} constructor.
+     */
+    public PhoneDirectory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Class {@code PhoneDirectory} constructor.
+     * @param capacity Number of phones the directory can hold without resizing.
+     */
+    public PhoneDirectory(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("invalid capacity " + capacity);
+        }
+        this.lock = new StampedLock();
+        this.phones = new Phone[Math.max(capacity, 1)];
+        this.keys = newTable(tableLength(capacity));
+        this.ids = new int[keys.length];
+    }
+
+    /**
+     * Converts phone number to its directory key.
+     * @param phoneNumber Phone number made of up to {@code MAX_DIGITS} digits.
+     * @return Non-negative key unique for value and length of the number.
+     */
+    public static int key(String phoneNumber) {
+        return key(PhoneNumber.parseValue(phoneNumber), phoneNumber.length());
+    }
+
+    /**
+     * Converts phone number to its directory key.
+     * @param number Phone number.
+     * @return Non-negative key unique for value and length of the number.
+     */
+    public static int key(PhoneNumber number) {
+        return key(number.getValue(), number.getLength());
+    }
+
+    /**
+     * Converts numeric form of phone number to its directory key.
+     * @param value Numeric value of phone number.
+     * @param length Number of digits of phone number.
+     * @return Non-negative key unique for value and length of the number.
+     */
+    private static int key(int value, int length) {
+        return OFFSETS[length] + value;
+    }
+
+    /**
+     * Adds phone to the directory.
+     * @param phone Phone to be added.
+     * @return ID of added phone.
+     * @throws IllegalArgumentException If phone with the same number is already in the directory.
+     */
+    public int add(Phone phone) {
+        int key = key(phone.getNumber());
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(keys, key);
+            if (keys[slot] == key) {
+                throw new IllegalArgumentException("phone number " + phone.getPhoneNumber() + " already exists");
+            }
+            if (size == phones.length) {
+                phones = Arrays.copyOf(phones, phones.length + (phones.length >> 1) + 1);
+            }
+            if (tableLength(size + 1) > keys.length) {
+                rehash(tableLength(size + 1));
+                slot = slot(keys, key);
+            }
+            int id = size++;
+            phones[id] = phone;
+            keys[slot] = key;
+            ids[slot] = id;
+            return id;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds phones to the directory at once, taking the lock only once.
+     * @param batch Phones to be added, in order of their new IDs.
+     * @throws IllegalArgumentException If a phone number is already in the directory or is repeated in the batch;
+     *                                  no phones are added then.
+     */
+    public void addAll(Phone[] batch) {
+        int[] batchKeys = new int[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            batchKeys[i] = key(batch[i].getNumber());
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (size + batch.length > phones.length) {
+                phones = Arrays.copyOf(phones, size + batch.length);
+            }
+            if (tableLength(size + batch.length) > keys.length) {
+                rehash(tableLength(size + batch.length));
+            }
+            int first = size;
+            for (int i = 0; i < batch.length; i++) {
+                int slot = slot(keys, batchKeys[i]);
+                if (keys[slot] == batchKeys[i]) {
+                    for (int j = 0; j < i; j++) {
+                        delete(slot(keys, batchKeys[j]));
+                    }
+                    Arrays.fill(phones, first, size, null);
+                    size = first;
+                    throw new IllegalArgumentException("phone number " + batch[i].getPhoneNumber() +
+                            " already exists");
+                }
+                int id = size++;
+                phones[id] = batch[i];
+                keys[slot] = batchKeys[i];
+                ids[slot] = id;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns phone with given ID.
+     * @param id Phone ID.
+     * @return Phone object.
+     * @throws IndexOutOfBoundsException If there is no phone with given ID.
+     */
+    public Phone get(int id) {
+        long stamp = lock.tryOptimisticRead();
+        Phone[] phones = this.phones;
+        int size = this.size;
+        Phone phone = id >= 0 && id < size && id < phones.length ? phones[id] : null;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                size = this.size;
+                phone = id >= 0 && id < size ? this.phones[id] : null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (phone == null) {
+            throw new IndexOutOfBoundsException("invalid phone ID " + id);
+        }
+        return phone;
+    }
+
+    /**
+     * Finds phone with given number.
+     * @param phoneNumber Phone number.
+     * @return Phone object or null if there is no phone with given number.
+     */
+    public Phone find(String phoneNumber) {
+        return find(key(phoneNumber));
+    }
+
+    /**
+     * Finds phone with given number.
+     * @param number Phone number.
+     * @return Phone object or null if there is no phone with given number.
+     */
+    public Phone find(PhoneNumber number) {
+        return find(key(number));
+    }
+
+    /**
+     * Finds phone with given number without creating a {@code PhoneNumber}.
+     * @param value Numeric value of phone number.
+     * @param length Number of digits of phone number.
+     * @return Phone object or null if there is no phone with given number.
+     */
+    Phone find(int value, int length) {
+        return length > 0 && length <= MAX_DIGITS ? find(key(value, length)) : null;
+    }
+
+    /**
+     * Finds phone with given key. The slot and the phone at its ID are read under one stamp,
+     * so a concurrent removal moving another phone into that ID can't return the wrong phone.
+     * @param key Directory key of phone number.
+     * @return Phone object or null if there is no phone with given number.
+     */
+    private Phone find(int key) {
+        long stamp = lock.tryOptimisticRead();
+        Phone phone = lookupPhone(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                phone = lookupPhone(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return phone != null && key(phone.getNumber()) == key ? phone : null;
+    }
+
+    /**
+     * Reads phone with given key from current tables without locking; result has to be validated.
+     * @param key Directory key of phone number.
+     * @return Phone object or null if key wasn't found.
+     */
+    private Phone lookupPhone(int key) {
+        Phone[] phones = this.phones;
+        int id = lookup(keys, ids, key);
+        return id >= 0 && id < phones.length ? phones[id] : null;
+    }
+
+    /**
+     * Finds ID of the phone with given number.
+     * @param phoneNumber Phone number.
+     * @return Phone ID or -1 if there is no phone with given number.
+     */
+    public int indexOf(String phoneNumber) {
+        return indexOf(key(phoneNumber));
+    }
+
+    /**
+     * Finds ID of the phone with given number.
+     * @param number Phone number.
+     * @return Phone ID or -1 if there is no phone with given number.
+     */
+    public int indexOf(PhoneNumber number) {
+        return indexOf(key(number));
+    }
+
+    /**
+     * Finds ID of the phone with given number without creating a {@code PhoneNumber}.
+     * @param value Numeric value of phone number.
+     * @param length Number of digits of phone number.
+     * @return Phone ID or -1 if there is no phone with given number.
+     */
+    int indexOf(int value, int length) {
+        return length > 0 && length <= MAX_DIGITS ? indexOf(key(value, length)) : -1;
+    }
+
+    /**
+     * Finds ID of the phone with given key.
+     * @param key Directory key of phone number.
+     * @return Phone ID or -1 if there is no phone with given number.
+     */
+    private int indexOf(int key) {
+        long stamp = lock.tryOptimisticRead();
+        int id = lookup(keys, ids, key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                id = lookup(keys, ids, key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Checks if phone with given number is in the directory.
+     * @param phoneNumber Phone number.
+     * @return True if number is taken.
+     */
+    public boolean contains(String phoneNumber) {
+        return indexOf(phoneNumber) >= 0;
+    }
+
+    /**
+     * Checks if phone with given number is in the directory.
+     * @param number Phone number.
+     * @return True if number is taken.
+     */
+    public boolean contains(PhoneNumber number) {
+        return indexOf(number) >= 0;
+    }
+
+    /**
+     * Removes phone with given ID. Phone with the highest ID takes removed phone's ID.
+     * @param id Phone ID.
+     * @return Removed phone.
+     * @throws IndexOutOfBoundsException If there is no phone with given ID.
+     */
+    public Phone remove(int id) {
+        long stamp = lock.writeLock();
+        try {
+            if (id < 0 || id >= size) {
+                throw new IndexOutOfBoundsException("invalid phone ID " + id);
+            }
+            Phone removed = phones[id];
+            delete(slot(keys, key(removed.getNumber())));
+            int last = --size;
+            if (id != last) {
+                Phone moved = phones[last];
+                phones[id] = moved;
+                ids[slot(keys, key(moved.getNumber()))] = id;
+            }
+            phones[last] = null;
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes all phones from the directory.
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            Arrays.fill(phones, 0, size, null);
+            Arrays.fill(keys, FREE);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Makes sure that directory can hold given number of phones without resizing.
+     * @param capacity Number of phones.
+     */
+    public void ensureCapacity(int capacity) {
+        long stamp = lock.writeLock();
+        try {
+            if (capacity > phones.length) {
+                phones = Arrays.copyOf(phones, capacity);
+            }
+            if (tableLength(capacity) > keys.length) {
+                rehash(tableLength(capacity));
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Number of phones getter.
+     * @return Number of phones in the directory.
+     */
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int size = this.size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                size = this.size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Copies phones to a list ordered by their IDs.
+     * @return List of phones.
+     */
+    public List<Phone> toList() {
+        long stamp = lock.readLock();
+        try {
+            return new ArrayList<>(Arrays.asList(phones).subList(0, size));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Iterates over a snapshot of the directory, so it can be modified during iteration.
+     * @return Iterator over phones ordered by their IDs.
+     */
+    @Override
+    public Iterator<Phone> iterator() {
+        return toList().iterator();
+    }
+
+    /**
+     * Finds ID of phone with given key without locking. Bounded by table length, so it ends even if
+     * the table is modified concurrently; such result is discarded by stamp validation.
+     * @param keys Hash table of numbers.
+     * @param ids IDs of numbers in {@code keys}.
+     * @param key Number to be found.
+     * @return Phone ID or -1 if number wasn't found.
+     */
+    private static int lookup(int[] keys, int[] ids, int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        for (int probes = 0; probes < keys.length; probes++) {
+            int current = keys[slot];
+            if (current == key) {
+                return slot < ids.length ? ids[slot] : -1;
+            }
+            if (current == FREE) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds slot containing given key or the free slot where it should be inserted.
+     * @param keys Hash table of numbers.
+     * @param key Number to be found.
+     * @return Slot index.
+     */
+    private static int slot(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != key && keys[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Frees given slot and shifts following entries of the same probe sequence back, so no tombstones are needed.
+     * @param slot Slot to be freed.
+     */
+    private void delete(int slot) {
+        int mask = keys.length - 1;
+        int free = slot;
+        int current = (slot + 1) & mask;
+        while (keys[current] != FREE) {
+            int home = hash(keys[current]) & mask;
+            if (((current - home) & mask) >= ((current - free) & mask)) {
+                keys[free] = keys[current];
+                ids[free] = ids[current];
+                free = current;
+            }
+            current = (current + 1) & mask;
+        }
+        keys[free] = FREE;
+    }
+
+    /**
+     * Moves all keys to a new table.
+     * @param length New table length.
+     */
+    private void rehash(int length) {
+        int[] oldKeys = keys;
+        int[] oldIds = ids;
+        int[] newKeys = newTable(length);
+        int[] newIds = new int[length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(newKeys, oldKeys[i]);
+                newKeys[slot] = oldKeys[i];
+                newIds[slot] = oldIds[i];
+            }
+        }
+        keys = newKeys;
+        ids = newIds;
+    }
+
+    /**
+     * Creates empty hash table.
+     * @param length Table length.
+     * @return Table filled with {@code FREE} markers.
+     */
+    private static int[] newTable(int length) {
+        int[] table = new int[length];
+        Arrays.fill(table, FREE);
+        return table;
+    }
+
+    /**
+     * Computes hash table length which keeps load factor at most 0.75.
+     * @param capacity Number of keys.
+     * @return Power of two table length.
+     */
+    private static int tableLength(int capacity) {
+        long minimum = Math.max((capacity * 4L + 2) / 3, DEFAULT_CAPACITY);
+        if (minimum > (1 << 30)) {
+            throw new IllegalArgumentException("too many phones " + capacity);
+        }
+        return Integer.highestOneBit((int) minimum - 1) << 1;
+    }
+
+    /**
+     * Spreads bits of phone number, so consecutive numbers don't form long probe sequences.
+     * @param key Phone number.
+     * @return Hash of the number.
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,141 @@
+package com.company;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Parallel bulk generator of phones with unique random numbers. Phone {@code i} gets the number with index
+ * {@code permutation(i)} in the numbering plan, where permutation is a keyed {@code FeistelPermutation}, so numbers
+ * never repeat, no already generated numbers have to be checked and the result depends only on the seed,
+ * not on the number of threads. Chunks of phones are created in parallel straight into a presized array.
+ */
+public class PhoneGenerator {
+
+    /**
+     * Number of phones created by one task.
+     */
+    private static final int CHUNK = 1 << 16;
+
+    /**
+     * Field {@code plan} is numbering plan of generated phones.
+     */
+    private final NumberPlan plan;
+    /**
+     * Field {@code threads} holds number of threads creating phones.
+     */
+    private final int threads;
+
+    /**
+     * Class {@code PhoneGenerator} constructor.
+     * @param plan Numbering plan of generated phones.
+     * @param threads Number of threads creating phones.
+     */
+    public PhoneGenerator(NumberPlan plan, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("invalid number of threads " + threads);
+        }
+        this.plan = plan;
+        this.threads = threads;
+    }
+
+    /**
+     * Generates phones with unique numbers.
+     * @param amount Number of phones, up to the size of numbering plan.
+     * @param seed Seed of the permutation; the same seed gives the same numbers in the same order.
+     * @param factory Creates phone with given number, called from many threads at once.
+     * @return Generated phones.
+     * @throws IllegalArgumentException If numbering plan has less numbers than {@code amount}.
+     */
+    public Phone[] generate(int amount, long seed, Function<PhoneNumber, Phone> factory) {
+        Phone[] phones = new Phone[checkAmount(amount)];
+        FeistelPermutation permutation = new FeistelPermutation(plan.size(), seed);
+        forEach(amount, i -> phones[i] = factory.apply(plan.phoneNumber(permutation.apply(i))));
+        return phones;
+    }
+
+    /**
+     * Generates the numbers {@code generate} gives phones with the same seed, without creating any phones.
+     * @param amount Number of numbers, up to the size of numbering plan.
+     * @param seed Seed of the permutation.
+     * @return Number values in order of generation, formatted to {@code getNumberLength()} digits of the plan.
+     * @throws IllegalArgumentException If numbering plan has less numbers than {@code amount}.
+     */
+    public int[] generateNumbers(int amount, long seed) {
+        int[] numbers = new int[checkAmount(amount)];
+        FeistelPermutation permutation = new FeistelPermutation(plan.size(), seed);
+        forEach(amount, i -> numbers[i] = plan.number(permutation.apply(i)));
+        return numbers;
+    }
+
+    /**
+     * Checks number of generated phones.
+     * @param amount Number of phones.
+     * @return Given amount.
+     * @throws IllegalArgumentException If numbering plan has less numbers than {@code amount}.
+     */
+    private int checkAmount(int amount) {
+        if (amount < 0 || amount > plan.size()) {
+            throw new IllegalArgumentException("invalid amount " + amount + " of phones for plan of " +
+                    plan.size() + " numbers");
+        }
+        return amount;
+    }
+
+    /**
+     * Runs task for all indexes below given amount, in chunks processed in parallel.
+     * @param amount Number of indexes.
+     * @param task Task run for every index, from many threads at once.
+     */
+    private void forEach(int amount, IntConsumer task) {
+        if (amount == 0) {
+            return;
+        }
+        int chunks = (amount + CHUNK - 1) / CHUNK;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int from = chunk * CHUNK;
+                int to = Math.min(from + CHUNK, amount);
+                futures.add(executor.submit(() -> {
+                    for (int i = from; i < to; i++) {
+                        task.accept(i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("phone generation failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("phone generation interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generates phones with unique numbers and adds them to a directory presized for them.
+     * @param directory Destination directory.
+     * @param amount Number of phones, up to the size of numbering plan.
+     * @param seed Seed of the permutation.
+     * @param factory Creates phone with given number, called from many threads at once.
+     * @throws IllegalArgumentException If numbering plan has less numbers than {@code amount} or a generated number
+     *                                  is already in the directory; no phones are added then.
+     */
+    public void generate(PhoneDirectory directory, int amount, long seed, Function<PhoneNumber, Phone> factory) {
+        directory.ensureCapacity(directory.size() + amount);
+        directory.addAll(generate(amount, seed, factory));
+    }
+}
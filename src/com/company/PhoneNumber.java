@@ -0,0 +1,248 @@
+package com.company;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Phone number stored as its numeric value and number of digits, so leading zeros are kept.
+ * Numbers compare and hash as two ints and are formatted only when their text is needed; the text is cached.
+ * Canonical instances created with {@code intern} are shared by phones and register entries.
+ */
+public final class PhoneNumber implements Comparable<PhoneNumber>, CallParty {
+
+    /**
+     * Maximum number of digits of a phone number, so that its value fits in {@code int}.
+     */
+    public static final int MAX_DIGITS = 9;
+
+    /**
+     * Powers of ten, {@code POWERS[n]} is the smallest value with more than {@code n} digits.
+     */
+    private static final int[] POWERS = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000,
+            100_000_000, 1_000_000_000};
+
+    /**
+     * Canonical instances of interned numbers.
+     */
+    private static final ConcurrentHashMap<PhoneNumber, PhoneNumber> CANONICAL = new ConcurrentHashMap<>();
+
+    /**
+     * Field {@code value} holds numeric value of the number.
+     */
+    private final int value;
+    /**
+     * Field {@code length} holds number of digits.
+     */
+    private final int length;
+    /**
+     * Field {@code text} caches formatted number, null until it's needed.
+     */
+    private String text;
+
+    /**
+     * Class {@code PhoneNumber} constructor.
+     * @param value Numeric value.
+     * @param length Number of digits.
+     * @param text Formatted number or null.
+     */
+    private PhoneNumber(int value, int length, String text) {
+        this.value = value;
+        this.length = length;
+        this.text = text;
+    }
+
+    /**
+     * Parses phone number.
+     * @param phoneNumber Phone number made of up to {@code MAX_DIGITS} digits.
+     * @return Phone number, canonical instance if the number is interned.
+     * @throws IllegalArgumentException If phone number is empty, too long or contains other characters than digits.
+     */
+    public static PhoneNumber parse(String phoneNumber) {
+        PhoneNumber number = new PhoneNumber(parseValue(phoneNumber), phoneNumber.length(), phoneNumber);
+        PhoneNumber canonical = CANONICAL.get(number);
+        return canonical != null ? canonical : number;
+    }
+
+    /**
+     * Creates phone number from its numeric form.
+     * @param value Numeric value.
+     * @param length Number of digits, value is padded with leading zeros to this length.
+     * @return Phone number, canonical instance if the number is interned.
+     * @throws IllegalArgumentException If value doesn't fit in given number of digits.
+     */
+    public static PhoneNumber of(int value, int length) {
+        if (length <= 0 || length > MAX_DIGITS || value < 0 || value >= POWERS[length]) {
+            throw new IllegalArgumentException("invalid phone number " + value + " of " + length + " digits");
+        }
+        PhoneNumber number = new PhoneNumber(value, length, null);
+        PhoneNumber canonical = CANONICAL.get(number);
+        return canonical != null ? canonical : number;
+    }
+
+    /**
+     * Parses numeric value of phone number without creating any objects.
+     * @param phoneNumber Phone number made of up to {@code MAX_DIGITS} digits.
+     * @return Numeric value.
+     * @throws IllegalArgumentException If phone number is empty, too long or contains other characters than digits.
+     */
+    public static int parseValue(CharSequence phoneNumber) {
+        int length = phoneNumber.length();
+        if (length == 0 || length > MAX_DIGITS) {
+            throw new IllegalArgumentException("invalid phone number " + phoneNumber);
+        }
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = phoneNumber.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("invalid phone number " + phoneNumber);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Returns canonical instance of this number, registering this one if there is none yet.
+     * Canonical instances are kept for the lifetime of the JVM, like interned strings.
+     * @return Canonical phone number equal to this one.
+     */
+    public PhoneNumber intern() {
+        PhoneNumber canonical = CANONICAL.putIfAbsent(this, this);
+        return canonical != null ? canonical : this;
+    }
+
+    /**
+     * Value getter.
+     * @return Numeric value of the number.
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Length getter.
+     * @return Number of digits.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * First digit getter.
+     * @return Value of the first digit.
+     */
+    public int getFirstDigit() {
+        return value / POWERS[length - 1];
+    }
+
+    /**
+     * Appends number to a buffer without formatting it to a string.
+     * @param buffer Destination buffer.
+     */
+    public void appendTo(StringBuilder buffer) {
+        String text = this.text;
+        if (text != null) {
+            buffer.append(text);
+        } else {
+            appendTo(buffer, value, length);
+        }
+    }
+
+    /**
+     * Appends phone number padded with leading zeros to its length.
+     * @param buffer Destination buffer.
+     * @param value Numeric value.
+     * @param length Number of digits.
+     */
+    static void appendTo(StringBuilder buffer, int value, int length) {
+        int start = buffer.length();
+        buffer.setLength(start + length);
+        for (int i = start + length - 1; i >= start; i--) {
+            buffer.setCharAt(i, (char) ('0' + value % 10));
+            value /= 10;
+        }
+    }
+
+    /**
+     * Formats phone number padded with leading zeros to its length.
+     * @param value Numeric value.
+     * @param length Number of digits.
+     * @return Phone number.
+     */
+    static String format(int value, int length) {
+        char[] digits = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PhoneNumber)) {
+            return false;
+        }
+        PhoneNumber other = (PhoneNumber) o;
+        return value == other.value && length == other.length;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = value * 0x9E3779B9 + length;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Compares numbers as their texts, so shorter numbers with the same leading digits come first.
+     * @param other Compared number.
+     * @return Negative, zero or positive value if this number is before, equal to or after the other one.
+     */
+    @Override
+    public int compareTo(PhoneNumber other) {
+        int shift = length - other.length;
+        long left = value;
+        long right = other.value;
+        if (shift > 0) {
+            right *= POWERS[shift];
+        } else if (shift < 0) {
+            left *= POWERS[-shift];
+        }
+        int result = Long.compare(left, right);
+        return result != 0 ? result : Integer.compare(length, other.length);
+    }
+
+    /**
+     * Returns this number, which stands for a phone owned by another cluster node when it is called.
+     * @return This number.
+     */
+    @Override
+    public PhoneNumber getNumber() {
+        return this;
+    }
+
+    /**
+     * Formats the number, caching the result.
+     * @return Phone number padded with leading zeros to its length.
+     */
+    @Override
+    public String getPhoneNumber() {
+        return toString();
+    }
+
+    /**
+     * Formats the number, caching the result.
+     * @return Phone number padded with leading zeros to its length.
+     */
+    @Override
+    public String toString() {
+        String text = this.text;
+        if (text == null) {
+            text = format(value, length);
+            this.text = text;
+        }
+        return text;
+    }
+}
@@ -10,9 +10,14 @@ import java.time.format.DateTimeFormatter;
 public class PhoneRegisterEntry {
 
     /**
-     * Field {@code phoneNumber} contains destination phone number.
+     * Formatter of call date and time shared by all entries.
      */
-    private final String phoneNumber;
+    public static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Field {@code number} contains destination phone number.
+     */
+    private final PhoneNumber number;
     /**
      * Flag {@code accepted} is used to determine if destination phone accepted or rejected the call.
      */
@@ -37,10 +42,24 @@ public class PhoneRegisterEntry {
      * @param available Flag indicating if destination phone is available.
      * @param callDate Call's local date and time.
      * @param conversationTime Call duration.
+     * @throws IllegalArgumentException If phone number isn't made of up to {@code PhoneNumber.MAX_DIGITS} digits.
      */
     public PhoneRegisterEntry(String phoneNumber, boolean accepted, boolean available,
                               LocalDateTime callDate, Duration conversationTime) {
-        this.phoneNumber = phoneNumber;
+        this(PhoneNumber.parse(phoneNumber), accepted, available, callDate, conversationTime);
+    }
+
+    /**
+     * Class {@code PhoneRegisterEntry} constructor.
+     * @param number Destination phone number.
+     * @param accepted Flag that means if call will be accepted or rejected by destination.
+     * @param available Flag indicating if destination phone is available.
+     * @param callDate Call's local date and time.
+     * @param conversationTime Call duration.
+     */
+    public PhoneRegisterEntry(PhoneNumber number, boolean accepted, boolean available,
+                              LocalDateTime callDate, Duration conversationTime) {
+        this.number = number;
         this.accepted = accepted;
         this.available = available;
         this.callDateTime = callDate;
@@ -52,7 +71,15 @@ public class PhoneRegisterEntry {
      * @return Destination phone number.
      */
     public String getPhoneNumber() {
-        return phoneNumber;
+        return number.toString();
+    }
+
+    /**
+     * Phone number getter.
+     * @return Destination phone number in its compact form.
+     */
+    public PhoneNumber getNumber() {
+        return number;
     }
 
     /**
@@ -63,6 +90,14 @@ public class PhoneRegisterEntry {
         return accepted;
     }
 
+    /**
+     * Available flag getter.
+     * @return True if destination phone was available or false if it was busy.
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
     /**
      * Call's local date and time getter.
      * @return Class {@code LocalDateTime} object.
@@ -81,10 +116,10 @@ public class PhoneRegisterEntry {
 
     @Override
     public String toString() {
-        return "{" + phoneNumber +
+        return "{" + number +
                 ", " + (accepted?"Accepted":"Rejected") +
                 ", " + (available?"Available":"Unavailable") +
-                ", " + callDateTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) +
+                ", " + callDateTime.format(DATE_TIME_FORMATTER) +
                 ", " + conversationTime +
                 '}';
     }
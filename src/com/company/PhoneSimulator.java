@@ -1,10 +1,27 @@
 package com.company;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.InputMismatchException;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Class {@code PhoneSimulator} implements console user interface that allows user to simulate phones connections.
@@ -12,40 +29,342 @@ import java.util.Scanner;
 public class PhoneSimulator {
 
     /**
-     * List that contains phone objects generated or defined by user.
+     * Directory that contains phone objects generated or defined by user.
      */
-    private LinkedList<Phone> phones;
+    private final PhoneDirectory phones;
+    /**
+     * Clock given to created phones.
+     */
+    private final Clock clock;
+    /**
+     * Scheduler given to created phones to end their conversations.
+     */
+    private final ExpiryScheduler scheduler;
+    /**
+     * Random number generator used to generate phone numbers.
+     */
+    private final Random random;
+    /**
+     * Retention policy of registers of simulated phones.
+     */
+    private RetentionPolicy retention;
+    /**
+     * Destination of records evicted from registers of simulated phones.
+     */
+    private SpillSink spillSink;
+    /**
+     * Listeners notified about call events of simulated phones.
+     */
+    private final List<CallListener> listeners;
+    /**
+     * Listener given to simulated phones which passes their events to all {@code listeners}.
+     */
+    private final CallListener dispatcher;
+    /**
+     * Counters of calls made by simulated phones.
+     */
+    private final CallStatistics statistics;
+    /**
+     * Instrumentation of simulated phones, null if it's disabled.
+     */
+    private volatile CallMetrics metrics;
 
     /**
-     * Class {@code PhoneSimulator} constructor.
+     * Class {@code PhoneSimulator} constructor. Simulator runs in wall-clock time.
      */
     PhoneSimulator() {
-        this.phones = new LinkedList<>();
+        this(Clock.systemDefaultZone(), Phone.CONVERSATIONS, new Random());
+    }
+
+    /**
+     * Class {@code PhoneSimulator} constructor. Simulator runs in simulated time of given engine
+     * and uses engine's seeded random number generator, so its results are reproducible.
+     * @param engine Discrete-event simulation engine.
+     */
+    public PhoneSimulator(SimulationEngine engine) {
+        this(engine.getClock(), engine, engine.getRandom());
+    }
+
+    /**
+     * Class {@code PhoneSimulator} constructor.
+     * @param clock Clock given to created phones.
+     * @param scheduler Scheduler given to created phones.
+     * @param random Random number generator used to generate phone numbers.
+     */
+    private PhoneSimulator(Clock clock, ExpiryScheduler scheduler, Random random) {
+        this.phones = new PhoneDirectory();
+        this.clock = clock;
+        this.scheduler = scheduler;
+        this.random = random;
+        this.retention = RetentionPolicy.UNLIMITED;
+        this.spillSink = SpillSink.DISCARD;
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.dispatcher = this::dispatch;
+        this.statistics = CallStatistics.totals();
+    }
+
+    /**
+     * Creates phone which uses simulator's clock and scheduler.
+     * @param phoneNumber Phone number.
+     * @return New phone object.
+     * @throws IllegalArgumentException If phone number isn't made of up to {@code PhoneNumber.MAX_DIGITS} digits.
+     */
+    public Phone createPhone(String phoneNumber) {
+        return createPhone(PhoneNumber.parse(phoneNumber));
+    }
+
+    /**
+     * Creates phone which uses simulator's clock and scheduler.
+     * @param number Phone number.
+     * @return New phone object.
+     */
+    public Phone createPhone(PhoneNumber number) {
+        Phone phone = new Phone(number, clock, scheduler);
+        phone.setCallListener(dispatcher);
+        phone.getStatistics().setTotals(statistics);
+        phone.setMetrics(metrics);
+        if (retention != RetentionPolicy.UNLIMITED) {
+            phone.setRetention(retention, spillSink);
+        }
+        return phone;
+    }
+
+    /**
+     * Adds listener notified about call events of all simulated phones.
+     * @param listener Call listener.
+     */
+    public void addCallListener(CallListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes listener added with {@code addCallListener}.
+     * @param listener Call listener.
+     */
+    public void removeCallListener(CallListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Passes call event to all listeners.
+     * @param type Event type.
+     * @param caller Source phone of the call.
+     * @param callee Destination phone of the call.
+     * @param accept Flag passed to {@code call} telling if destination phone should accept call.
+     * @param time Event time in epoch milliseconds.
+     * @param conversationTime Conversation duration.
+     */
+    private void dispatch(CallEventType type, Phone caller, CallParty callee, boolean accept,
+                          long time, Duration conversationTime) {
+        for (CallListener listener : listeners) {
+            listener.onCallEvent(type, caller, callee, accept, time, conversationTime);
+        }
+    }
+
+    /**
+     * Sets retention policy of registers of all simulated phones, including ones created later.
+     * @param retention Policy which limits number of records in every register.
+     * @param spillSink Destination of evicted records.
+     */
+    public void setRetention(RetentionPolicy retention, SpillSink spillSink) {
+        this.retention = retention;
+        this.spillSink = spillSink;
+        phones.forEach(phone -> phone.setRetention(retention, spillSink));
     }
 
     /**
-     * Method used to generate phone objects with random phone numbers and add them to {@code phones} list.
+     * Method used to generate phone objects with unique random phone numbers and add them to {@code phones} directory.
+     * Previously generated or added phones are replaced.
      * @param amount Number of phones to be generated.
      */
     public void generatePhones(int amount) {
-        if (amount < 0) {
+        generatePhones(amount, NumberPlan.DEFAULT, random.nextLong());
+    }
+
+    /**
+     * Generates phones with unique numbers of given numbering plan on all available cores
+     * and replaces simulated phones with them.
+     * @param amount Number of phones to be generated.
+     * @param plan Numbering plan of generated phones.
+     * @param seed Seed of generated numbers; the same seed gives the same numbers with the same IDs.
+     * @throws IllegalArgumentException If numbering plan has less numbers than {@code amount}.
+     */
+    public void generatePhones(int amount, NumberPlan plan, long seed) {
+        if (amount < 0 || amount > plan.size()) {
+            throw new IllegalArgumentException("invalid amount " + amount + " of phones to generate");
+        }
+        phones.forEach(Phone::release);
+        phones.clear();
+        statistics.reset();
+        new PhoneGenerator(plan, Runtime.getRuntime().availableProcessors())
+                .generate(phones, amount, seed, this::createPhone);
+    }
+
+    /**
+     * Generates phones of a cluster. All nodes generate the same numbers from the same seed; phones owned by
+     * given node replace simulated phones, phones of other nodes are known only by their numbers.
+     * @param node Local cluster node.
+     * @param amount Number of phones of the whole cluster.
+     * @param plan Numbering plan of generated phones.
+     * @param seed Seed of generated numbers, the same on all nodes.
+     * @return Number values of all phones of the cluster, local and remote, in order of generation,
+     *         formatted to {@code getNumberLength()} digits of the plan.
+     * @throws IllegalArgumentException If numbering plan has less numbers than {@code amount}.
+     */
+    public int[] generateClusterPhones(ClusterNode node, int amount, NumberPlan plan, long seed) {
+        if (amount < 0 || amount > plan.size()) {
             throw new IllegalArgumentException("invalid amount " + amount + " of phones to generate");
         }
+        phones.forEach(Phone::release);
         phones.clear();
-        Random r = new Random();
-        for (int i = 0; i < amount; i++) {
-            String phoneNumber = String.format(
-                    "%03d%03d%03d",
-                    r.nextInt(400)+500,
-                    r.nextInt(400)+500,
-                    r.nextInt(1000));
-            phones.add(new Phone(phoneNumber));
+        statistics.reset();
+        int[] numbers = new PhoneGenerator(plan, Runtime.getRuntime().availableProcessors())
+                .generateNumbers(amount, seed);
+        List<Phone> local = new ArrayList<>();
+        for (int value : numbers) {
+            PhoneNumber number = PhoneNumber.of(value, plan.getNumberLength());
+            if (node.isLocal(number)) {
+                local.add(createPhone(number));
+            }
         }
+        phones.ensureCapacity(local.size());
+        phones.addAll(local.toArray(new Phone[0]));
+        return numbers;
+    }
+
+    /**
+     * Exports registers of all simulated phones to a single file, formatting them on all available cores.
+     * @param file Destination file, overwritten if it exists.
+     * @param format Layout of exported file.
+     * @throws IOException If file can't be written.
+     */
+    public void exportRegisters(Path file, RegisterExporter.Format format) throws IOException {
+        new RegisterExporter(format, Runtime.getRuntime().availableProcessors()).export(phones.toList(), file);
+    }
+
+    /**
+     * Imports phones with their registers from a register file or from all files of a directory, reading files in parallel.
+     * Phones whose numbers already exist in the simulator are skipped.
+     * @param path Register file or directory.
+     * @return Number of added phones.
+     * @throws IOException If a file can't be read or has invalid format.
+     */
+    public int importRegisters(Path path) throws IOException {
+        List<Phone> imported = new RegisterImporter(this::createPhone, Runtime.getRuntime().availableProcessors())
+                .importPath(path);
+        phones.ensureCapacity(phones.size() + imported.size());
+        int added = 0;
+        for (Phone phone : imported) {
+            if (!phones.contains(phone.getNumber())) {
+                phones.add(phone);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Phone directory getter.
+     * @return Directory of simulated phones.
+     */
+    public PhoneDirectory getPhones() {
+        return phones;
+    }
+
+    /**
+     * Call statistics getter.
+     * @return Counters of calls made by all simulated phones since they were generated, every call counted once.
+     */
+    public CallStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Enables instrumentation of all simulated phones, including ones created later.
+     * @return Metrics of simulated phones.
+     */
+    public synchronized CallMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new CallMetrics();
+            phones.forEach(phone -> phone.setMetrics(metrics));
+        }
+        return metrics;
+    }
+
+    /**
+     * Disables instrumentation of all simulated phones.
+     */
+    public synchronized void disableMetrics() {
+        metrics = null;
+        phones.forEach(phone -> phone.setMetrics(null));
+    }
+
+    /**
+     * Metrics getter.
+     * @return Metrics of simulated phones or null if instrumentation is disabled.
+     */
+    public CallMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Average number of calls per phone getter.
+     * @return Calls made by simulated phones divided by number of phones.
+     */
+    public double getCallsPerPhone() {
+        int size = phones.size();
+        return size == 0 ? 0 : (double) statistics.getOutboundCalls() / size;
+    }
+
+    /**
+     * Starts writing snapshot of all simulated phones on a background thread; simulation goes on meanwhile.
+     * @param file Snapshot file, replaced when the new snapshot is complete.
+     * @return Future size of the snapshot in bytes, completed exceptionally if it can't be written.
+     */
+    public CompletableFuture<Long> saveSnapshot(Path file) {
+        List<Phone> snapshot = phones.toList();
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(new SimulatorSnapshot(Runtime.getRuntime().availableProcessors()).write(snapshot, file));
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }, "snapshot-writer");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    /**
+     * Replaces simulated phones with phones of a snapshot written by {@code saveSnapshot}.
+     * Conversations which were in progress when the snapshot was written and haven't ended since go on.
+     * Call statistics start from zero.
+     * @param file Snapshot file.
+     * @return Number of restored phones.
+     * @throws IOException If file can't be read or isn't a valid snapshot.
+     */
+    public int restoreSnapshot(Path file) throws IOException {
+        Phone[] restored = new SimulatorSnapshot(Runtime.getRuntime().availableProcessors()).read(file, this::createPhone);
+        phones.forEach(Phone::release);
+        phones.clear();
+        statistics.reset();
+        phones.addAll(restored);
+        return restored.length;
+    }
+
+    /**
+     * Finds register records of simulated phones.
+     * @param query Filters of searched records.
+     * @return Matching records.
+     */
+    public List<CallQuery.Match> query(CallQuery query) {
+        return query.execute(phones);
     }
 
     /**
      * Method displays submenu for selected phone and handles its usage.
-     * @param id Phone identifier in {@code phones} list.
+     * @param id Phone identifier in {@code phones} directory.
      */
     public void handlePhone(int id) {
         if (id < 0 || id >= phones.size()) {
@@ -93,6 +412,7 @@ public class PhoneSimulator {
                 case 2: {
                     phones.get(id).displayOutboundRegister();
                     phones.get(id).displayInboundRegister();
+                    System.out.println("Statistics: " + phones.get(id).getStatistics());
                 } break;
                 case 3: {
                     System.out.print("File name: ");
@@ -122,6 +442,12 @@ public class PhoneSimulator {
         System.out.println("3 - Remove phone");
         System.out.println("4 - Select phone");
         System.out.println("5 - Display phones");
+        System.out.println("6 - Find phone");
+        System.out.println("7 - Export all registers");
+        System.out.println("8 - Import registers");
+        System.out.println("9 - Display statistics");
+        System.out.println("10 - Save snapshot");
+        System.out.println("11 - Restore snapshot");
         System.out.println("0 - Exit");
     }
 
@@ -136,7 +462,7 @@ public class PhoneSimulator {
     }
 
     /**
-     * Prints current {@code phones} list content.
+     * Prints current {@code phones} directory content.
      */
     public void displayPhones() {
         System.out.println();
@@ -150,11 +476,312 @@ public class PhoneSimulator {
         }
     }
 
+    /**
+     * Runs headless load test configured with command line options and prints its results.
+     * Supported options, all optional: {@code --phones=1000 --threads=4 --duration=60 --rate=1000
+     * --holding=exponential|log_normal --mean=30 --sigma=1 --accept=0.8 --pattern=w,w,w,w;... --seed=1
+     * --retain=100 --max-age=3600 --spill=spill.txt --journal=journal --metrics=metrics.txt --log=stdout --plan=500-899/6
+     * --shards=4 --shard-by=hash|prefix --restore=state.snap --snapshot=state.snap --analytics=true
+     * --trace=calls.trace --replay=calls.trace --speed=1 --virtual=true}.
+     * Rate 0 makes calls as fast as possible. Retention options limit every register to the last entries
+     * or to entries not older than given number of seconds; evicted entries are appended to the spill file.
+     * Journal option writes all call events to binary {@code CallJournal} in given directory.
+     * Metrics option enables call instrumentation and dumps {@code CallMetrics} to given file after the test.
+     * Plan option sets numbering plan of generated phones as prefixes or prefix ranges and number of following digits.
+     * Log option writes every call event with asynchronous {@code EventLogger} to given file or the console.
+     * Analytics option feeds calls to {@code CallAnalytics} and prints its sketches after the test.
+     * Trace option records every call request to a {@code CallTrace} file. Replay option replays such a trace
+     * with {@code TraceReplayer} instead of generating traffic, at original pace multiplied by speed option,
+     * or as fast as possible with speed 0; phones of the trace missing in the restored snapshot or in phones
+     * generated with phones option are created from the numbers of the trace, so it replays without the seed.
+     * Virtual option runs the test on a seeded {@code SimulationEngine} instead: duration is simulated time,
+     * calls arrive at the given positive rate and the report compares simulated time with CPU time.
+     * With replay option, the trace is replayed on the engine at its recorded times instead.
+     * Restore option replaces generated phones with a {@code SimulatorSnapshot}, snapshot option saves one after the test.
+     * Shards option runs the test on {@code ShardedSimulator} with given number of event loops instead of
+     * {@code LoadGenerator}; phones are assigned to shards by hash of the number or by its prefix.
+     * @param args Command line options following {@code load} argument.
+     * @throws InterruptedException If main thread was interrupted while waiting for workers.
+     * @throws IOException If spill file, journal, metrics, log or trace can't be written, or replay can't be read.
+     */
+    public static void runLoad(String[] args) throws InterruptedException, IOException {
+        Map<String, String> options = parseOptions(args);
+        long seed = Long.parseLong(options.getOrDefault("seed", String.valueOf(System.nanoTime())));
+        SimulationEngine engine = Boolean.parseBoolean(options.getOrDefault("virtual", "false"))
+                ? new SimulationEngine(seed) : null;
+        PhoneSimulator simulator = engine != null ? new PhoneSimulator(engine) : new PhoneSimulator();
+        FileSpillSink spill = null;
+        CallJournal journal = null;
+        Writer log = null;
+        EventLogger logger = null;
+        CallTrace trace = null;
+        try {
+            spill = options.containsKey("spill") ? new FileSpillSink(options.get("spill")) : null;
+            simulator.setRetention(parseRetention(options), spill != null ? spill : SpillSink.DISCARD);
+            journal = options.containsKey("journal") ? new CallJournal(Paths.get(options.get("journal"))) : null;
+            if (journal != null) {
+                simulator.addCallListener(journal);
+            }
+            if (options.containsKey("log") && !options.get("log").equals("stdout")) {
+                log = Files.newBufferedWriter(Paths.get(options.get("log")));
+            }
+            if (options.containsKey("log")) {
+                logger = new EventLogger(log != null ? log : System.out, EventLogger.DEFAULT_CAPACITY);
+                simulator.addCallListener(logger);
+            }
+            trace = options.containsKey("trace") ? new CallTrace(Paths.get(options.get("trace"))) : null;
+            if (trace != null) {
+                simulator.addCallListener(trace);
+            }
+            runLoad(simulator, engine, options, seed);
+        } finally {
+            for (CallListener listener : new CallListener[] {trace, logger, journal}) {
+                if (listener != null) {
+                    simulator.removeCallListener(listener);
+                }
+            }
+            simulator.setRetention(simulator.retention, SpillSink.DISCARD);
+            closeAll(trace, logger, log, journal, spill);
+        }
+        if (logger != null) {
+            System.out.println("Dropped log events: " + logger.getDropped());
+        }
+        if (trace != null) {
+            System.out.println("Traced requests: " + trace.getRecords());
+        }
+    }
+
+    /**
+     * Runs load test of {@code runLoad} once its journal, log, trace and spill file are open.
+     * @param simulator Simulator with listeners of the test.
+     * @param engine Engine of virtual test, null for a test in wall-clock time.
+     * @param options Option values by names.
+     * @param seed Seed of generated phones and traffic.
+     * @throws InterruptedException If main thread was interrupted while waiting for workers.
+     * @throws IOException If metrics or snapshot can't be written, or replay can't be read.
+     */
+    private static void runLoad(PhoneSimulator simulator, SimulationEngine engine, Map<String, String> options,
+                                long seed) throws InterruptedException, IOException {
+        if (options.containsKey("metrics")) {
+            simulator.enableMetrics();
+        }
+        CallAnalytics analytics = null;
+        if (Boolean.parseBoolean(options.getOrDefault("analytics", "false"))) {
+            analytics = new CallAnalytics();
+            simulator.addCallListener(analytics);
+        }
+        NumberPlan plan = options.containsKey("plan") ? NumberPlan.parse(options.get("plan")) : NumberPlan.DEFAULT;
+        if (options.containsKey("restore")) {
+            long start = System.nanoTime();
+            int restored = simulator.restoreSnapshot(Paths.get(options.get("restore")));
+            System.out.printf("Restored %d phones in %.3fs%n", restored, (System.nanoTime() - start) / 1e9);
+        } else if (!options.containsKey("replay") || options.containsKey("phones")) {
+            simulator.generatePhones(Integer.parseInt(options.getOrDefault("phones", "1000")), plan, seed);
+        }
+        TrafficModel model = parseModel(options);
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        if (engine != null && options.containsKey("replay")) {
+            System.out.println("Virtual replay: " + simulator.phones.size() + " phones and phones of the trace, " +
+                    options.get("replay"));
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            long cpu = bean.getCurrentThreadCpuTime();
+            long start = engine.now();
+            TraceReplayer replayer = new TraceReplayer(simulator.phones, 1, simulator::createPhone);
+            System.out.println(replayer.replay(Paths.get(options.get("replay")), engine));
+            double cpuSeconds = (bean.getCurrentThreadCpuTime() - cpu) / 1e9;
+            double simulated = (engine.now() - start) / 1e3;
+            System.out.printf("Simulated: %.3fs in %.3fs CPU time (%.0fx), %d events%n", simulated,
+                    cpuSeconds, simulated / cpuSeconds, engine.getProcessedEvents());
+        } else if (engine != null) {
+            System.out.println("Virtual load test: " + simulator.phones.size() + " phones, " + duration.getSeconds() +
+                    "s simulated, seed " + seed + ", " + model);
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            long cpu = bean.getCurrentThreadCpuTime();
+            SimulationEngine.Traffic traffic = engine.scheduleTraffic(model, simulator.phones.toList(),
+                    Instant.ofEpochMilli(engine.now()).plus(duration));
+            engine.runFor(duration);
+            double cpuSeconds = (bean.getCurrentThreadCpuTime() - cpu) / 1e9;
+            System.out.println(traffic);
+            System.out.printf("Simulated: %ds in %.3fs CPU time (%.0fx), %d events%n", duration.getSeconds(),
+                    cpuSeconds, duration.getSeconds() / cpuSeconds, engine.getProcessedEvents());
+        } else if (options.containsKey("replay")) {
+            double speed = Double.parseDouble(options.getOrDefault("speed", "1"));
+            System.out.println("Replay: " + simulator.phones.size() + " phones and phones of the trace, " + threads +
+                    " threads, " + (speed > 0 ? speed + "x original pace" : "unpaced") + ", " + options.get("replay"));
+            TraceReplayer replayer = new TraceReplayer(simulator.phones, threads, simulator::createPhone);
+            System.out.println(replayer.replay(Paths.get(options.get("replay")), speed));
+        } else if (options.containsKey("shards")) {
+            int shards = Integer.parseInt(options.get("shards"));
+            ShardedSimulator.Partitioning partitioning = ShardedSimulator.Partitioning.valueOf(
+                    options.getOrDefault("shard-by", "hash").toUpperCase(Locale.ROOT));
+            System.out.println("Load test: " + simulator.phones.size() + " phones, " + shards + " shards by " +
+                    partitioning.name().toLowerCase(Locale.ROOT) + ", " + duration.getSeconds() + "s, seed " + seed +
+                    ", " + model);
+            ShardedSimulator sharded = new ShardedSimulator(simulator.phones.toList(), shards, partitioning,
+                    simulator.clock);
+            System.out.println(sharded.run(model, duration, seed));
+        } else {
+            System.out.println("Load test: " + simulator.phones.size() + " phones, " + threads + " threads, " +
+                    duration.getSeconds() + "s, seed " + seed + ", " + model);
+            LoadGenerator generator = new LoadGenerator(model, simulator.phones.toList(), threads, seed);
+            System.out.println(generator.run(duration));
+        }
+        System.out.println(simulator.getStatistics());
+        if (simulator.metrics != null) {
+            System.out.println(simulator.metrics);
+            simulator.metrics.dump(Paths.get(options.get("metrics")));
+        }
+        if (analytics != null) {
+            System.out.println(analytics);
+        }
+        if (options.containsKey("snapshot")) {
+            long start = System.nanoTime();
+            long size = simulator.saveSnapshot(Paths.get(options.get("snapshot"))).join();
+            System.out.printf("Snapshot: %d bytes in %.3fs%n", size, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /**
+     * Closes all given resources, even if closing some of them fails.
+     * @param resources Resources to be closed, null ones are skipped.
+     * @throws IOException First exception thrown while closing, with the following ones suppressed.
+     */
+    private static void closeAll(Closeable... resources) throws IOException {
+        IOException failure = null;
+        for (Closeable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs a node of a load test spread over several JVMs and prints its results. All nodes have to be started
+     * with the same {@code --nodes}, {@code --phones}, {@code --plan} and {@code --seed} options, so they
+     * generate the same numbers; every node keeps phones assigned to it and makes calls from them to phones
+     * of the whole cluster. Supported options: {@code --nodes=127.0.0.1:7001,127.0.0.1:7002 --id=0
+     * --phones=1000 --plan=500-899/6 --seed=0 --threads=16 --duration=60 --timeout=5 --wait=60 --retain=100
+     * --max-age=3600} and traffic model options of {@code runLoad}. Wait option limits time spent waiting
+     * for other nodes to start and to finish, timeout option limits time of a single remote call.
+     * @param args Command line options following {@code node} argument.
+     * @throws InterruptedException If main thread was interrupted while waiting for workers or other nodes.
+     * @throws IOException If node can't listen on its address or other nodes didn't join or finish in time.
+     */
+    public static void runNode(String[] args) throws InterruptedException, IOException {
+        Map<String, String> options = parseOptions(args);
+        if (!options.containsKey("nodes") || !options.containsKey("id")) {
+            throw new IllegalArgumentException("options --nodes and --id are required");
+        }
+        PartitionMap map = PartitionMap.parse(options.get("nodes"));
+        int id = Integer.parseInt(options.get("id"));
+        Duration wait = Duration.ofSeconds(Long.parseLong(options.getOrDefault("wait", "60")));
+        PhoneSimulator simulator = new PhoneSimulator();
+        simulator.setRetention(parseRetention(options), SpillSink.DISCARD);
+        TrafficModel model = parseModel(options);
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(4 * Runtime.getRuntime().availableProcessors())));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        Duration timeout = options.containsKey("timeout")
+                ? Duration.ofSeconds(Long.parseLong(options.get("timeout"))) : ClusterNode.DEFAULT_TIMEOUT;
+        long seed = Long.parseLong(options.getOrDefault("seed", "0"));
+        NumberPlan plan = options.containsKey("plan") ? NumberPlan.parse(options.get("plan")) : NumberPlan.DEFAULT;
+        try (ClusterNode node = new ClusterNode(map, id, simulator.phones, timeout)) {
+            int[] all = simulator.generateClusterPhones(node,
+                    Integer.parseInt(options.getOrDefault("phones", "1000")), plan, seed);
+            node.start();
+            System.out.println("Node " + id + " of " + map + ": " + simulator.phones.size() + " of " + all.length +
+                    " phones, waiting for other nodes ...");
+            node.awaitPeers(wait);
+            System.out.println("Load test: " + threads + " threads, " + duration.getSeconds() + "s, " + model);
+            LoadGenerator generator = new LoadGenerator(model, simulator.phones, node, all, plan.getNumberLength(),
+                    threads, seed + 31L * id);
+            System.out.println(generator.run(duration));
+            node.leave(wait);
+            System.out.println(simulator.getStatistics());
+            System.out.println(node);
+        }
+    }
+
+    /**
+     * Creates traffic model from load test options.
+     * @param options Option values by names.
+     * @return Traffic model.
+     */
+    private static TrafficModel parseModel(Map<String, String> options) {
+        return new TrafficModel(
+                Double.parseDouble(options.getOrDefault("rate", "1000")),
+                TrafficModel.HoldingTime.valueOf(options.getOrDefault("holding", "exponential").toUpperCase(Locale.ROOT)),
+                Double.parseDouble(options.getOrDefault("mean", "30")),
+                Double.parseDouble(options.getOrDefault("sigma", "1")),
+                Double.parseDouble(options.getOrDefault("accept", "0.8")),
+                options.containsKey("pattern") ? TrafficModel.parsePattern(options.get("pattern")) : null);
+    }
+
+    /**
+     * Creates register retention policy from load test options.
+     * @param options Option values by names.
+     * @return Retention policy, {@code UNLIMITED} without retention options.
+     */
+    private static RetentionPolicy parseRetention(Map<String, String> options) {
+        RetentionPolicy retention = RetentionPolicy.UNLIMITED;
+        if (options.containsKey("retain")) {
+            retention = retention.withLastEntries(Integer.parseInt(options.get("retain")));
+        }
+        if (options.containsKey("max-age")) {
+            retention = retention.withMaxAge(Duration.ofSeconds(Long.parseLong(options.get("max-age"))));
+        }
+        return retention;
+    }
+
+    /**
+     * Parses command line options written as {@code --name=value}.
+     * @param args Command line options.
+     * @return Option values by names.
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("invalid option " + arg + ", expected --name=value");
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
     /**
      * Main program entry point. Handles main menu of the program.
-     * @param args Not used.
+     * Started with {@code load} argument runs headless load test instead, see {@code runLoad}.
+     * Started with {@code node} argument runs a node of a load test spread over several JVMs, see {@code runNode}.
+     * @param args Empty for interactive mode, {@code load} followed by load test options
+     *             or {@code node} followed by cluster node options.
+     * @throws InterruptedException If load test was interrupted.
+     * @throws IOException If load test spill file or journal can't be written.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException, IOException {
+        if (args.length > 0 && args[0].equals("load")) {
+            runLoad(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("node")) {
+            runNode(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         System.out.println("Phone Simulator");
         Scanner scanner = new Scanner(System.in);
         PhoneSimulator simulator = new PhoneSimulator();
@@ -187,7 +814,9 @@ public class PhoneSimulator {
                     System.out.print("Phone number: ");
                     try {
                         String input = scanner.next("[5-8]\\d{2}\\d{3}\\d{3}");
-                        simulator.phones.add(new Phone(input));
+                        simulator.phones.add(simulator.createPhone(input));
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Phone with given number already exists. Try again ...");
                     } catch (InputMismatchException e) {
                         System.out.println("Invalid input. Try again ...");
                         scanner.next();
@@ -197,7 +826,7 @@ public class PhoneSimulator {
                     System.out.print("Phone ID: ");
                     try {
                         int input = scanner.nextInt();
-                        simulator.phones.remove(input);
+                        simulator.phones.remove(input).release();
                     } catch (IndexOutOfBoundsException e) {
                         System.out.println("Phone with given ID doesn't exist. Try again ...");
                     } catch (InputMismatchException e) {
@@ -220,6 +849,75 @@ public class PhoneSimulator {
                 case 5: {
                     simulator.displayPhones();
                 } break;
+                case 7: {
+                    System.out.print("File name (.txt, .csv or .jsonl): ");
+                    try {
+                        String input = scanner.next("[\\w\\s\\.]+\\.[a-zA-Z]{3,5}");
+                        simulator.exportRegisters(Paths.get(input), RegisterExporter.Format.forFileName(input));
+                    } catch (InputMismatchException e) {
+                        System.out.println("Given filename is invalid. Try again ...");
+                        scanner.next();
+                    } catch (IOException e) {
+                        System.out.println("Export failed: " + e.getMessage());
+                    }
+                } break;
+                case 8: {
+                    System.out.print("File or directory name: ");
+                    try {
+                        String input = scanner.next("[\\w\\s\\.]+");
+                        int added = simulator.importRegisters(Paths.get(input));
+                        System.out.println("Imported " + added + " phones.");
+                    } catch (InputMismatchException e) {
+                        System.out.println("Given name is invalid. Try again ...");
+                        scanner.next();
+                    } catch (IOException e) {
+                        System.out.println("Import failed: " + e.getMessage());
+                    }
+                } break;
+                case 9: {
+                    System.out.println(simulator.getStatistics());
+                    System.out.printf("Calls per phone: %.2f%n", simulator.getCallsPerPhone());
+                } break;
+                case 10: {
+                    System.out.print("File name: ");
+                    try {
+                        String input = scanner.next("[\\w\\s\\.]+");
+                        System.out.println("Saving snapshot in background ...");
+                        simulator.saveSnapshot(Paths.get(input)).whenComplete((size, e) -> System.out.println(
+                                e == null ? "Snapshot saved, " + size + " bytes." : "Snapshot failed: " + e.getMessage()));
+                    } catch (InputMismatchException e) {
+                        System.out.println("Given name is invalid. Try again ...");
+                        scanner.next();
+                    }
+                } break;
+                case 11: {
+                    System.out.print("File name: ");
+                    try {
+                        String input = scanner.next("[\\w\\s\\.]+");
+                        int restored = simulator.restoreSnapshot(Paths.get(input));
+                        System.out.println("Restored " + restored + " phones.");
+                    } catch (InputMismatchException e) {
+                        System.out.println("Given name is invalid. Try again ...");
+                        scanner.next();
+                    } catch (IOException e) {
+                        System.out.println("Restore failed: " + e.getMessage());
+                    }
+                } break;
+                case 6: {
+                    System.out.print("Phone number: ");
+                    try {
+                        String input = scanner.next("[5-8]\\d{2}\\d{3}\\d{3}");
+                        int id = simulator.phones.indexOf(input);
+                        if (id < 0) {
+                            System.out.println("Phone with given number doesn't exist.");
+                        } else {
+                            System.out.println("ID:" + id + " " + simulator.phones.get(id));
+                        }
+                    } catch (InputMismatchException e) {
+                        System.out.println("Invalid input. Try again ...");
+                        scanner.next();
+                    }
+                } break;
                 default: {
                     System.out.println("Given option doesn't exist. Try again ...");
                 }
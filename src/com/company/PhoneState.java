@@ -0,0 +1,27 @@
+package com.company;
+
+/**
+ * States of the phone call setup state machine.
+ * Phone moves from {@code IDLE} to {@code RINGING} when it is reserved for a call, from {@code RINGING}
+ * to {@code IN_CALL} when the call is accepted and back to {@code IDLE} when the call is rejected or the
+ * conversation ends. {@code RELEASED} is a terminal state of phones which won't take part in any call anymore.
+ */
+public enum PhoneState {
+
+    /**
+     * Phone is free and can be reserved for a new call.
+     */
+    IDLE,
+    /**
+     * Phone has been reserved for call setup and waits for the call to be accepted or rejected.
+     */
+    RINGING,
+    /**
+     * Phone is during the conversation.
+     */
+    IN_CALL,
+    /**
+     * Phone has been released and can't be reserved anymore.
+     */
+    RELEASED
+}
@@ -0,0 +1,234 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bulk exporter which writes registers of many phones to a single file.
+ * Phones are split into chunks formatted in parallel into reusable buffers. Formatted chunks are written
+ * in order by the calling thread; at most a fixed number of chunks is in flight, so fast formatting
+ * waits for slow writing instead of filling the heap.
+ */
+public class RegisterExporter {
+
+    /**
+     * Number of phones formatted by a single task.
+     */
+    private static final int CHUNK_PHONES = 256;
+    /**
+     * Number of chunks in flight per formatting thread.
+     */
+    private static final int CHUNKS_PER_THREAD = 2;
+    /**
+     * Initial capacity of chunk buffers.
+     */
+    private static final int BUFFER_CAPACITY = 64 * 1024;
+
+    /**
+     * Export file formats.
+     */
+    public enum Format {
+        /**
+         * Layout of {@code Phone.saveRegisterToFile}, see {@code example.txt}.
+         */
+        TEXT,
+        /**
+         * Comma-separated values with header line.
+         */
+        CSV,
+        /**
+         * One JSON object per line.
+         */
+        JSON_LINES;
+
+        /**
+         * Chooses format by file name extension: {@code .csv}, {@code .jsonl} or {@code .json}, otherwise text.
+         * @param fileName File name with extension.
+         * @return Export format.
+         */
+        public static Format forFileName(String fileName) {
+            String name = fileName.toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".jsonl") || name.endsWith(".json")) {
+                return JSON_LINES;
+            }
+            return TEXT;
+        }
+    }
+
+    /**
+     * Field {@code format} defines layout of exported file.
+     */
+    private final Format format;
+    /**
+     * Number of formatting threads.
+     */
+    private final int threads;
+
+    /**
+     * Class {@code RegisterExporter} constructor.
+     * @param format Layout of exported file.
+     * @param threads Number of formatting threads.
+     */
+    public RegisterExporter(Format format, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("invalid number of threads " + threads);
+        }
+        this.format = format;
+        this.threads = threads;
+    }
+
+    /**
+     * Exports inbound and outbound registers of all given phones to a file.
+     * @param phones Exported phones.
+     * @param file Destination file, overwritten if it exists.
+     * @return Number of exported phones.
+     * @throws IOException If file can't be written.
+     */
+    public int export(List<Phone> phones, Path file) throws IOException {
+        int inFlight = threads * CHUNKS_PER_THREAD;
+        BlockingQueue<StringBuilder> buffers = new ArrayBlockingQueue<>(inFlight);
+        for (int i = 0; i < inFlight; i++) {
+            buffers.add(new StringBuilder(BUFFER_CAPACITY));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<StringBuilder>> window = new ArrayDeque<>();
+        char[] chars = new char[BUFFER_CAPACITY];
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (format == Format.CSV) {
+                writer.write("owner,direction,number,accepted,available,call_time,conversation_ms\n");
+            }
+            for (int from = 0; from < phones.size(); from += CHUNK_PHONES) {
+                if (window.size() == inFlight) {
+                    chars = write(writer, window.poll(), buffers, chars);
+                }
+                List<Phone> chunk = phones.subList(from, Math.min(from + CHUNK_PHONES, phones.size()));
+                window.add(executor.submit(() -> format(chunk, buffers.take())));
+            }
+            while (!window.isEmpty()) {
+                chars = write(writer, window.poll(), buffers, chars);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("export interrupted", e);
+        } finally {
+            window.forEach(future -> future.cancel(true));
+            executor.shutdownNow();
+        }
+        return phones.size();
+    }
+
+    /**
+     * Waits for formatted chunk, writes it and returns its buffer to the pool.
+     * @param writer File writer.
+     * @param future Formatting task.
+     * @param buffers Pool of chunk buffers.
+     * @param chars Reusable array used to copy buffer content to the writer.
+     * @return Array to be reused for the next chunk, grown if needed.
+     * @throws IOException If chunk can't be formatted or written.
+     * @throws InterruptedException If current thread was interrupted while waiting for the chunk.
+     */
+    private static char[] write(Writer writer, Future<StringBuilder> future, BlockingQueue<StringBuilder> buffers,
+                                char[] chars) throws IOException, InterruptedException {
+        StringBuilder buffer;
+        try {
+            buffer = future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("can't format registers", e.getCause());
+        }
+        if (chars.length < buffer.length()) {
+            chars = new char[buffer.length()];
+        }
+        buffer.getChars(0, buffer.length(), chars, 0);
+        writer.write(chars, 0, buffer.length());
+        buffer.setLength(0);
+        buffers.add(buffer);
+        return chars;
+    }
+
+    /**
+     * Formats registers of a chunk of phones.
+     * @param phones Chunk of phones.
+     * @param buffer Empty buffer from the pool.
+     * @return Buffer with formatted registers.
+     */
+    private StringBuilder format(List<Phone> phones, StringBuilder buffer) {
+        for (Phone phone : phones) {
+            if (format == Format.TEXT) {
+                buffer.append(phone).append('\n').append("[Outbound calls]\n");
+                formatRegister(buffer, phone, phone.outboundRegister(), "outbound");
+                buffer.append('\n').append("[Inbound calls]\n");
+                formatRegister(buffer, phone, phone.inboundRegister(), "inbound");
+                buffer.append('\n');
+            } else {
+                formatRegister(buffer, phone, phone.outboundRegister(), "outbound");
+                formatRegister(buffer, phone, phone.inboundRegister(), "inbound");
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Formats all records of a register.
+     * @param buffer Destination buffer.
+     * @param phone Phone owning the register.
+     * @param register Inbound or outbound register.
+     * @param direction Register name used by CSV and JSON lines formats.
+     */
+    private void formatRegister(StringBuilder buffer, Phone phone, CallRegister register, String direction) {
+        ZoneId zone = register.getZone();
+        PhoneNumber owner = phone.getNumber();
+        register.forEachRecord((number, numberLength, accepted, available, time, conversationMillis) -> {
+            LocalDateTime callDate = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), zone);
+            switch (format) {
+                case TEXT:
+                    buffer.append('{');
+                    PhoneNumber.appendTo(buffer, number, numberLength);
+                    buffer.append(", ").append(accepted ? "Accepted" : "Rejected")
+                            .append(", ").append(available ? "Available" : "Unavailable")
+                            .append(", ");
+                    PhoneRegisterEntry.DATE_TIME_FORMATTER.formatTo(callDate, buffer);
+                    buffer.append(", ").append(Duration.ofMillis(conversationMillis)).append("}\n");
+                    break;
+                case CSV:
+                    owner.appendTo(buffer);
+                    buffer.append(',').append(direction).append(',');
+                    PhoneNumber.appendTo(buffer, number, numberLength);
+                    buffer.append(',').append(accepted).append(',').append(available).append(',');
+                    PhoneRegisterEntry.DATE_TIME_FORMATTER.formatTo(callDate, buffer);
+                    buffer.append(',').append(conversationMillis).append('\n');
+                    break;
+                default:
+                    buffer.append("{\"owner\":\"");
+                    owner.appendTo(buffer);
+                    buffer.append("\",\"direction\":\"").append(direction)
+                            .append("\",\"number\":\"");
+                    PhoneNumber.appendTo(buffer, number, numberLength);
+                    buffer.append("\",\"accepted\":").append(accepted)
+                            .append(",\"available\":").append(available)
+                            .append(",\"callTime\":\"");
+                    PhoneRegisterEntry.DATE_TIME_FORMATTER.formatTo(callDate, buffer);
+                    buffer.append("\",\"conversationMillis\":").append(conversationMillis).append("}\n");
+            }
+        });
+    }
+}
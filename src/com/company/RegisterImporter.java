@@ -0,0 +1,491 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Streaming importer of register files written by {@code Phone.saveRegisterToFile} or exported
+ * with {@code RegisterExporter.Format.TEXT}. Files are read in blocks of characters and every line is
+ * parsed in place, without splitting it into strings. A directory is imported file by file in parallel.
+ */
+public class RegisterImporter {
+
+    /**
+     * Size of the character block read at once.
+     */
+    private static final int BLOCK_CHARS = 64 * 1024;
+    /**
+     * Marker of outbound register section.
+     */
+    private static final String OUTBOUND = "[Outbound calls]";
+    /**
+     * Marker of inbound register section.
+     */
+    private static final String INBOUND = "[Inbound calls]";
+    /**
+     * Prefix of phone header line.
+     */
+    private static final String HEADER = "Phone{";
+
+    /**
+     * Factory which creates phones of imported numbers.
+     */
+    private final Function<PhoneNumber, Phone> phoneFactory;
+    /**
+     * Number of threads importing files of a directory.
+     */
+    private final int threads;
+
+    /**
+     * Class {@code RegisterImporter} constructor.
+     * @param phoneFactory Factory which creates phones of imported numbers, e.g. {@code PhoneSimulator::createPhone}.
+     * @param threads Number of threads importing files of a directory.
+     */
+    public RegisterImporter(Function<PhoneNumber, Phone> phoneFactory, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("invalid number of threads " + threads);
+        }
+        this.phoneFactory = phoneFactory;
+        this.threads = threads;
+    }
+
+    /**
+     * Imports phones from a register file or from all regular files of a directory.
+     * @param path File or directory.
+     * @return Imported phones in order of files and of phones in them.
+     * @throws IOException If a file can't be read or has invalid format.
+     */
+    public List<Phone> importPath(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return importFile(path);
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, Files::isRegularFile)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(files.size(), 1)));
+        try {
+            List<Future<List<Phone>>> futures = new ArrayList<>();
+            for (Path file : files) {
+                futures.add(executor.submit(() -> importFile(file)));
+            }
+            List<Phone> phones = new ArrayList<>();
+            for (Future<List<Phone>> future : futures) {
+                phones.addAll(future.get());
+            }
+            return phones;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("can't import " + path, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("import interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Imports phones from a single register file.
+     * @param file Register file.
+     * @return Imported phones in order of the file.
+     * @throws IOException If file can't be read or has invalid format.
+     */
+    public List<Phone> importFile(Path file) throws IOException {
+        LineParser parser = new LineParser(file);
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            char[] block = new char[BLOCK_CHARS];
+            int start = 0;
+            int end = 0;
+            int read;
+            while ((read = reader.read(block, end, block.length - end)) >= 0) {
+                end += read;
+                int lineStart = 0;
+                for (int i = start; i < end; i++) {
+                    if (block[i] == '\n') {
+                        parser.line(block, lineStart, i);
+                        lineStart = i + 1;
+                    }
+                }
+                int remaining = end - lineStart;
+                if (lineStart == 0 && remaining == block.length) {
+                    block = Arrays.copyOf(block, block.length * 2);
+                } else {
+                    System.arraycopy(block, lineStart, block, 0, remaining);
+                }
+                start = remaining;
+                end = remaining;
+            }
+            if (end > 0) {
+                parser.line(block, 0, end);
+            }
+        }
+        parser.finish();
+        return parser.phones;
+    }
+
+    /**
+     * Parser of register file lines which keeps state between lines of one file.
+     */
+    private final class LineParser {
+
+        /**
+         * Imported file, used in error messages.
+         */
+        private final Path file;
+        /**
+         * Phones imported so far.
+         */
+        private final List<Phone> phones;
+        /**
+         * Phone whose register is being read.
+         */
+        private Phone phone;
+        /**
+         * Register of the current section or null outside of sections.
+         */
+        private CallRegister register;
+        /**
+         * Number of the current line.
+         */
+        private long lineNumber;
+        /**
+         * Position of parser in the current line.
+         */
+        private int position;
+        /**
+         * Records of the current section, newest first as in the file.
+         */
+        private int[] numbers = new int[16];
+        /**
+         * Number lengths of the current section's records.
+         */
+        private byte[] lengths = new byte[16];
+        /**
+         * Flags of the current section's records, bit 0 accepted, bit 1 available.
+         */
+        private byte[] flags = new byte[16];
+        /**
+         * Call times of the current section's records.
+         */
+        private long[] times = new long[16];
+        /**
+         * Conversation times of the current section's records.
+         */
+        private long[] durations = new long[16];
+        /**
+         * Number of records of the current section.
+         */
+        private int count;
+
+        /**
+         * Class {@code LineParser} constructor.
+         * @param file Imported file.
+         */
+        LineParser(Path file) {
+            this.file = file;
+            this.phones = new ArrayList<>();
+        }
+
+        /**
+         * Parses a single line.
+         * @param chars Characters of the block containing the line.
+         * @param from Index of the first character of the line.
+         * @param to Index after the last character of the line.
+         * @throws IOException If line has invalid format.
+         */
+        void line(char[] chars, int from, int to) throws IOException {
+            lineNumber++;
+            if (to > from && chars[to - 1] == '\r') {
+                to--;
+            }
+            if (from == to) {
+                flush();
+            } else if (chars[from] == '{') {
+                if (register == null) {
+                    throw error("register entry outside of register section");
+                }
+                entry(chars, from, to);
+            } else if (matches(chars, from, to, OUTBOUND)) {
+                flush();
+                register = current().outboundRegister();
+            } else if (matches(chars, from, to, INBOUND)) {
+                flush();
+                register = current().inboundRegister();
+            } else if (to - from > HEADER.length() && matches(chars, from, from + HEADER.length(), HEADER)
+                    && chars[to - 1] == '}') {
+                flush();
+                register = null;
+                position = from + HEADER.length();
+                int number = digits(chars, to - 1, PhoneNumber.MAX_DIGITS);
+                if (position != to - 1) {
+                    throw error("phone number has to be followed by '}'");
+                }
+                phone = phoneFactory.apply(PhoneNumber.of(number, to - 1 - from - HEADER.length()));
+                phones.add(phone);
+            } else {
+                throw error("unexpected line");
+            }
+        }
+
+        /**
+         * Adds records of the last section to its register.
+         */
+        void finish() {
+            flush();
+        }
+
+        /**
+         * Parses register entry line, e.g. {@code {652590033, Accepted, Available, 2021-07-24 14:44:20, PT2M}}.
+         * @param chars Characters of the block containing the line.
+         * @param from Index of the first character of the line.
+         * @param to Index after the last character of the line.
+         * @throws IOException If line has invalid format.
+         */
+        private void entry(char[] chars, int from, int to) throws IOException {
+            if (count == numbers.length) {
+                int capacity = count * 2;
+                numbers = Arrays.copyOf(numbers, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                flags = Arrays.copyOf(flags, capacity);
+                times = Arrays.copyOf(times, capacity);
+                durations = Arrays.copyOf(durations, capacity);
+            }
+            if (chars[to - 1] != '}') {
+                throw error("register entry has to end with '}'");
+            }
+            position = from + 1;
+            int start = position;
+            numbers[count] = digits(chars, to, PhoneNumber.MAX_DIGITS);
+            lengths[count] = (byte) (position - start);
+            separator(chars, to);
+            boolean accepted = word(chars, to, "Accepted", "Rejected");
+            separator(chars, to);
+            boolean available = word(chars, to, "Available", "Unavailable");
+            separator(chars, to);
+            flags[count] = (byte) ((accepted ? 1 : 0) | (available ? 2 : 0));
+            times[count] = dateTime(chars, to);
+            separator(chars, to);
+            durations[count] = duration(chars, to - 1);
+            count++;
+        }
+
+        /**
+         * Adds collected records to the register in chronological order.
+         */
+        private void flush() {
+            if (register != null) {
+                for (int i = count - 1; i >= 0; i--) {
+                    register.add(numbers[i], lengths[i], (flags[i] & 1) != 0, (flags[i] & 2) != 0,
+                            times[i], durations[i]);
+                }
+            }
+            count = 0;
+        }
+
+        /**
+         * Returns phone of the current header.
+         * @return Current phone.
+         * @throws IOException If there was no header yet.
+         */
+        private Phone current() throws IOException {
+            if (phone == null) {
+                throw error("register section before phone header");
+            }
+            return phone;
+        }
+
+        /**
+         * Parses unsigned decimal number.
+         * @param chars Line characters.
+         * @param to Index after the last character of the line.
+         * @param maxDigits Maximum number of digits.
+         * @return Parsed value.
+         * @throws IOException If there are no digits or too many of them.
+         */
+        private int digits(char[] chars, int to, int maxDigits) throws IOException {
+            int start = position;
+            int value = 0;
+            while (position < to && chars[position] >= '0' && chars[position] <= '9') {
+                value = value * 10 + chars[position++] - '0';
+            }
+            if (position == start || position - start > maxDigits) {
+                throw error("invalid number");
+            }
+            return value;
+        }
+
+        /**
+         * Skips {@code ", "} separator.
+         * @param chars Line characters.
+         * @param to Index after the last character of the line.
+         * @throws IOException If separator is missing.
+         */
+        private void separator(char[] chars, int to) throws IOException {
+            if (position + 1 >= to || chars[position] != ',' || chars[position + 1] != ' ') {
+                throw error("expected ', '");
+            }
+            position += 2;
+        }
+
+        /**
+         * Parses one of two words.
+         * @param chars Line characters.
+         * @param to Index after the last character of the line.
+         * @param yes Word meaning true.
+         * @param no Word meaning false.
+         * @return True if {@code yes} word was found.
+         * @throws IOException If neither word was found.
+         */
+        private boolean word(char[] chars, int to, String yes, String no) throws IOException {
+            if (matches(chars, position, Math.min(position + yes.length(), to), yes)) {
+                position += yes.length();
+                return true;
+            }
+            if (matches(chars, position, Math.min(position + no.length(), to), no)) {
+                position += no.length();
+                return false;
+            }
+            throw error("expected " + yes + " or " + no);
+        }
+
+        /**
+         * Parses date and time written as {@code yyyy-MM-dd HH:mm:ss} in phone's time zone.
+         * @param chars Line characters.
+         * @param to Index after the last character of the line.
+         * @return Epoch milliseconds.
+         * @throws IOException If date is invalid.
+         */
+        private long dateTime(char[] chars, int to) throws IOException {
+            int year = digits(chars, to, 4);
+            expect(chars, to, '-');
+            int month = digits(chars, to, 2);
+            expect(chars, to, '-');
+            int day = digits(chars, to, 2);
+            expect(chars, to, ' ');
+            int hour = digits(chars, to, 2);
+            expect(chars, to, ':');
+            int minute = digits(chars, to, 2);
+            expect(chars, to, ':');
+            int second = digits(chars, to, 2);
+            ZoneId zone = register.getZone();
+            try {
+                return LocalDateTime.of(year, month, day, hour, minute, second).atZone(zone).toInstant().toEpochMilli();
+            } catch (RuntimeException e) {
+                throw error("invalid date " + e.getMessage());
+            }
+        }
+
+        /**
+         * Parses ISO-8601 duration in {@code PTnHnMn.nS} form produced by {@code Duration.toString}.
+         * Other forms are parsed with {@code Duration.parse}.
+         * @param chars Line characters.
+         * @param to Index after the last character of the duration.
+         * @return Duration in milliseconds.
+         * @throws IOException If duration is invalid.
+         */
+        private long duration(char[] chars, int to) throws IOException {
+            int start = position;
+            if (to - position >= 3 && chars[position] == 'P' && chars[position + 1] == 'T') {
+                position += 2;
+                long millis = 0;
+                boolean valid = true;
+                while (valid && position < to) {
+                    long value = 0;
+                    int digitsStart = position;
+                    while (position < to && chars[position] >= '0' && chars[position] <= '9') {
+                        value = value * 10 + chars[position++] - '0';
+                    }
+                    long fraction = 0;
+                    if (position < to && chars[position] == '.') {
+                        position++;
+                        for (int scale = 100; position < to && chars[position] >= '0' && chars[position] <= '9'; scale /= 10) {
+                            fraction += (chars[position++] - '0') * scale;
+                        }
+                    }
+                    if (position == digitsStart || position == to) {
+                        valid = false;
+                    } else if (chars[position] == 'H') {
+                        millis += value * 3_600_000;
+                    } else if (chars[position] == 'M') {
+                        millis += value * 60_000;
+                    } else if (chars[position] == 'S') {
+                        millis += value * 1000 + fraction;
+                    } else {
+                        valid = false;
+                    }
+                    position++;
+                }
+                if (valid) {
+                    return millis;
+                }
+            }
+            try {
+                return Duration.parse(new String(chars, start, to - start)).toMillis();
+            } catch (RuntimeException e) {
+                throw error("invalid duration");
+            }
+        }
+
+        /**
+         * Skips expected character.
+         * @param chars Line characters.
+         * @param to Index after the last character of the line.
+         * @param expected Expected character.
+         * @throws IOException If character is different.
+         */
+        private void expect(char[] chars, int to, char expected) throws IOException {
+            if (position >= to || chars[position] != expected) {
+                throw error("expected '" + expected + "'");
+            }
+            position++;
+        }
+
+        /**
+         * Creates exception describing invalid line.
+         * @param message Problem description.
+         * @return Exception with file name and line number.
+         */
+        private IOException error(String message) {
+            return new IOException(file + ":" + lineNumber + ": " + message);
+        }
+    }
+
+    /**
+     * Checks if characters are equal to given text.
+     * @param chars Characters.
+     * @param from Index of the first compared character.
+     * @param to Index after the last compared character.
+     * @param text Expected text.
+     * @return True if characters are equal to text.
+     */
+    private static boolean matches(char[] chars, int from, int to, String text) {
+        if (to - from != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (chars[from + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,128 @@
+package com.company;
+
+import java.time.Duration;
+
+/**
+ * Policy which limits number of records kept in a phone register.
+ * Register keeps at most the last {@code maxEntries} records, records not older than {@code maxAge}
+ * and records which fit in {@code maxBytes}. Limits can be combined; the strictest one wins.
+ */
+public final class RetentionPolicy {
+
+    /**
+     * Policy which keeps all records.
+     */
+    public static final RetentionPolicy UNLIMITED = new RetentionPolicy(Integer.MAX_VALUE, null);
+
+    /**
+     * Maximum number of records, including limit derived from byte budget.
+     */
+    private final int maxEntries;
+    /**
+     * Maximum age of records or null if records don't expire.
+     */
+    private final Duration maxAge;
+
+    /**
+     * Class {@code RetentionPolicy} constructor.
+     * @param maxEntries Maximum number of records.
+     * @param maxAge Maximum age of records or null if records don't expire.
+     */
+    private RetentionPolicy(int maxEntries, Duration maxAge) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("invalid maximum number of entries " + maxEntries);
+        }
+        if (maxAge != null && maxAge.isNegative()) {
+            throw new IllegalArgumentException("invalid maximum age " + maxAge);
+        }
+        this.maxEntries = maxEntries;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Creates policy which keeps given number of the newest records.
+     * @param maxEntries Maximum number of records.
+     * @return Retention policy.
+     */
+    public static RetentionPolicy lastEntries(int maxEntries) {
+        return new RetentionPolicy(maxEntries, null);
+    }
+
+    /**
+     * Creates policy which keeps records not older than given age.
+     * @param maxAge Maximum age of records, measured from the newest record.
+     * @return Retention policy.
+     */
+    public static RetentionPolicy maxAge(Duration maxAge) {
+        return new RetentionPolicy(Integer.MAX_VALUE, maxAge);
+    }
+
+    /**
+     * Creates policy which keeps as many newest records as fit in given number of bytes.
+     * @param maxBytes Byte budget of a single register.
+     * @return Retention policy.
+     */
+    public static RetentionPolicy maxBytes(long maxBytes) {
+        return new RetentionPolicy(entriesIn(maxBytes), null);
+    }
+
+    /**
+     * Creates policy with additional limit of number of records.
+     * @param maxEntries Maximum number of records.
+     * @return Retention policy.
+     */
+    public RetentionPolicy withLastEntries(int maxEntries) {
+        return new RetentionPolicy(Math.min(this.maxEntries, maxEntries), maxAge);
+    }
+
+    /**
+     * Creates policy with additional limit of age of records.
+     * @param maxAge Maximum age of records.
+     * @return Retention policy.
+     */
+    public RetentionPolicy withMaxAge(Duration maxAge) {
+        return new RetentionPolicy(maxEntries,
+                this.maxAge == null || maxAge.compareTo(this.maxAge) < 0 ? maxAge : this.maxAge);
+    }
+
+    /**
+     * Creates policy with additional byte budget.
+     * @param maxBytes Byte budget of a single register.
+     * @return Retention policy.
+     */
+    public RetentionPolicy withMaxBytes(long maxBytes) {
+        return withLastEntries(entriesIn(maxBytes));
+    }
+
+    /**
+     * Converts byte budget to number of records.
+     * @param maxBytes Byte budget.
+     * @return Number of records which fit in the budget.
+     */
+    private static int entriesIn(long maxBytes) {
+        return (int) Math.min(maxBytes / CallRegister.RECORD_BYTES, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Maximum number of records getter.
+     * @return Maximum number of records, {@code Integer.MAX_VALUE} if unlimited.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Maximum age getter.
+     * @return Maximum age of records or null if records don't expire.
+     */
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    @Override
+    public String toString() {
+        return "RetentionPolicy{" +
+                (maxEntries == Integer.MAX_VALUE ? "unlimited" : "last " + maxEntries) +
+                (maxAge == null ? "" : ", max age " + maxAge) + '}';
+    }
+}
@@ -0,0 +1,621 @@
+package com.company;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test engine which splits phones into shards, each owned by one single-threaded event loop.
+ * A shard generates calls of its own phones and is the only thread changing state of its phones, so shards
+ * share nothing but lock-free {@code MpscQueue} inboxes and calls between phones of one shard need no
+ * cross-thread communication at all. A call to a phone of another shard is set up with two messages:
+ * <ol>
+ *     <li>caller's shard reserves the caller and sends the request to callee's shard, which reserves
+ *     the callee, records the inbound call and decides the outcome,</li>
+ *     <li>the request travels back and caller's shard confirms the outcome: records the outbound call,
+ *     moves the caller to its final state and notifies listeners.</li>
+ * </ol>
+ * Both phases are the same {@code Phone} methods used by {@code ClusterNode}, given the shard as the scheduler,
+ * so both shards end their side of a conversation with their own timers and ending a call needs no messages.
+ * While the test runs, phones must not be called by other threads.
+ */
+public class ShardedSimulator {
+
+    /**
+     * Number of leading digits used by {@code PREFIX} partitioning.
+     */
+    private static final int PREFIX_DIGITS = 3;
+    /**
+     * Maximum number of calls a shard waits for other shards to answer, so unpaced load doesn't flood inboxes.
+     */
+    private static final int MAX_OUTSTANDING = 1024;
+    /**
+     * Longest time an idle shard sleeps before checking its timers again.
+     */
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    /**
+     * Ways of assigning phones to shards.
+     */
+    public enum Partitioning {
+        /**
+         * Shard is chosen by hash of the whole number, which balances shards.
+         */
+        HASH,
+        /**
+         * Shard is chosen by leading digits of the number, which keeps calls within a prefix on one shard.
+         */
+        PREFIX
+    }
+
+    /**
+     * Field {@code phones} holds all phones taking part in the test.
+     */
+    private final Phone[] phones;
+    /**
+     * Field {@code groups} holds phones split into groups of calling-pattern matrix.
+     */
+    private final Phone[][] groups;
+    /**
+     * Field {@code partitioning} assigns phones to shards.
+     */
+    private final Partitioning partitioning;
+    /**
+     * Field {@code clock} timestamps register records.
+     */
+    private final Clock clock;
+    /**
+     * Field {@code shards} holds event loops by index.
+     */
+    private final Shard[] shards;
+    /**
+     * Field {@code outstanding} counts requests sent to another shard and not confirmed yet.
+     */
+    private final AtomicLong outstanding = new AtomicLong();
+    /**
+     * Field {@code generating} counts shards which still generate calls.
+     */
+    private final AtomicInteger generating = new AtomicInteger();
+
+    /**
+     * Class {@code ShardedSimulator} constructor.
+     * @param phones Phones taking part in the test.
+     * @param shards Number of shards, usually number of cores.
+     * @param partitioning Way of assigning phones to shards.
+     * @param clock Clock used to timestamp register records.
+     */
+    public ShardedSimulator(List<Phone> phones, int shards, Partitioning partitioning, Clock clock) {
+        if (phones.isEmpty()) {
+            throw new IllegalArgumentException("no phones to generate traffic for");
+        }
+        if (shards <= 0) {
+            throw new IllegalArgumentException("invalid number of shards " + shards);
+        }
+        this.phones = phones.toArray(new Phone[0]);
+        this.groups = LoadGenerator.group(this.phones);
+        this.partitioning = partitioning;
+        this.clock = clock;
+        this.shards = new Shard[shards];
+        List<List<Phone>> owned = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            owned.add(new ArrayList<>());
+        }
+        for (Phone phone : this.phones) {
+            owned.get(shardOf(phone.getNumber())).add(phone);
+        }
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(i, owned.get(i).toArray(new Phone[0]));
+        }
+    }
+
+    /**
+     * Finds shard owning phone with given number.
+     * @param number Phone number.
+     * @return Shard index.
+     */
+    int shardOf(PhoneNumber number) {
+        if (partitioning == Partitioning.PREFIX) {
+            int digits = Math.min(PREFIX_DIGITS, number.getLength());
+            int prefix = number.getValue() / (int) Math.pow(10, number.getLength() - digits);
+            return prefix % shards.length;
+        }
+        return Math.floorMod(number.hashCode(), shards.length);
+    }
+
+    /**
+     * Number of phones owned by shards getter.
+     * @return Number of phones of every shard.
+     */
+    public int[] getShardSizes() {
+        int[] sizes = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            sizes[i] = shards[i].owned.length;
+        }
+        return sizes;
+    }
+
+    /**
+     * Generates traffic for given time on all shards and waits until all calls are set up.
+     * Conversations still in progress at the end are handed over to the phones' shared wall-clock scheduler.
+     * @param model Traffic model; its rate is split evenly between shards.
+     * @param duration Test duration.
+     * @param seed Seed of shards' random number generators.
+     * @return Test results.
+     * @throws InterruptedException If current thread was interrupted while waiting for shards.
+     */
+    public LoadGenerator.Report run(TrafficModel model, Duration duration, long seed) throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        generating.set(shards.length);
+        Thread[] threads = new Thread[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            shard.prepare(model, new Random(seed + i));
+            threads[i] = new Thread(() -> shard.loop(start, end), "shard-" + i);
+            shard.thread = threads[i];
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long attempts = 0;
+        long accepted = 0;
+        long rejected = 0;
+        long busy = 0;
+        for (Shard shard : shards) {
+            attempts += shard.attempts;
+            accepted += shard.accepted;
+            rejected += shard.rejected;
+            busy += shard.busy;
+        }
+        return new LoadGenerator.Report(System.nanoTime() - start, attempts, accepted, rejected, busy);
+    }
+
+    /**
+     * Call travelling between caller's and callee's shards.
+     */
+    private static class CallRequest {
+
+        /**
+         * Source phone of the call.
+         */
+        final Phone from;
+        /**
+         * Destination phone of the call.
+         */
+        final Phone to;
+        /**
+         * Flag indicating if destination phone should accept call.
+         */
+        final boolean accept;
+        /**
+         * Conversation duration.
+         */
+        final Duration conversationTime;
+        /**
+         * Call time in epoch milliseconds.
+         */
+        final long time;
+        /**
+         * Setup start time from {@code System.nanoTime}, used when caller has metrics or events need it.
+         */
+        final long start;
+        /**
+         * Outcome decided by callee's shard.
+         */
+        CallOutcome outcome;
+
+        /**
+         * Class {@code CallRequest} constructor.
+         * @param from Source phone of the call.
+         * @param to Destination phone of the call.
+         * @param accept Flag indicating if destination phone should accept call.
+         * @param conversationTime Conversation duration.
+         * @param time Call time in epoch milliseconds.
+         * @param start Setup start time from {@code System.nanoTime}, used when caller has metrics or events need it.
+         */
+        CallRequest(Phone from, Phone to, boolean accept, Duration conversationTime, long time, long start) {
+            this.from = from;
+            this.to = to;
+            this.accept = accept;
+            this.conversationTime = conversationTime;
+            this.time = time;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Single-threaded event loop owning a subset of phones.
+     */
+    private class Shard implements ExpiryScheduler {
+
+        /**
+         * Shard index.
+         */
+        final int index;
+        /**
+         * Phones owned by the shard.
+         */
+        final Phone[] owned;
+        /**
+         * Requests sent to this shard by other shards, new ones and ones coming back for confirmation.
+         */
+        final MpscQueue<CallRequest> inbox = new MpscQueue<>();
+        /**
+         * Thread running the loop.
+         */
+        volatile Thread thread;
+        /**
+         * Flag set while the loop sleeps, so senders know they have to wake it up.
+         */
+        volatile boolean parked;
+        /**
+         * Traffic model of generated calls.
+         */
+        TrafficModel model;
+        /**
+         * Random number generator of generated calls.
+         */
+        Random random;
+        /**
+         * Number of requests sent to other shards and not confirmed yet.
+         */
+        int waiting;
+        /**
+         * Number of call attempts.
+         */
+        long attempts;
+        /**
+         * Number of accepted calls.
+         */
+        long accepted;
+        /**
+         * Number of rejected calls.
+         */
+        long rejected;
+        /**
+         * Number of calls to or from unavailable phones.
+         */
+        long busy;
+        /**
+         * Binary min-heap of timer deadlines in epoch milliseconds.
+         */
+        long[] deadlines = new long[64];
+        /**
+         * Timers expiring at {@code deadlines}.
+         */
+        ShardTimeout[] ending = new ShardTimeout[64];
+        /**
+         * Number of timers in the heap.
+         */
+        int timers;
+
+        /**
+         * Class {@code Shard} constructor.
+         * @param index Shard index.
+         * @param owned Phones owned by the shard.
+         */
+        Shard(int index, Phone[] owned) {
+            this.index = index;
+            this.owned = owned;
+        }
+
+        /**
+         * Resets counters before a test.
+         * @param model Traffic model of generated calls.
+         * @param random Random number generator of generated calls.
+         */
+        void prepare(TrafficModel model, Random random) {
+            this.model = model;
+            this.random = random;
+            attempts = 0;
+            accepted = 0;
+            rejected = 0;
+            busy = 0;
+        }
+
+        /**
+         * Event loop: handles inbox, ends conversations and generates calls until the end of the test,
+         * then keeps serving other shards until no request is outstanding anywhere.
+         * @param start Test start in {@code System.nanoTime()} units.
+         * @param end Test end in {@code System.nanoTime()} units.
+         */
+        void loop(long start, long end) {
+            long next = start;
+            boolean active = owned.length > 0;
+            if (!active) {
+                generating.decrementAndGet();
+            }
+            while (true) {
+                boolean worked = drain();
+                worked |= expire(clock.millis());
+                long now = System.nanoTime();
+                if (active && now >= end) {
+                    active = false;
+                    generating.decrementAndGet();
+                }
+                if (active && now >= next && waiting < MAX_OUTSTANDING) {
+                    generate();
+                    next += model.nextArrivalNanos(random, shards.length);
+                    worked = true;
+                }
+                if (!active && generating.get() == 0 && outstanding.get() == 0) {
+                    break;
+                }
+                if (!worked) {
+                    // waiting for the next arrival, or for other shards when all allowed calls are outstanding
+                    park(active && now < next ? next - now : MAX_PARK_NANOS);
+                }
+            }
+            handOver();
+        }
+
+        /**
+         * Handles all visible requests of the inbox.
+         * @return True if there was any request.
+         */
+        private boolean drain() {
+            boolean worked = false;
+            CallRequest request;
+            while ((request = inbox.poll()) != null) {
+                worked = true;
+                if (request.outcome == null) {
+                    reserve(request);
+                    shards[shardOf(request.from.getNumber())].send(request);
+                } else {
+                    waiting--;
+                    confirm(request);
+                    outstanding.decrementAndGet();
+                }
+            }
+            return worked;
+        }
+
+        /**
+         * Sends request to this shard and wakes it up if it sleeps.
+         * @param request Call request.
+         */
+        void send(CallRequest request) {
+            inbox.offer(request);
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * Sleeps until woken up by a sender or until given time elapses. The inbox is checked again after
+         * the flag is set, so a request sent before the sender saw the flag isn't left waiting for the timeout.
+         * @param nanos Longest sleep time.
+         */
+        private void park(long nanos) {
+            parked = true;
+            if (!inbox.isEmpty()) {
+                parked = false;
+                return;
+            }
+            long sleep = Math.min(Math.max(nanos, 0), MAX_PARK_NANOS);
+            if (timers > 0) {
+                sleep = Math.min(sleep, Math.max(deadlines[0] - clock.millis(), 0) * 1_000_000);
+            }
+            LockSupport.parkNanos(this, sleep);
+            parked = false;
+        }
+
+        /**
+         * Starts a call from a random owned phone: reserves the caller and passes request to callee's shard.
+         */
+        private void generate() {
+            Phone from = owned[random.nextInt(owned.length)];
+            Phone to = destination(from);
+            boolean accept = model.nextAccept(random);
+            Duration conversationTime = accept ? model.nextHoldingTime(random) : Duration.ZERO;
+            attempts++;
+            long start = from.setupStart();
+            if (!from.beginCall(to, accept, conversationTime, start)) {
+                busy++;
+                return;
+            }
+            CallRequest request = new CallRequest(from, to, accept, conversationTime, clock.millis(), start);
+            Shard target = shards[shardOf(to.getNumber())];
+            if (target == this) {
+                reserve(request);
+                confirm(request);
+            } else {
+                waiting++;
+                outstanding.incrementAndGet();
+                target.send(request);
+            }
+        }
+
+        /**
+         * First phase run by callee's shard: reserves callee, records inbound call and decides the outcome.
+         * @param request Call request.
+         */
+        private void reserve(CallRequest request) {
+            request.outcome = request.to.answerCall(request.from.getNumber(), request.accept,
+                    request.conversationTime, request.time, this);
+        }
+
+        /**
+         * Second phase run by caller's shard: records outbound call, moves caller to its final state
+         * and notifies listeners.
+         * @param request Call request with outcome decided by callee's shard.
+         */
+        private void confirm(CallRequest request) {
+            CallOutcome outcome = request.from.completeCall(request.to, request.outcome, request.accept,
+                    request.conversationTime, request.time, request.start, this);
+            switch (outcome) {
+                case ACCEPTED:
+                    accepted++;
+                    break;
+                case REJECTED:
+                    rejected++;
+                    break;
+                default:
+                    busy++;
+            }
+        }
+
+        /**
+         * Draws destination phone using calling-pattern matrix. Falls back to any phone if the drawn group is empty.
+         * @param from Calling phone.
+         * @return Destination phone.
+         */
+        private Phone destination(Phone from) {
+            int fromGroup = TrafficModel.groupOf(from.getNumber());
+            if (fromGroup >= 0) {
+                Phone[] group = groups[model.nextDestinationGroup(random, fromGroup)];
+                if (group.length > 0) {
+                    return group[random.nextInt(group.length)];
+                }
+            }
+            return phones[random.nextInt(phones.length)];
+        }
+
+        /**
+         * Adds timer to the heap. Must be called by the shard's thread, which runs the task when delay expires.
+         * @param task Task to be run when delay expires.
+         * @param delay Time after which task is run.
+         * @return Handle that allows to cancel the task.
+         */
+        @Override
+        public Timeout schedule(Runnable task, Duration delay) {
+            if (timers == deadlines.length) {
+                deadlines = Arrays.copyOf(deadlines, timers * 2);
+                ending = Arrays.copyOf(ending, timers * 2);
+            }
+            ShardTimeout timeout = new ShardTimeout(task);
+            long deadline = clock.millis() + delay.toMillis();
+            int i = timers++;
+            while (i > 0 && deadlines[(i - 1) >>> 1] > deadline) {
+                int parent = (i - 1) >>> 1;
+                deadlines[i] = deadlines[parent];
+                ending[i] = ending[parent];
+                i = parent;
+            }
+            deadlines[i] = deadline;
+            ending[i] = timeout;
+            return timeout;
+        }
+
+        /**
+         * Runs timers whose time elapsed.
+         * @param now Current time in epoch milliseconds.
+         * @return True if any timer expired.
+         */
+        private boolean expire(long now) {
+            boolean worked = false;
+            while (timers > 0 && deadlines[0] <= now) {
+                ShardTimeout timeout = ending[0];
+                removeFirst();
+                timeout.run();
+                worked = true;
+            }
+            return worked;
+        }
+
+        /**
+         * Removes the earliest timer from the heap.
+         */
+        private void removeFirst() {
+            int last = --timers;
+            long deadline = deadlines[last];
+            ShardTimeout timeout = ending[last];
+            ending[last] = null;
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= last) {
+                    break;
+                }
+                if (child + 1 < last && deadlines[child + 1] < deadlines[child]) {
+                    child++;
+                }
+                if (deadlines[child] >= deadline) {
+                    break;
+                }
+                deadlines[i] = deadlines[child];
+                ending[i] = ending[child];
+                i = child;
+            }
+            if (last > 0) {
+                deadlines[i] = deadline;
+                ending[i] = timeout;
+            }
+        }
+
+        /**
+         * Hands timers still pending over to the phones' shared wall-clock scheduler.
+         */
+        private void handOver() {
+            long now = clock.millis();
+            while (timers > 0) {
+                ShardTimeout timeout = ending[0];
+                long delay = Math.max(deadlines[0] - now, 0);
+                removeFirst();
+                if (!timeout.isCancelled()) {
+                    Phone.CONVERSATIONS.schedule(timeout::run, Duration.ofMillis(delay));
+                }
+            }
+        }
+    }
+
+    /**
+     * Timer of a shard, touched only by the shard's thread until it's handed over.
+     */
+    private static class ShardTimeout implements ExpiryScheduler.Timeout {
+
+        /**
+         * Task run when timer expires.
+         */
+        final Runnable task;
+        /**
+         * Flag set when timer was cancelled.
+         */
+        boolean cancelled;
+        /**
+         * Flag set when task was run.
+         */
+        boolean expired;
+
+        /**
+         * Class {@code ShardTimeout} constructor.
+         * @param task Task run when timer expires.
+         */
+        ShardTimeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Runs the task unless timer was cancelled.
+         */
+        void run() {
+            if (!cancelled && !expired) {
+                expired = true;
+                task.run();
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            if (cancelled || expired) {
+                return false;
+            }
+            cancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.company;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Discrete-event simulation engine. Call-start and call-end events are kept in a priority queue and run
+ * in order of their simulated time, moving the engine's clock forward without waiting for real time to pass.
+ * Events with equal time are run in order in which they were scheduled, so a run with a fixed seed is deterministic.
+ * Engine isn't thread-safe, all events have to be scheduled and run by a single thread.
+ */
+public class SimulationEngine implements ExpiryScheduler {
+
+    /**
+     * Queue of events ordered by time and scheduling order.
+     */
+    private final PriorityQueue<Event> events;
+    /**
+     * Clock which shows simulated time of this engine.
+     */
+    private final VirtualClock clock;
+    /**
+     * Random number generator seeded with simulation seed.
+     */
+    private final Random random;
+    /**
+     * Current simulated time in milliseconds since epoch.
+     */
+    private long now;
+    /**
+     * Sequence number given to the next scheduled event.
+     */
+    private long sequence;
+    /**
+     * Number of events run so far.
+     */
+    private long processed;
+
+    /**
+     * Class {@code SimulationEngine} constructor.
+     * @param start Simulated time at which simulation starts.
+     * @param zone Time zone of engine's clock.
+     * @param seed Seed of engine's random number generator.
+     */
+    public SimulationEngine(Instant start, ZoneId zone, long seed) {
+        this.events = new PriorityQueue<>();
+        this.clock = new VirtualClock(this, zone);
+        this.random = new Random(seed);
+        this.now = start.toEpochMilli();
+    }
+
+    /**
+     * Class {@code SimulationEngine} constructor. Simulation starts at current wall-clock time in default time zone.
+     * @param seed Seed of engine's random number generator.
+     */
+    public SimulationEngine(long seed) {
+        this(Instant.now(), ZoneId.systemDefault(), seed);
+    }
+
+    @Override
+    public Timeout schedule(Runnable task, Duration delay) {
+        return scheduleAt(now + Math.max(delay.toMillis(), 0), task);
+    }
+
+    /**
+     * Schedules task to be run at given simulated time. Time in the past is treated as current time.
+     * @param time Simulated time in milliseconds since epoch.
+     * @param task Task to be run.
+     * @return Handle that allows to cancel the task.
+     */
+    public Timeout scheduleAt(long time, Runnable task) {
+        Event event = new Event(Math.max(time, now), sequence++, task);
+        events.add(event);
+        return event;
+    }
+
+    /**
+     * Schedules call-start event which makes {@code from} phone call {@code to} phone after given delay.
+     * Call-end event is scheduled by the phone itself when call is accepted.
+     * @param delay Time after which call starts.
+     * @param from Source phone.
+     * @param to Destination phone.
+     * @param accept Flag indicating if destination phone should accept call.
+     * @param conversationTime Conversation duration.
+     * @return Handle that allows to cancel the call.
+     */
+    public Timeout scheduleCall(Duration delay, Phone from, Phone to, boolean accept, Duration conversationTime) {
+        return schedule(() -> from.tryCall(to, accept, conversationTime), delay);
+    }
+
+    /**
+     * Schedules calls between phones arriving as described by a traffic model until given simulated time.
+     * Every arrival event makes one call with {@code Phone.tryCall} and schedules the next arrival, so traffic
+     * takes no memory beyond a single pending event. Callers, destinations, acceptance and conversation times
+     * are drawn from the engine's seeded random number generator, so the traffic is reproducible.
+     * @param model Traffic model with a positive arrival rate.
+     * @param phones Phones calling each other.
+     * @param end Simulated time of the last arrival.
+     * @return Counters of the scheduled traffic, updated while the engine runs.
+     */
+    public Traffic scheduleTraffic(TrafficModel model, List<Phone> phones, Instant end) {
+        if (model.getArrivalRate() <= 0) {
+            throw new IllegalArgumentException("virtual traffic needs a positive arrival rate");
+        }
+        if (phones.isEmpty()) {
+            throw new IllegalArgumentException("no phones to generate traffic for");
+        }
+        Traffic traffic = new Traffic(model, phones.toArray(new Phone[0]), now, end.toEpochMilli());
+        traffic.scheduleNext();
+        return traffic;
+    }
+
+    /**
+     * Runs next event and moves the clock to its time.
+     * @return False if there were no events to run.
+     */
+    public boolean step() {
+        Event event = events.poll();
+        if (event == null) {
+            return false;
+        }
+        now = event.time;
+        if (!event.cancelled && !event.expired) {
+            event.expired = true;
+            processed++;
+            event.task.run();
+        }
+        return true;
+    }
+
+    /**
+     * Runs all events, including ones scheduled by other events, until the queue is empty.
+     */
+    public void run() {
+        while (step()) {
+            // all work is done by events
+        }
+    }
+
+    /**
+     * Runs events scheduled up to given simulated time and moves the clock to that time.
+     * @param end Simulated time at which simulation stops.
+     */
+    public void runUntil(Instant end) {
+        long endMillis = end.toEpochMilli();
+        Event event;
+        while ((event = events.peek()) != null && event.time <= endMillis) {
+            step();
+        }
+        now = Math.max(now, endMillis);
+    }
+
+    /**
+     * Runs events scheduled within given simulated period from current time.
+     * @param period Simulated period.
+     */
+    public void runFor(Duration period) {
+        runUntil(Instant.ofEpochMilli(now).plus(period));
+    }
+
+    /**
+     * Current simulated time getter.
+     * @return Simulated time in milliseconds since epoch.
+     */
+    public long now() {
+        return now;
+    }
+
+    /**
+     * Engine's clock getter.
+     * @return Clock which shows simulated time.
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Engine's random number generator getter.
+     * @return Random number generator seeded with simulation seed.
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * Getter of number of events run so far.
+     * @return Number of run events, without cancelled ones.
+     */
+    public long getProcessedEvents() {
+        return processed;
+    }
+
+    /**
+     * Getter of number of events waiting in the queue.
+     * @return Number of scheduled events, including cancelled ones not yet removed.
+     */
+    public int getPendingEvents() {
+        return events.size();
+    }
+
+    /**
+     * Traffic source which makes calls at arrival times of a {@code TrafficModel} and counts their outcomes.
+     */
+    public final class Traffic {
+
+        /**
+         * Traffic model.
+         */
+        private final TrafficModel model;
+        /**
+         * Phones calling each other.
+         */
+        private final Phone[] phones;
+        /**
+         * Phones split into groups of calling-pattern matrix.
+         */
+        private final Phone[][] groups;
+        /**
+         * Simulated time of the first arrival in milliseconds since epoch.
+         */
+        private final long start;
+        /**
+         * Simulated time of the last arrival in milliseconds since epoch.
+         */
+        private final long end;
+        /**
+         * Time of the next arrival in nanoseconds since {@code start}, kept in nanoseconds so arrivals
+         * more frequent than a millisecond don't accumulate rounding errors.
+         */
+        private long nextNanos;
+        /**
+         * Number of call attempts.
+         */
+        private long attempts;
+        /**
+         * Number of accepted calls.
+         */
+        private long accepted;
+        /**
+         * Number of calls rejected by destination phone.
+         */
+        private long rejected;
+        /**
+         * Number of calls which failed because caller or destination phone was unavailable.
+         */
+        private long busy;
+
+        /**
+         * Class {@code Traffic} constructor.
+         * @param model Traffic model.
+         * @param phones Phones calling each other.
+         * @param start Simulated time of the first arrival.
+         * @param end Simulated time of the last arrival.
+         */
+        private Traffic(TrafficModel model, Phone[] phones, long start, long end) {
+            this.model = model;
+            this.phones = phones;
+            this.groups = LoadGenerator.group(phones);
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Schedules the next arrival unless it falls after the end of the traffic.
+         */
+        private void scheduleNext() {
+            nextNanos += model.nextArrivalNanos(random, 1);
+            long time = start + nextNanos / 1_000_000;
+            if (time <= end) {
+                scheduleAt(time, this::arrive);
+            }
+        }
+
+        /**
+         * Arrival event which makes a call and schedules the next arrival.
+         */
+        private void arrive() {
+            Phone from = phones[random.nextInt(phones.length)];
+            Phone to = LoadGenerator.destination(model, random, groups, phones, from);
+            boolean accept = model.nextAccept(random);
+            attempts++;
+            switch (from.tryCall(to, accept, accept ? model.nextHoldingTime(random) : Duration.ZERO)) {
+                case ACCEPTED:
+                    accepted++;
+                    break;
+                case REJECTED:
+                    rejected++;
+                    break;
+                default:
+                    busy++;
+            }
+            scheduleNext();
+        }
+
+        /**
+         * Attempts getter.
+         * @return Number of call attempts made so far.
+         */
+        public long getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * Accepted calls getter.
+         * @return Number of accepted calls.
+         */
+        public long getAcceptedCalls() {
+            return accepted;
+        }
+
+        /**
+         * Rejected calls getter.
+         * @return Number of calls rejected by destination phone.
+         */
+        public long getRejectedCalls() {
+            return rejected;
+        }
+
+        /**
+         * Busy calls getter.
+         * @return Number of calls to or from unavailable phones.
+         */
+        public long getBusyCalls() {
+            return busy;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Attempts: %d (accepted %d, rejected %d, busy %d)", attempts, accepted, rejected,
+                    busy);
+        }
+    }
+
+    /**
+     * Event scheduled in the engine.
+     */
+    private static final class Event implements Timeout, Comparable<Event> {
+
+        /**
+         * Simulated time of the event.
+         */
+        private final long time;
+        /**
+         * Scheduling order used to break ties between events with equal time.
+         */
+        private final long sequence;
+        /**
+         * Task to be run.
+         */
+        private final Runnable task;
+        /**
+         * Flag set when event was cancelled.
+         */
+        private boolean cancelled;
+        /**
+         * Flag set when event was run.
+         */
+        private boolean expired;
+
+        /**
+         * Class {@code Event} constructor.
+         * @param time Simulated time of the event.
+         * @param sequence Scheduling order.
+         * @param task Task to be run.
+         */
+        Event(long time, long sequence, Runnable task) {
+            this.time = time;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (cancelled || expired) {
+                return false;
+            }
+            cancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int result = Long.compare(time, other.time);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
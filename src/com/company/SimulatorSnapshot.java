@@ -0,0 +1,330 @@
+package com.company;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Binary checkpoint of all simulated phones: their numbers, states, conversations in progress and registers.
+ * <p>
+ * Phones are split into blocks encoded in parallel and written in order; an index of blocks at the end of
+ * the file lets restore map and decode blocks in parallel. Every register is copied under its own lock
+ * only for the time of copying its columns, so simulation goes on while a snapshot is written. Phones are
+ * copied one after another, so a call set up during writing may be recorded only by one of its phones.
+ * <p>
+ * Layout, big-endian: header {@code int magic, int version, long phones, int blocks, long indexOffset},
+ * blocks of phone records and index of {@code long offset, long length} per block. Phone record is
+ * {@code int length, int number, byte numberLength, byte state, long conversationEnd} followed by outbound
+ * and inbound registers written by {@code CallRegister.writeTo}. The file is written under a temporary
+ * name and moved in place when complete, so a crash never leaves a torn snapshot.
+ */
+public class SimulatorSnapshot {
+
+    /**
+     * Marker at the beginning of snapshot files, {@code PSNP} in ASCII.
+     */
+    private static final int MAGIC = 0x50534E50;
+    /**
+     * Version of the file layout.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Size of the file header.
+     */
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 8;
+    /**
+     * Size of an index entry.
+     */
+    private static final int INDEX_ENTRY_BYTES = 8 + 8;
+    /**
+     * Size of a phone record without its registers.
+     */
+    private static final int PHONE_BYTES = 4 + 4 + 1 + 1 + 8;
+    /**
+     * Number of phones of a single block.
+     */
+    private static final int BLOCK_PHONES = 64 * 1024;
+    /**
+     * Number of blocks in flight per encoding thread.
+     */
+    private static final int BLOCKS_PER_THREAD = 2;
+    /**
+     * Initial capacity of block buffers.
+     */
+    private static final int BUFFER_CAPACITY = 1024 * 1024;
+
+    /**
+     * Field {@code threads} holds number of threads encoding or decoding blocks.
+     */
+    private final int threads;
+
+    /**
+     * Class {@code SimulatorSnapshot} constructor.
+     * @param threads Number of threads encoding or decoding blocks.
+     */
+    public SimulatorSnapshot(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("invalid number of threads " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Writes snapshot of given phones.
+     * @param phones Phones in order of their IDs.
+     * @param file Snapshot file, replaced when the new snapshot is complete; the temporary file written
+     *             next to it is deleted if writing fails.
+     * @return Size of the snapshot in bytes.
+     * @throws IOException If file can't be written.
+     */
+    public long write(List<Phone> phones, Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        int blocks = (phones.size() + BLOCK_PHONES - 1) / BLOCK_PHONES;
+        int inFlight = threads * BLOCKS_PER_THREAD;
+        BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(inFlight);
+        for (int i = 0; i < inFlight; i++) {
+            buffers.add(ByteBuffer.allocate(BUFFER_CAPACITY));
+        }
+        ByteBuffer index = ByteBuffer.allocate(blocks * INDEX_ENTRY_BYTES);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<ByteBuffer>> window = new ArrayDeque<>();
+        long size;
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.position(HEADER_BYTES);
+                for (int from = 0; from < phones.size(); from += BLOCK_PHONES) {
+                    if (window.size() == inFlight) {
+                        write(channel, window.poll(), buffers, index);
+                    }
+                    List<Phone> block = phones.subList(from, Math.min(from + BLOCK_PHONES, phones.size()));
+                    window.add(executor.submit(() -> encode(block, buffers.take())));
+                }
+                while (!window.isEmpty()) {
+                    write(channel, window.poll(), buffers, index);
+                }
+                long indexOffset = channel.position();
+                index.flip();
+                writeFully(channel, index);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).putLong(phones.size()).putInt(blocks).putLong(indexOffset)
+                        .flip();
+                size = channel.position();
+                channel.position(0);
+                writeFully(channel, header);
+                channel.force(false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("snapshot interrupted", e);
+            } finally {
+                window.forEach(future -> future.cancel(true));
+                executor.shutdownNow();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        return size;
+    }
+
+    /**
+     * Reads snapshot and recreates its phones with their states and registers.
+     * Blocks are memory-mapped and decoded in parallel.
+     * @param file Snapshot file.
+     * @param factory Creates phone with given number, called from many threads at once.
+     * @return Restored phones in order of their IDs.
+     * @throws IOException If file can't be read or isn't a valid snapshot.
+     */
+    public Phone[] read(Path file, Function<PhoneNumber, Phone> factory) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException(file + ": not a snapshot");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException(file + ": not a snapshot");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + ": unsupported snapshot version " + version);
+            }
+            long count = header.getLong();
+            int blocks = header.getInt();
+            long indexOffset = header.getLong();
+            if (count < 0 || count > Integer.MAX_VALUE || blocks != (count + BLOCK_PHONES - 1) / BLOCK_PHONES
+                    || indexOffset < HEADER_BYTES || indexOffset + (long) blocks * INDEX_ENTRY_BYTES != fileSize) {
+                throw new IOException(file + ": corrupted snapshot header");
+            }
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) blocks * INDEX_ENTRY_BYTES);
+            Phone[] phones = new Phone[(int) count];
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(blocks, 1)));
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int block = 0; block < blocks; block++) {
+                    long offset = index.getLong();
+                    long length = index.getLong();
+                    if (offset < HEADER_BYTES || length < 0 || length > Integer.MAX_VALUE || offset + length > indexOffset) {
+                        throw new IOException(file + ": corrupted index of block " + block);
+                    }
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                    int from = block * BLOCK_PHONES;
+                    int to = (int) Math.min(from + BLOCK_PHONES, count);
+                    futures.add(executor.submit(() -> {
+                        decode(buffer, phones, from, to, factory, file);
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("can't restore " + file, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("restore interrupted", e);
+            } finally {
+                executor.shutdownNow();
+            }
+            return phones;
+        }
+    }
+
+    /**
+     * Encodes a block of phones.
+     * @param phones Phones of the block.
+     * @param buffer Empty buffer from the pool.
+     * @return Buffer with encoded phones ready to be written, grown if needed.
+     */
+    private static ByteBuffer encode(List<Phone> phones, ByteBuffer buffer) {
+        for (Phone phone : phones) {
+            while (true) {
+                int start = buffer.position();
+                if (buffer.remaining() >= PHONE_BYTES) {
+                    PhoneNumber number = phone.getNumber();
+                    PhoneState state = phone.getState();
+                    buffer.putInt(0).putInt(number.getValue()).put((byte) number.getLength())
+                            .put((byte) state.ordinal()).putLong(phone.conversationEnd());
+                    if (phone.outboundRegister().writeTo(buffer) && phone.inboundRegister().writeTo(buffer)) {
+                        buffer.putInt(start, buffer.position() - start - 4);
+                        break;
+                    }
+                }
+                buffer.position(start);
+                buffer = grow(buffer, PHONE_BYTES + 8 + (phone.outboundRegister().size() +
+                        phone.inboundRegister().size()) * CallRegister.RECORD_BYTES);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Creates a larger buffer with content of the given one.
+     * @param buffer Buffer in write mode.
+     * @param needed Number of bytes which have to fit after the current position.
+     * @return New buffer in write mode.
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + needed * 2);
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    /**
+     * Decodes a block of phones.
+     * @param buffer Mapped block.
+     * @param phones Destination array of all restored phones.
+     * @param from Index of the first phone of the block.
+     * @param to Index after the last phone of the block.
+     * @param factory Creates phone with given number.
+     * @param file Snapshot file, used in error messages.
+     * @throws IOException If block is corrupted.
+     */
+    private static void decode(ByteBuffer buffer, Phone[] phones, int from, int to,
+                               Function<PhoneNumber, Phone> factory, Path file) throws IOException {
+        PhoneState[] states = PhoneState.values();
+        try {
+            for (int i = from; i < to; i++) {
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                int value = buffer.getInt();
+                int numberLength = buffer.get();
+                int state = buffer.get();
+                long conversationEnd = buffer.getLong();
+                Phone phone = factory.apply(PhoneNumber.of(value, numberLength));
+                phone.outboundRegister().readFrom(buffer);
+                phone.inboundRegister().readFrom(buffer);
+                if (buffer.position() != end) {
+                    throw new IOException(file + ": invalid length of phone record " + i);
+                }
+                phone.restore(states[state], conversationEnd);
+                phones[i] = phone;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException(file + ": corrupted block of phones from " + from, e);
+        }
+    }
+
+    /**
+     * Waits for encoded block, writes it, records it in the index and returns its buffer to the pool.
+     * @param channel Snapshot file channel.
+     * @param future Encoding task.
+     * @param buffers Pool of block buffers.
+     * @param index Index of written blocks.
+     * @throws IOException If block can't be encoded or written.
+     * @throws InterruptedException If current thread was interrupted while waiting for the block.
+     */
+    private static void write(FileChannel channel, Future<ByteBuffer> future, BlockingQueue<ByteBuffer> buffers,
+                              ByteBuffer index) throws IOException, InterruptedException {
+        ByteBuffer buffer;
+        try {
+            buffer = future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("can't encode phones", e.getCause());
+        }
+        index.putLong(channel.position()).putLong(buffer.remaining());
+        writeFully(channel, buffer);
+        buffer.clear();
+        buffers.add(buffer);
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer.
+     * @param channel File channel.
+     * @param buffer Buffer in read mode.
+     * @throws IOException If file can't be written.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.company;
+
+/**
+ * Destination of records evicted from phone registers by their {@code RetentionPolicy}.
+ */
+public interface SpillSink {
+
+    /**
+     * Sink which drops evicted records.
+     */
+    SpillSink DISCARD = (phone, inbound, entry) -> { };
+
+    /**
+     * Receives record evicted from a phone register. Called while the register is locked, so it should be fast.
+     * @param phone Phone owning the register.
+     * @param inbound True if record comes from inbound register or false if from outbound one.
+     * @param entry Evicted record.
+     */
+    void spill(Phone phone, boolean inbound, PhoneRegisterEntry entry);
+}
@@ -0,0 +1,335 @@
+package com.company;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hashed timer wheel which runs all scheduled tasks on a single daemon thread.
+ * Scheduling and cancellation are O(1): new tasks and cancellations are passed to the worker thread through
+ * lock-free queues and the worker hashes tasks into wheel buckets by their deadline tick.
+ * Tasks are run with tick precision, so they may be run up to one tick later than requested.
+ */
+public class TimerWheel implements ExpiryScheduler {
+
+    /**
+     * Maximum number of newly scheduled tasks moved to the wheel during one tick.
+     * It keeps the worker from starving expired buckets when tasks are scheduled faster than they expire.
+     */
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    /**
+     * Field {@code tickNanos} defines duration of a single wheel tick.
+     */
+    private final long tickNanos;
+    /**
+     * Field {@code wheel} stores buckets of scheduled tasks. Its length is a power of two.
+     */
+    private final Bucket[] wheel;
+    /**
+     * Field {@code mask} is used to hash ticks into {@code wheel} indexes.
+     */
+    private final int mask;
+    /**
+     * Queue of tasks scheduled but not yet moved to the wheel.
+     */
+    private final Queue<WheelTimeout> pending;
+    /**
+     * Queue of cancelled tasks which have to be unlinked from their buckets.
+     */
+    private final Queue<WheelTimeout> cancelled;
+    /**
+     * Flag {@code started} makes sure that only one worker thread is started.
+     */
+    private final AtomicBoolean started;
+    /**
+     * Field {@code startTime} stores {@code System.nanoTime()} value at which worker thread started.
+     */
+    private volatile long startTime;
+    /**
+     * Field {@code tick} counts ticks processed by the worker thread.
+     */
+    private long tick;
+
+    /**
+     * Class {@code TimerWheel} constructor.
+     * @param tickDuration Duration of a single tick.
+     * @param ticksPerWheel Number of buckets, rounded up to a power of two.
+     */
+    public TimerWheel(Duration tickDuration, int ticksPerWheel) {
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException("invalid tick duration " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("invalid ticks per wheel " + ticksPerWheel);
+        }
+        int length = Integer.highestOneBit(ticksPerWheel);
+        if (length < ticksPerWheel) {
+            length <<= 1;
+        }
+        this.tickNanos = tickDuration.toNanos();
+        this.wheel = new Bucket[length];
+        for (int i = 0; i < length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = length - 1;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.cancelled = new ConcurrentLinkedQueue<>();
+        this.started = new AtomicBoolean();
+    }
+
+    @Override
+    public Timeout schedule(Runnable task, Duration delay) {
+        start();
+        long deadline = System.nanoTime() - startTime + Math.max(delay.toNanos(), 0);
+        WheelTimeout timeout = new WheelTimeout(this, task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Starts worker thread if it hasn't been started yet.
+     */
+    private void start() {
+        if (started.compareAndSet(false, true)) {
+            startTime = System.nanoTime();
+            Thread worker = new Thread(this::work, "timer-wheel");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        while (startTime == 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Worker thread loop. Waits for every tick, moves new tasks to the wheel and runs expired ones.
+     */
+    private void work() {
+        while (true) {
+            waitForNextTick();
+            removeCancelled();
+            transferPending();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    /**
+     * Sleeps until the end of current tick. The worker has no shutdown, so interrupts, e.g. from a task, are
+     * ignored; keeping the flag set would make every later sleep return at once and expire tasks too early.
+     */
+    private void waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            long sleepMillis = (deadline - now + 999_999) / 1_000_000;
+            if (sleepMillis <= 0) {
+                return;
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                // keep sleeping until the deadline
+            }
+        }
+    }
+
+    /**
+     * Moves newly scheduled tasks from {@code pending} queue to their buckets.
+     */
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            WheelTimeout timeout = pending.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state != WheelTimeout.ST_INIT) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * Unlinks cancelled tasks from their buckets.
+     */
+    private void removeCancelled() {
+        WheelTimeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of tasks hashed into the same wheel slot. Used only by the worker thread.
+     */
+    private static final class Bucket {
+
+        /**
+         * First task in the bucket.
+         */
+        private WheelTimeout head;
+        /**
+         * Last task in the bucket.
+         */
+        private WheelTimeout tail;
+
+        /**
+         * Appends task at the end of the bucket.
+         * @param timeout Task to be added.
+         */
+        void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * Runs all tasks whose rounds elapsed and decrements rounds of the others.
+         */
+        void expire() {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        /**
+         * Unlinks task from the bucket.
+         * @param timeout Task to be removed.
+         */
+        void remove(WheelTimeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    /**
+     * Task scheduled in the wheel.
+     */
+    private static final class WheelTimeout implements Timeout {
+
+        /**
+         * Task is waiting to be run.
+         */
+        private static final int ST_INIT = 0;
+        /**
+         * Task has been cancelled.
+         */
+        private static final int ST_CANCELLED = 1;
+        /**
+         * Task has been run.
+         */
+        private static final int ST_EXPIRED = 2;
+
+        /**
+         * Updater used for compare-and-set of {@code state} field without additional atomic object.
+         */
+        private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+        /**
+         * Wheel that owns this task.
+         */
+        private final TimerWheel owner;
+        /**
+         * Task to be run.
+         */
+        private final Runnable task;
+        /**
+         * Deadline relative to {@code startTime} in nanoseconds.
+         */
+        private final long deadline;
+        /**
+         * Number of full wheel rounds left before task expires.
+         */
+        private long remainingRounds;
+        /**
+         * Current task state.
+         */
+        private volatile int state;
+        /**
+         * Bucket containing this task. Used only by the worker thread.
+         */
+        private Bucket bucket;
+        /**
+         * Previous task in the bucket.
+         */
+        private WheelTimeout prev;
+        /**
+         * Next task in the bucket.
+         */
+        private WheelTimeout next;
+
+        /**
+         * Class {@code WheelTimeout} constructor.
+         * @param owner Wheel that owns this task.
+         * @param task Task to be run.
+         * @param deadline Deadline relative to {@code startTime} in nanoseconds.
+         */
+        WheelTimeout(TimerWheel owner, Runnable task, long deadline) {
+            this.owner = owner;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            owner.cancelled.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        /**
+         * Runs the task unless it has been cancelled.
+         */
+        void expire() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package com.company;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Replays a {@code CallTrace} against phones of a directory, so different builds of the simulator can be
+ * compared on identical workloads. Requests are replayed at their original pace, faster by a chosen factor,
+ * as fast as possible, or on the virtual clock of a {@code SimulationEngine}. Phones with numbers of the trace
+ * missing in the directory can be created before the replay, so a trace replays without the seed of its run.
+ * <p>
+ * Worker threads share the memory-mapped trace. Before the replay starts, a single pass splits the records
+ * among workers by hash of the caller's number and notes for every record the last earlier records of its
+ * caller and of its callee. A worker makes its requests in trace order and waits until those earlier records
+ * of other workers are replayed, so requests of every phone, made or received, keep their original order,
+ * while requests of unrelated phones run concurrently, as they did when the trace was recorded.
+ * <p>
+ * When paced, requests are scheduled at their original times divided by the speed-up and conversation
+ * times are divided by the speed-up too, so phones are busy for the same share of the replay. Unpaced
+ * requests divide conversation times by the compression actually reached, the time of the request in the
+ * trace divided by the time since the replay started. Only the virtual replay keeps recorded times exactly.
+ */
+public class TraceReplayer {
+
+    /**
+     * Number of {@code long} elements between progress counters of workers, so they don't share cache lines.
+     */
+    private static final int STRIDE = 16;
+    /**
+     * Number of busy-waiting checks before a worker waiting for another worker parks.
+     */
+    private static final int SPINS = 100;
+    /**
+     * Time a waiting worker parks between checks.
+     */
+    private static final long PARK_NANOS = 10_000;
+
+    /**
+     * Phones requests are replayed against.
+     */
+    private final PhoneDirectory phones;
+    /**
+     * Creates phones with numbers of the trace missing in the directory, null to skip their requests.
+     */
+    private final Function<PhoneNumber, Phone> factory;
+    /**
+     * Number of worker threads.
+     */
+    private final int threads;
+    /**
+     * Number of replayed requests.
+     */
+    private final LongAdder attempts;
+    /**
+     * Number of accepted calls.
+     */
+    private final LongAdder accepted;
+    /**
+     * Number of calls rejected by destination phone.
+     */
+    private final LongAdder rejected;
+    /**
+     * Number of calls which failed because caller or destination phone was unavailable.
+     */
+    private final LongAdder busy;
+    /**
+     * Number of requests skipped because the directory has no phone with caller's or callee's number.
+     */
+    private final LongAdder missing;
+    /**
+     * Time spent in {@code tryCall} by every request.
+     */
+    private final LatencyHistogram latency;
+    /**
+     * Delay of every paced request after its scheduled time.
+     */
+    private final LatencyHistogram lag;
+
+    /**
+     * Class {@code TraceReplayer} constructor.
+     * @param phones Phones requests are replayed against, with the numbers of the recorded run.
+     * @param threads Number of worker threads.
+     */
+    public TraceReplayer(PhoneDirectory phones, int threads) {
+        this(phones, threads, null);
+    }
+
+    /**
+     * Class {@code TraceReplayer} constructor.
+     * @param phones Phones requests are replayed against; phones of the trace missing in it are added.
+     * @param threads Number of worker threads.
+     * @param factory Creates phones with numbers of the trace missing in the directory, null to skip their requests.
+     */
+    public TraceReplayer(PhoneDirectory phones, int threads, Function<PhoneNumber, Phone> factory) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("invalid number of threads " + threads);
+        }
+        this.phones = phones;
+        this.factory = factory;
+        this.threads = threads;
+        this.attempts = new LongAdder();
+        this.accepted = new LongAdder();
+        this.rejected = new LongAdder();
+        this.busy = new LongAdder();
+        this.missing = new LongAdder();
+        this.latency = new LatencyHistogram();
+        this.lag = new LatencyHistogram();
+    }
+
+    /**
+     * Replays a trace and waits for all worker threads to finish.
+     * @param trace Trace file.
+     * @param speed Speed-up of the original pace, e.g. 1 for original pace or 10 for ten times faster;
+     *              0 replays requests as fast as possible.
+     * @return Replay results.
+     * @throws IOException If trace can't be read or none of its requests has both phones in the directory.
+     * @throws InterruptedException If current thread was interrupted while waiting for workers.
+     */
+    public Report replay(Path trace, double speed) throws IOException, InterruptedException {
+        if (speed < 0 || Double.isNaN(speed) || Double.isInfinite(speed)) {
+            throw new IllegalArgumentException("invalid speed " + speed);
+        }
+        List<MappedByteBuffer> buffers = CallTrace.map(trace);
+        addMissing(buffers);
+        Schedule[] schedules = split(buffers);
+        AtomicLongArray progress = new AtomicLongArray(threads * STRIDE);
+        long start = System.nanoTime();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            workers[i] = new Thread(() -> work(buffers, schedules[worker], progress, worker, speed, start),
+                    "replay-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return report(trace, System.nanoTime() - start, speed > 0 ? lag : null);
+    }
+
+    /**
+     * Replays a trace on the virtual clock of a simulation engine, in trace order by the calling thread.
+     * Requests are scheduled at their original offsets from the engine's current time and keep their
+     * recorded conversation times, so outcomes don't depend on the speed of the replaying machine.
+     * Phones have to use the engine as their clock and scheduler.
+     * @param trace Trace file.
+     * @param engine Engine which runs the requests and the calls they set up.
+     * @return Replay results, without schedule lag.
+     * @throws IOException If trace can't be read or none of its requests has both phones in the directory.
+     */
+    public Report replay(Path trace, SimulationEngine engine) throws IOException {
+        List<MappedByteBuffer> buffers = CallTrace.map(trace);
+        addMissing(buffers);
+        long start = System.nanoTime();
+        new VirtualReplay(buffers, engine).scheduleNext();
+        engine.run();
+        return report(trace, System.nanoTime() - start, null);
+    }
+
+    /**
+     * Creates results of a finished replay.
+     * @param trace Trace file.
+     * @param elapsedNanos Replay duration in nanoseconds.
+     * @param lag Delay of every request after its scheduled time, null for unpaced replay.
+     * @return Replay results.
+     * @throws IOException If no request was replayed because phones of all requests were missing.
+     */
+    private Report report(Path trace, long elapsedNanos, LatencyHistogram lag) throws IOException {
+        if (attempts.sum() == 0 && missing.sum() > 0) {
+            throw new IOException("none of " + missing.sum() + " requests of " + trace + " has both phones " +
+                    "in the directory, phones have to be generated with the options of the recorded run");
+        }
+        return new Report(elapsedNanos, attempts.sum(), accepted.sum(), rejected.sum(), busy.sum(),
+                missing.sum(), latency, lag);
+    }
+
+    /**
+     * Adds phones with numbers of the trace missing in the directory, if there is a factory to create them.
+     * @param buffers Mapped records of the trace.
+     */
+    private void addMissing(List<MappedByteBuffer> buffers) {
+        if (factory == null) {
+            return;
+        }
+        for (MappedByteBuffer buffer : buffers) {
+            for (int position = 0; position + CallTrace.RECORD_BYTES <= buffer.limit();
+                 position += CallTrace.RECORD_BYTES) {
+                int lengths = buffer.get(position + 20);
+                addMissing(buffer.getInt(position + 8), lengths >>> 4 & 0xF);
+                addMissing(buffer.getInt(position + 12), lengths & 0xF);
+            }
+        }
+    }
+
+    /**
+     * Adds phone with given number unless the directory has it.
+     * @param value Numeric value of phone number.
+     * @param length Number of digits of phone number.
+     */
+    private void addMissing(int value, int length) {
+        if (phones.indexOf(value, length) < 0) {
+            phones.add(factory.apply(PhoneNumber.of(value, length)));
+        }
+    }
+
+    /**
+     * Splits records of a trace among workers by hash of the caller's number. Records with numbers
+     * missing in the directory are counted and skipped.
+     * @param buffers Mapped records of the trace.
+     * @return Records of every worker with the records they have to wait for.
+     */
+    private Schedule[] split(List<MappedByteBuffer> buffers) {
+        Schedule[] schedules = new Schedule[threads];
+        for (int i = 0; i < threads; i++) {
+            schedules[i] = new Schedule();
+        }
+        // last task of every phone by its directory ID, as position in schedule times threads plus worker
+        long[] last = new long[phones.size()];
+        Arrays.fill(last, -1);
+        long index = 0;
+        for (MappedByteBuffer buffer : buffers) {
+            for (int position = 0; position + CallTrace.RECORD_BYTES <= buffer.limit();
+                 position += CallTrace.RECORD_BYTES, index++) {
+                int caller = buffer.getInt(position + 8);
+                int lengths = buffer.get(position + 20);
+                int from = phones.indexOf(caller, lengths >>> 4 & 0xF);
+                int to = phones.indexOf(buffer.getInt(position + 12), lengths & 0xF);
+                if (from < 0 || to < 0 || from >= last.length || to >= last.length) {
+                    missing.increment();
+                    continue;
+                }
+                int worker = Integer.remainderUnsigned(caller * 0x9E3779B9, threads);
+                Schedule schedule = schedules[worker];
+                long task = (long) schedule.size * threads + worker;
+                schedule.add(index, foreign(last[from], worker), foreign(last[to], worker));
+                last[from] = task;
+                last[to] = task;
+            }
+        }
+        return schedules;
+    }
+
+    /**
+     * Drops dependency on a task of the same worker, which is replayed in order anyway.
+     * @param task Task to wait for, -1 for none.
+     * @param worker Worker which waits.
+     * @return Task of another worker or -1.
+     */
+    private long foreign(long task, int worker) {
+        return task >= 0 && task % threads != worker ? task : -1;
+    }
+
+    /**
+     * Worker thread loop which replays requests of its schedule in trace order.
+     * @param buffers Mapped records of the trace.
+     * @param schedule Records of this worker.
+     * @param progress Number of replayed records of every worker at multiples of {@code STRIDE}.
+     * @param worker Index of this worker.
+     * @param speed Speed-up of the original pace, 0 for no pacing.
+     * @param start Replay start in {@code System.nanoTime()} units.
+     */
+    private void work(List<MappedByteBuffer> buffers, Schedule schedule, AtomicLongArray progress, int worker,
+                      double speed, long start) {
+        for (int i = 0; i < schedule.size; i++) {
+            await(progress, schedule.callers[i]);
+            await(progress, schedule.callees[i]);
+            long index = schedule.records[i];
+            MappedByteBuffer buffer = buffers.get((int) (index / CallTrace.MAPPED_RECORDS));
+            int position = (int) (index % CallTrace.MAPPED_RECORDS) * CallTrace.RECORD_BYTES;
+            long offset = buffer.getLong(position);
+            long conversationMillis = buffer.getInt(position + 16);
+            if (speed > 0) {
+                long due = start + (long) (offset / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                lag.record(System.nanoTime() - due);
+                conversationMillis = (long) (conversationMillis / speed);
+            } else if (offset > 0) {
+                conversationMillis = (long) (conversationMillis * ((double) (System.nanoTime() - start) / offset));
+            }
+            call(buffer, position, conversationMillis);
+            progress.lazySet(worker * STRIDE, i + 1);
+        }
+    }
+
+    /**
+     * Waits until a task of another worker is replayed.
+     * @param progress Number of replayed records of every worker at multiples of {@code STRIDE}.
+     * @param task Task to wait for, as position in schedule times threads plus worker, -1 for none.
+     */
+    private void await(AtomicLongArray progress, long task) {
+        if (task < 0) {
+            return;
+        }
+        int worker = (int) (task % threads);
+        long position = task / threads;
+        int spins = 0;
+        while (progress.get(worker * STRIDE) <= position) {
+            if (++spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Makes the request of a record and counts its outcome.
+     * @param buffer Mapped records of the trace.
+     * @param position Position of the record.
+     * @param conversationMillis Conversation time to use if the call is accepted.
+     */
+    private void call(MappedByteBuffer buffer, int position, long conversationMillis) {
+        int lengths = buffer.get(position + 20);
+        boolean accept = buffer.get(position + 21) != 0;
+        Phone from = phones.find(buffer.getInt(position + 8), lengths >>> 4 & 0xF);
+        Phone to = phones.find(buffer.getInt(position + 12), lengths & 0xF);
+        if (from == null || to == null) {
+            missing.increment();
+            return;
+        }
+        attempts.increment();
+        long begin = System.nanoTime();
+        CallOutcome outcome = from.tryCall(to, accept,
+                accept ? Duration.ofMillis(conversationMillis) : Duration.ZERO);
+        latency.record(System.nanoTime() - begin);
+        switch (outcome) {
+            case ACCEPTED:
+                accepted.increment();
+                break;
+            case REJECTED:
+                rejected.increment();
+                break;
+            default:
+                busy.increment();
+        }
+    }
+
+    /**
+     * Records of a worker in trace order with tasks of other workers each of them waits for.
+     */
+    private static final class Schedule {
+
+        /**
+         * Indexes of records in the trace.
+         */
+        long[] records = new long[1024];
+        /**
+         * Last earlier task of the caller of every record on another worker, -1 for none.
+         */
+        long[] callers = new long[1024];
+        /**
+         * Last earlier task of the callee of every record on another worker, -1 for none.
+         */
+        long[] callees = new long[1024];
+        /**
+         * Number of records.
+         */
+        int size;
+
+        /**
+         * Appends a record.
+         * @param record Index of the record in the trace.
+         * @param caller Task the record waits for because of its caller, -1 for none.
+         * @param callee Task the record waits for because of its callee, -1 for none.
+         */
+        void add(long record, long caller, long callee) {
+            if (size == records.length) {
+                int length = size + (size >> 1);
+                records = Arrays.copyOf(records, length);
+                callers = Arrays.copyOf(callers, length);
+                callees = Arrays.copyOf(callees, length);
+            }
+            records[size] = record;
+            callers[size] = caller;
+            callees[size] = callee;
+            size++;
+        }
+    }
+
+    /**
+     * Event which makes the request of the current record on the engine and schedules the next record.
+     */
+    private final class VirtualReplay implements Runnable {
+
+        /**
+         * Mapped records of the trace.
+         */
+        private final List<MappedByteBuffer> buffers;
+        /**
+         * Engine which runs the requests.
+         */
+        private final SimulationEngine engine;
+        /**
+         * Simulated time of the trace start in epoch milliseconds.
+         */
+        private final long start;
+        /**
+         * Index of the buffer of the current record.
+         */
+        private int buffer;
+        /**
+         * Position of the current record, negative before the first record.
+         */
+        private int position = -CallTrace.RECORD_BYTES;
+
+        /**
+         * Class {@code VirtualReplay} constructor.
+         * @param buffers Mapped records of the trace.
+         * @param engine Engine which runs the requests.
+         */
+        VirtualReplay(List<MappedByteBuffer> buffers, SimulationEngine engine) {
+            this.buffers = buffers;
+            this.engine = engine;
+            this.start = engine.now();
+        }
+
+        /**
+         * Moves to the next record and schedules it at its offset from the trace start.
+         */
+        void scheduleNext() {
+            position += CallTrace.RECORD_BYTES;
+            while (buffer < buffers.size() && position + CallTrace.RECORD_BYTES > buffers.get(buffer).limit()) {
+                buffer++;
+                position = 0;
+            }
+            if (buffer < buffers.size()) {
+                engine.scheduleAt(start + buffers.get(buffer).getLong(position) / 1_000_000, this);
+            }
+        }
+
+        @Override
+        public void run() {
+            MappedByteBuffer records = buffers.get(buffer);
+            call(records, position, records.getInt(position + 16));
+            scheduleNext();
+        }
+    }
+
+    /**
+     * Results of a replay.
+     */
+    public static class Report {
+
+        /**
+         * Replay duration in nanoseconds.
+         */
+        private final long elapsedNanos;
+        /**
+         * Number of replayed requests.
+         */
+        private final long attempts;
+        /**
+         * Number of accepted calls.
+         */
+        private final long accepted;
+        /**
+         * Number of rejected calls.
+         */
+        private final long rejected;
+        /**
+         * Number of calls to or from unavailable phones.
+         */
+        private final long busy;
+        /**
+         * Number of requests skipped because of unknown numbers.
+         */
+        private final long missing;
+        /**
+         * Time spent in {@code tryCall} by every request.
+         */
+        private final LatencyHistogram latency;
+        /**
+         * Delay of every request after its scheduled time, null for unpaced replay.
+         */
+        private final LatencyHistogram lag;
+
+        /**
+         * Class {@code Report} constructor.
+         * @param elapsedNanos Replay duration in nanoseconds.
+         * @param attempts Number of replayed requests.
+         * @param accepted Number of accepted calls.
+         * @param rejected Number of rejected calls.
+         * @param busy Number of calls to or from unavailable phones.
+         * @param missing Number of requests skipped because of unknown numbers.
+         * @param latency Time spent in {@code tryCall} by every request.
+         * @param lag Delay of every request after its scheduled time, null for unpaced replay.
+         */
+        Report(long elapsedNanos, long attempts, long accepted, long rejected, long busy, long missing,
+               LatencyHistogram latency, LatencyHistogram lag) {
+            this.elapsedNanos = elapsedNanos;
+            this.attempts = attempts;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.busy = busy;
+            this.missing = missing;
+            this.latency = latency;
+            this.lag = lag;
+        }
+
+        /**
+         * Replayed requests per second getter.
+         * @return Call attempts per second.
+         */
+        public double getCallsPerSecond() {
+            return elapsedNanos == 0 ? 0 : attempts * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Missing requests getter.
+         * @return Number of requests skipped because the directory has no phone with their numbers.
+         */
+        public long getMissing() {
+            return missing;
+        }
+
+        /**
+         * Latency getter.
+         * @return Histogram of time spent in {@code tryCall} by every request.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Lag getter.
+         * @return Histogram of delays of requests after their scheduled times, null for unpaced replay.
+         */
+        public LatencyHistogram getLag() {
+            return lag;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Elapsed: %.3fs%n" +
+                            "Replayed: %d (accepted %d, rejected %d, busy %d, missing phones %d)%n" +
+                            "Calls/sec: %.1f%n" +
+                            "Call latency: %s",
+                    elapsedNanos / 1e9, attempts, accepted, rejected, busy, missing,
+                    getCallsPerSecond(), latency) +
+                    (lag != null ? System.lineSeparator() + "Schedule lag: " + lag : "");
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.company;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Traffic model used by {@code LoadGenerator}. Calls arrive as a Poisson process, their holding times
+ * follow exponential or log-normal distribution and destinations are chosen with a calling-pattern matrix.
+ * Phones are grouped by the first digit of their number (5 to 8), so the matrix has 4 rows and 4 columns:
+ * row is the group of the calling phone and columns are relative weights of destination groups.
+ */
+public class TrafficModel {
+
+    /**
+     * Number of phone groups, one for every allowed first digit of phone number.
+     */
+    public static final int GROUPS = 4;
+    /**
+     * First digit of phone numbers in group 0.
+     */
+    public static final char FIRST_GROUP_DIGIT = '5';
+
+    /**
+     * Distributions of call holding times.
+     */
+    public enum HoldingTime {
+        /**
+         * Exponential distribution with given mean.
+         */
+        EXPONENTIAL,
+        /**
+         * Log-normal distribution with given mean and shape parameter sigma.
+         */
+        LOG_NORMAL
+    }
+
+    /**
+     * Field {@code arrivalRate} defines mean number of call attempts per second, or 0 for unpaced traffic.
+     */
+    private final double arrivalRate;
+    /**
+     * Field {@code holdingTime} defines distribution of conversation durations.
+     */
+    private final HoldingTime holdingTime;
+    /**
+     * Field {@code meanHoldingSeconds} defines mean conversation duration in seconds.
+     */
+    private final double meanHoldingSeconds;
+    /**
+     * Field {@code sigma} defines shape of log-normal distribution.
+     */
+    private final double sigma;
+    /**
+     * Field {@code acceptProbability} defines probability that destination phone accepts call.
+     */
+    private final double acceptProbability;
+    /**
+     * Cumulative, normalized rows of calling-pattern matrix.
+     */
+    private final double[][] pattern;
+
+    /**
+     * Class {@code TrafficModel} constructor.
+     * @param arrivalRate Mean number of call attempts per second, or 0 for unpaced traffic.
+     * @param holdingTime Distribution of conversation durations.
+     * @param meanHoldingSeconds Mean conversation duration in seconds.
+     * @param sigma Shape of log-normal distribution, ignored by exponential one.
+     * @param acceptProbability Probability that destination phone accepts call.
+     * @param pattern Calling-pattern matrix with {@code GROUPS} rows and columns of non-negative weights,
+     *                or null for uniform pattern.
+     */
+    public TrafficModel(double arrivalRate, HoldingTime holdingTime, double meanHoldingSeconds, double sigma,
+                        double acceptProbability, double[][] pattern) {
+        if (arrivalRate < 0 || Double.isNaN(arrivalRate)) {
+            throw new IllegalArgumentException("invalid arrival rate " + arrivalRate);
+        }
+        if (!(meanHoldingSeconds >= 0)) {
+            throw new IllegalArgumentException("invalid mean holding time " + meanHoldingSeconds);
+        }
+        if (!(sigma >= 0)) {
+            throw new IllegalArgumentException("invalid sigma " + sigma);
+        }
+        if (!(acceptProbability >= 0 && acceptProbability <= 1)) {
+            throw new IllegalArgumentException("invalid accept probability " + acceptProbability);
+        }
+        this.arrivalRate = arrivalRate;
+        this.holdingTime = holdingTime;
+        this.meanHoldingSeconds = meanHoldingSeconds;
+        this.sigma = sigma;
+        this.acceptProbability = acceptProbability;
+        this.pattern = cumulative(pattern);
+    }
+
+    /**
+     * Converts calling-pattern matrix to cumulative distribution of every row.
+     * @param pattern Calling-pattern matrix or null for uniform pattern.
+     * @return Cumulative rows, each ending with 1.
+     */
+    private static double[][] cumulative(double[][] pattern) {
+        double[][] result = new double[GROUPS][GROUPS];
+        for (int row = 0; row < GROUPS; row++) {
+            if (pattern != null && (pattern.length != GROUPS || pattern[row].length != GROUPS)) {
+                throw new IllegalArgumentException("calling pattern has to be " + GROUPS + "x" + GROUPS + " matrix");
+            }
+            double sum = 0;
+            for (int column = 0; column < GROUPS; column++) {
+                double weight = pattern == null ? 1 : pattern[row][column];
+                if (!(weight >= 0)) {
+                    throw new IllegalArgumentException("invalid calling pattern weight " + weight);
+                }
+                sum += weight;
+                result[row][column] = sum;
+            }
+            if (sum == 0) {
+                throw new IllegalArgumentException("calling pattern row " + row + " has no destinations");
+            }
+            for (int column = 0; column < GROUPS; column++) {
+                result[row][column] /= sum;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses calling-pattern matrix written as rows separated with {@code ;} and weights separated with {@code ,}.
+     * @param text Matrix, e.g. {@code 4,1,1,1;1,4,1,1;1,1,4,1;1,1,1,4}.
+     * @return Calling-pattern matrix.
+     */
+    public static double[][] parsePattern(String text) {
+        String[] rows = text.split(";");
+        double[][] pattern = new double[rows.length][];
+        for (int row = 0; row < rows.length; row++) {
+            String[] weights = rows[row].split(",");
+            pattern[row] = new double[weights.length];
+            for (int column = 0; column < weights.length; column++) {
+                pattern[row][column] = Double.parseDouble(weights[column].trim());
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Returns group of the phone with given number.
+     * @param phoneNumber Phone number.
+     * @return Group index or -1 if number doesn't start with digit from 5 to 8.
+     */
+    public static int groupOf(String phoneNumber) {
+        int group = phoneNumber.isEmpty() ? -1 : phoneNumber.charAt(0) - FIRST_GROUP_DIGIT;
+        return group >= 0 && group < GROUPS ? group : -1;
+    }
+
+    /**
+     * Returns group of the phone with given number.
+     * @param number Phone number.
+     * @return Group index or -1 if number doesn't start with digit from 5 to 8.
+     */
+    public static int groupOf(PhoneNumber number) {
+        int group = number.getFirstDigit() - (FIRST_GROUP_DIGIT - '0');
+        return group >= 0 && group < GROUPS ? group : -1;
+    }
+
+    /**
+     * Arrival rate getter.
+     * @return Mean number of call attempts per second, 0 for unpaced traffic.
+     */
+    public double getArrivalRate() {
+        return arrivalRate;
+    }
+
+    /**
+     * Draws time to the next call attempt of a single traffic source.
+     * @param random Random number generator.
+     * @param sources Number of independent sources sharing the arrival rate.
+     * @return Time to the next call attempt in nanoseconds, 0 for unpaced traffic.
+     */
+    public long nextArrivalNanos(Random random, int sources) {
+        if (arrivalRate == 0) {
+            return 0;
+        }
+        return (long) (-Math.log(1 - random.nextDouble()) * sources / arrivalRate * 1e9);
+    }
+
+    /**
+     * Draws conversation duration.
+     * @param random Random number generator.
+     * @return Conversation duration rounded to milliseconds.
+     */
+    public Duration nextHoldingTime(Random random) {
+        double seconds;
+        if (holdingTime == HoldingTime.EXPONENTIAL) {
+            seconds = -Math.log(1 - random.nextDouble()) * meanHoldingSeconds;
+        } else if (meanHoldingSeconds == 0) {
+            seconds = 0;
+        } else {
+            double mu = Math.log(meanHoldingSeconds) - sigma * sigma / 2;
+            seconds = Math.exp(mu + sigma * random.nextGaussian());
+        }
+        return Duration.ofMillis((long) (seconds * 1000));
+    }
+
+    /**
+     * Draws if destination phone accepts call.
+     * @param random Random number generator.
+     * @return True if call should be accepted.
+     */
+    public boolean nextAccept(Random random) {
+        return random.nextDouble() < acceptProbability;
+    }
+
+    /**
+     * Draws destination group for a call from given group.
+     * @param random Random number generator.
+     * @param fromGroup Group of calling phone.
+     * @return Destination group.
+     */
+    public int nextDestinationGroup(Random random, int fromGroup) {
+        double[] row = pattern[fromGroup];
+        double value = random.nextDouble();
+        for (int column = 0; column < GROUPS - 1; column++) {
+            if (value < row[column]) {
+                return column;
+            }
+        }
+        return GROUPS - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "TrafficModel{rate=" + (arrivalRate == 0 ? "unpaced" : arrivalRate + "/s") +
+                ", holding=" + holdingTime + "(mean=" + meanHoldingSeconds + "s" +
+                (holdingTime == HoldingTime.LOG_NORMAL ? ", sigma=" + sigma : "") + ")" +
+                ", accept=" + acceptProbability + '}';
+    }
+}
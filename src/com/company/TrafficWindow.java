@@ -0,0 +1,336 @@
+package com.company;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sliding window of call traffic rolled up into a fixed ring of time buckets, e.g. sixty one-minute buckets
+ * covering the last hour. Every bucket counts calls by outcome and sums conversation time of accepted calls,
+ * which is attributed to the bucket where the conversation started. When the ring moves on, the traffic of
+ * the whole window is compared with the busiest window seen so far, so the busy hour is known at any time.
+ * Calls older than the window are ignored.
+ */
+public class TrafficWindow {
+
+    /**
+     * Number of counters of a bucket.
+     */
+    private static final int COUNTERS = 4;
+    /**
+     * Offset of accepted calls counter in a bucket.
+     */
+    private static final int ACCEPTED = 0;
+    /**
+     * Offset of rejected calls counter in a bucket.
+     */
+    private static final int REJECTED = 1;
+    /**
+     * Offset of busy calls counter in a bucket.
+     */
+    private static final int BUSY = 2;
+    /**
+     * Offset of conversation time sum in a bucket.
+     */
+    private static final int TALK_MILLIS = 3;
+
+    /**
+     * Traffic of a time interval.
+     */
+    public static final class Rollup {
+
+        /**
+         * Field {@code start} holds interval start in epoch milliseconds.
+         */
+        private final long start;
+        /**
+         * Field {@code length} holds interval length in milliseconds.
+         */
+        private final long length;
+        /**
+         * Field {@code accepted} holds number of accepted calls.
+         */
+        private final long accepted;
+        /**
+         * Field {@code rejected} holds number of rejected calls.
+         */
+        private final long rejected;
+        /**
+         * Field {@code busy} holds number of calls to unavailable phones.
+         */
+        private final long busy;
+        /**
+         * Field {@code talkMillis} holds conversation time of accepted calls in milliseconds.
+         */
+        private final long talkMillis;
+
+        /**
+         * Class {@code Rollup} constructor.
+         * @param start Interval start in epoch milliseconds.
+         * @param length Interval length in milliseconds.
+         * @param accepted Number of accepted calls.
+         * @param rejected Number of rejected calls.
+         * @param busy Number of calls to unavailable phones.
+         * @param talkMillis Conversation time of accepted calls in milliseconds.
+         */
+        private Rollup(long start, long length, long accepted, long rejected, long busy, long talkMillis) {
+            this.start = start;
+            this.length = length;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.busy = busy;
+            this.talkMillis = talkMillis;
+        }
+
+        /**
+         * Start getter.
+         * @return Interval start in epoch milliseconds.
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * Length getter.
+         * @return Interval length in milliseconds.
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Calls getter.
+         * @return Number of calls made in the interval.
+         */
+        public long getCalls() {
+            return accepted + rejected + busy;
+        }
+
+        /**
+         * Accepted calls getter.
+         * @return Number of accepted calls.
+         */
+        public long getAcceptedCalls() {
+            return accepted;
+        }
+
+        /**
+         * Rejected calls getter.
+         * @return Number of rejected calls.
+         */
+        public long getRejectedCalls() {
+            return rejected;
+        }
+
+        /**
+         * Busy calls getter.
+         * @return Number of calls to unavailable phones.
+         */
+        public long getBusyCalls() {
+            return busy;
+        }
+
+        /**
+         * Talk time getter.
+         * @return Conversation time of accepted calls in milliseconds.
+         */
+        public long getTalkMillis() {
+            return talkMillis;
+        }
+
+        /**
+         * Offered traffic getter.
+         * @return Conversation time per interval length, in erlangs.
+         */
+        public double getErlangs() {
+            return length > 0 ? (double) talkMillis / length : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s +%s: %d calls, %d accepted, %d rejected, %d busy, %.2f erlangs",
+                    Instant.ofEpochMilli(start), Duration.ofMillis(length), getCalls(), accepted, rejected, busy,
+                    getErlangs());
+        }
+    }
+
+    /**
+     * Field {@code counters} holds counters of all buckets, bucket after bucket.
+     */
+    private final AtomicLongArray counters;
+    /**
+     * Field {@code epochs} holds number of bucket lengths since the epoch at which every bucket starts.
+     */
+    private final AtomicLongArray epochs;
+    /**
+     * Field {@code bucketMillis} holds length of a bucket in milliseconds.
+     */
+    private final long bucketMillis;
+    /**
+     * Field {@code buckets} holds number of buckets in the window.
+     */
+    private final int buckets;
+    /**
+     * Field {@code busiest} holds traffic of the busiest complete window, null until the window first moves on.
+     */
+    private volatile Rollup busiest;
+
+    /**
+     * Class {@code TrafficWindow} constructor.
+     * @param bucket Length of a bucket, at least a millisecond.
+     * @param buckets Number of buckets in the window.
+     */
+    public TrafficWindow(Duration bucket, int buckets) {
+        if (bucket.toMillis() <= 0) {
+            throw new IllegalArgumentException("invalid bucket length " + bucket);
+        }
+        if (buckets <= 0 || buckets > 1 << 20) {
+            throw new IllegalArgumentException("invalid number of buckets " + buckets);
+        }
+        this.bucketMillis = bucket.toMillis();
+        this.buckets = buckets;
+        this.counters = new AtomicLongArray(buckets * COUNTERS);
+        this.epochs = new AtomicLongArray(buckets);
+        for (int i = 0; i < buckets; i++) {
+            epochs.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Counts a call.
+     * @param outcome Call outcome, {@code ACCEPTED}, {@code REJECTED} or {@code BUSY}.
+     * @param time Call time in epoch milliseconds.
+     * @param conversationMillis Conversation time of accepted call in milliseconds.
+     */
+    public void record(CallEventType outcome, long time, long conversationMillis) {
+        long epoch = Math.floorDiv(time, bucketMillis);
+        int bucket = Math.floorMod(epoch, buckets);
+        long current = epochs.get(bucket);
+        if (current != epoch) {
+            if (current > epoch || !roll(bucket, epoch)) {
+                return;
+            }
+        }
+        int offset = bucket * COUNTERS;
+        switch (outcome) {
+            case ACCEPTED:
+                counters.incrementAndGet(offset + ACCEPTED);
+                counters.addAndGet(offset + TALK_MILLIS, conversationMillis);
+                break;
+            case REJECTED:
+                counters.incrementAndGet(offset + REJECTED);
+                break;
+            case BUSY:
+                counters.incrementAndGet(offset + BUSY);
+                break;
+            default:
+                throw new IllegalArgumentException("invalid call outcome " + outcome);
+        }
+    }
+
+    /**
+     * Moves a bucket on to a later epoch, once per bucket length. Before the oldest bucket is cleared,
+     * the window ending just before the new bucket is checked against the busiest window.
+     * @param bucket Bucket index.
+     * @param epoch New epoch of the bucket.
+     * @return False if the bucket already holds a later epoch, so the call is too old to be counted.
+     */
+    private synchronized boolean roll(int bucket, long epoch) {
+        long current = epochs.get(bucket);
+        if (current >= epoch) {
+            return current == epoch;
+        }
+        Rollup window = rollup(epoch - buckets, epoch - 1);
+        Rollup busiest = this.busiest;
+        if (window.getCalls() > 0 && (busiest == null || window.talkMillis > busiest.talkMillis)) {
+            this.busiest = window;
+        }
+        int offset = bucket * COUNTERS;
+        for (int i = 0; i < COUNTERS; i++) {
+            counters.set(offset + i, 0);
+        }
+        epochs.set(bucket, epoch);
+        return true;
+    }
+
+    /**
+     * Sums buckets of a range of epochs still held by the window.
+     * @param first First epoch.
+     * @param last Last epoch.
+     * @return Traffic of the range.
+     */
+    private Rollup rollup(long first, long last) {
+        long[] sums = new long[COUNTERS];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            long epoch = epochs.get(bucket);
+            if (epoch >= first && epoch <= last) {
+                for (int i = 0; i < COUNTERS; i++) {
+                    sums[i] += counters.get(bucket * COUNTERS + i);
+                }
+            }
+        }
+        return new Rollup(first * bucketMillis, (last - first + 1) * bucketMillis,
+                sums[ACCEPTED], sums[REJECTED], sums[BUSY], sums[TALK_MILLIS]);
+    }
+
+    /**
+     * Returns traffic of the whole window ending with given time.
+     * @param time Window end in epoch milliseconds, usually the current time of the simulation.
+     * @return Traffic of the buckets covering the window.
+     */
+    public Rollup getWindow(long time) {
+        long last = Math.floorDiv(time, bucketMillis);
+        return rollup(last - buckets + 1, last);
+    }
+
+    /**
+     * Returns traffic of every bucket of the window ending with given time.
+     * @param time Window end in epoch milliseconds.
+     * @return Traffic of the buckets, oldest first.
+     */
+    public List<Rollup> getBuckets(long time) {
+        long last = Math.floorDiv(time, bucketMillis);
+        List<Rollup> rollups = new ArrayList<>(buckets);
+        for (long epoch = last - buckets + 1; epoch <= last; epoch++) {
+            rollups.add(rollup(epoch, epoch));
+        }
+        return rollups;
+    }
+
+    /**
+     * Busy hour getter. Windows are compared by their conversation time.
+     * @param time Current time in epoch milliseconds, so the window in progress is considered too.
+     * @return Traffic of the busiest window seen, null if no calls were counted.
+     */
+    public Rollup getBusiest(long time) {
+        Rollup window = getWindow(time);
+        Rollup busiest = this.busiest;
+        if (busiest == null || window.talkMillis > busiest.talkMillis) {
+            return window.getCalls() > 0 ? window : busiest;
+        }
+        return busiest;
+    }
+
+    /**
+     * Window length getter.
+     * @return Time covered by all buckets.
+     */
+    public Duration getLength() {
+        return Duration.ofMillis(bucketMillis * buckets);
+    }
+
+    /**
+     * Clears all buckets and the busiest window.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < buckets; i++) {
+            epochs.set(i, Long.MIN_VALUE);
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        busiest = null;
+    }
+}
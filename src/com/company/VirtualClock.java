@@ -0,0 +1,50 @@
+package com.company;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Clock that shows simulated time of a {@code SimulationEngine} instead of wall-clock time.
+ */
+public class VirtualClock extends Clock {
+
+    /**
+     * Engine whose current time is shown by this clock.
+     */
+    private final SimulationEngine engine;
+    /**
+     * Time zone used to convert instants to local date and time.
+     */
+    private final ZoneId zone;
+
+    /**
+     * Class {@code VirtualClock} constructor.
+     * @param engine Engine whose current time is shown by this clock.
+     * @param zone Time zone of the clock.
+     */
+    VirtualClock(SimulationEngine engine, ZoneId zone) {
+        this.engine = engine;
+        this.zone = zone;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new VirtualClock(engine, zone);
+    }
+
+    @Override
+    public long millis() {
+        return engine.now();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(engine.now());
+    }
+}
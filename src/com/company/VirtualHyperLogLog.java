@@ -0,0 +1,112 @@
+package com.company;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent virtual HyperLogLog estimating number of distinct keys of every flow, e.g. distinct callers
+ * of every phone, in one fixed array of {@code 2^sharedPrecision} one-byte registers shared by all flows.
+ * Every flow gets {@code 2^precision} virtual registers picked from the shared array by hashing the flow
+ * with the register index, so memory doesn't grow with the number of flows. Registers shared with other
+ * flows add noise, which is subtracted using the estimate of all keys of all flows; the error of a flow
+ * grows with the total number of keys per shared register.
+ */
+public class VirtualHyperLogLog {
+
+    /**
+     * Largest supported precision of the shared array, 64 MiB of registers.
+     */
+    public static final int MAX_SHARED_PRECISION = 26;
+
+    /**
+     * Field {@code registers} holds shared one-byte registers, eight in every element.
+     */
+    private final AtomicLongArray registers;
+    /**
+     * Field {@code sharedPrecision} holds number of hash bits selecting a shared register.
+     */
+    private final int sharedPrecision;
+    /**
+     * Field {@code precision} holds number of hash bits selecting a virtual register of a flow.
+     */
+    private final int precision;
+
+    /**
+     * Class {@code VirtualHyperLogLog} constructor.
+     * @param sharedPrecision Number of bits selecting a shared register, above {@code precision}
+     *                        and up to {@code MAX_SHARED_PRECISION}.
+     * @param precision Number of bits selecting a virtual register of a flow, from
+     *                  {@code HyperLogLog.MIN_PRECISION} to {@code HyperLogLog.MAX_PRECISION}.
+     */
+    public VirtualHyperLogLog(int sharedPrecision, int precision) {
+        if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+            throw new IllegalArgumentException("invalid precision " + precision);
+        }
+        if (sharedPrecision <= precision || sharedPrecision > MAX_SHARED_PRECISION) {
+            throw new IllegalArgumentException("invalid shared precision " + sharedPrecision);
+        }
+        this.sharedPrecision = sharedPrecision;
+        this.precision = precision;
+        this.registers = new AtomicLongArray(1 << sharedPrecision - 3);
+    }
+
+    /**
+     * Adds a key to a flow.
+     * @param flow 64-bit hash of the flow.
+     * @param hash 64-bit hash of the key.
+     */
+    public void add(long flow, long hash) {
+        HyperLogLog.raise(registers, register(flow, (int) (hash >>> 64 - precision)),
+                HyperLogLog.rank(hash, precision));
+    }
+
+    /**
+     * Estimates number of distinct keys added to a flow.
+     * @param flow 64-bit hash of the flow.
+     * @return Estimated number of distinct keys, 0 for flows which got no keys or less than the noise.
+     */
+    public long estimate(long flow) {
+        int s = 1 << precision;
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < s; i++) {
+            int rank = HyperLogLog.get(registers, register(flow, i));
+            sum += Math.scalb(1.0, -rank);
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+        double m = 1 << sharedPrecision;
+        double flowEstimate = HyperLogLog.estimate(s, sum, zeros);
+        double noise = HyperLogLog.estimate(registers) / m;
+        return Math.max(0, Math.round(s * m / (m - s) * (flowEstimate / s - noise)));
+    }
+
+    /**
+     * Estimates number of distinct flow and key pairs added to all flows.
+     * @return Estimated number of distinct pairs.
+     */
+    public long estimate() {
+        return Math.round(HyperLogLog.estimate(registers));
+    }
+
+    /**
+     * Finds shared register holding virtual register of a flow.
+     * @param flow 64-bit hash of the flow.
+     * @param virtual Index of virtual register.
+     * @return Index of shared register.
+     */
+    private int register(long flow, int virtual) {
+        long h = flow + virtual * 0x9E3779B97F4A7C15L;
+        h = (h ^ h >>> 33) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ h >>> 33) * 0xC4CEB9FE1A85EC53L;
+        return (int) ((h ^ h >>> 33) >>> 64 - sharedPrecision);
+    }
+
+    /**
+     * Memory getter.
+     * @return Number of bytes taken by shared registers.
+     */
+    public int getBytes() {
+        return 1 << sharedPrecision;
+    }
+}